@@ -0,0 +1,81 @@
+package net.xorf.util.bench;
+
+import net.xorf.util.MultiValueMap;
+import net.xorf.util.NewCollection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * <tt>MultiValueMap.puts</tt> and the {@link NewCollection} builders
+ * against collecting streams.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules=jdk.incubator.vector"})
+public class CollectionsBench {
+    @Benchmark
+    public MultiValueMap<Integer, Integer> puts(Inputs in) {
+        MultiValueMap<Integer, Integer> m = new MultiValueMap<Integer, Integer>();
+        for (Integer x : in.boxed)
+            m.puts(x & 1023, x);
+        return m;
+    }
+
+    @Benchmark
+    public Map<Integer, Set<Integer>> putsStream(Inputs in) {
+        return in.boxed.stream().collect(Collectors.groupingBy(x -> x & 1023, Collectors.toSet()));
+    }
+
+    @Benchmark
+    public List<Integer> listAppend(Inputs in) {
+        NewCollection.FluentList<Integer> l = NewCollection.list();
+        for (Integer x : in.boxed)
+            l.append(x);
+        return l;
+    }
+
+    @Benchmark
+    public List<Integer> listFrom(Inputs in) {
+        return NewCollection.listFrom(in.boxed);
+    }
+
+    @Benchmark
+    public List<Integer> listStream(Inputs in) {
+        return in.boxed.stream().collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> mapBuilder(Inputs in) {
+        NewCollection.MapBuilder<Integer, Integer> m = NewCollection.map();
+        for (Integer x : in.boxed)
+            m.map(x, x);
+        return m;
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> mapStream(Inputs in) {
+        return in.boxed.stream().collect(Collectors.toMap(x -> x, x -> x, (a, b) -> b, HashMap::new));
+    }
+
+    @Benchmark
+    public Set<Integer> set(Inputs in) {
+        return NewCollection.set(in.boxed.toArray(new Integer[0]));
+    }
+
+    @Benchmark
+    public Set<Integer> setStream(Inputs in) {
+        return in.boxed.stream().collect(Collectors.toSet());
+    }
+}
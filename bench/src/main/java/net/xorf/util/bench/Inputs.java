@@ -0,0 +1,47 @@
+package net.xorf.util.bench;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The inputs every benchmark runs over, from tiny to 10M elements.  Values
+ * are random with about <tt>size / 10</tt> distinct ones, so
+ * <tt>unique</tt> and <tt>groupBy</tt> see realistic duplication.
+ */
+@State(Scope.Benchmark)
+public class Inputs {
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    public List<Integer> boxed;
+    public int[] ints;
+    public double[] doubles;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random r = new Random(42);
+        int distinct = size / 10 + 1;
+        boxed = new ArrayList<Integer>(size);
+        ints = new int[size];
+        doubles = new double[size];
+        for (int i = 0; i < size; i++) {
+            ints[i] = r.nextInt(distinct);
+            boxed.add(ints[i]);
+            doubles[i] = r.nextDouble();
+        }
+    }
+
+    /** pulls every element of a lazy view through the pipeline */
+    static void drain(Iterable<?> view, Blackhole bh) {
+        for (Object o : view)
+            bh.consume(o);
+    }
+}
@@ -0,0 +1,78 @@
+package net.xorf.util.bench;
+
+import net.xorf.util.Views;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.PrimitiveIterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+
+/**
+ * <tt>Views.viewOf</tt> over primitive arrays against
+ * <tt>IntStream</tt>/<tt>DoubleStream</tt>.  Run with <tt>-prof gc</tt>
+ * to check that the primitive paths don't box.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules=jdk.incubator.vector"})
+public class PrimitiveArrayBench {
+    @Benchmark
+    public long intSum(Inputs in) {
+        return Views.viewOf(in.ints).sum();
+    }
+
+    @Benchmark
+    public long intSumStream(Inputs in) {
+        return IntStream.of(in.ints).asLongStream().sum();
+    }
+
+    @Benchmark
+    public int intMax(Inputs in) {
+        return Views.viewOf(in.ints).max();
+    }
+
+    @Benchmark
+    public int intMaxStream(Inputs in) {
+        return IntStream.of(in.ints).max().getAsInt();
+    }
+
+    @Benchmark
+    public void intIterate(Inputs in, Blackhole bh) {
+        PrimitiveIterator.OfInt it = Views.viewOf(in.ints).iterator();
+        while (it.hasNext())
+            bh.consume(it.nextInt());
+    }
+
+    @Benchmark
+    public void intIterateStream(Inputs in, Blackhole bh) {
+        IntStream.of(in.ints).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public double doubleSum(Inputs in) {
+        return Views.viewOf(in.doubles).sum();
+    }
+
+    @Benchmark
+    public double doubleSumStream(Inputs in) {
+        return DoubleStream.of(in.doubles).sum();
+    }
+
+    @Benchmark
+    public void boxedIterate(Inputs in, Blackhole bh) {
+        Inputs.drain(Views.viewOf(in.ints), bh);
+    }
+
+    @Benchmark
+    public void boxedIterateStream(Inputs in, Blackhole bh) {
+        IntStream.of(in.ints).boxed().forEach(bh::consume);
+    }
+}
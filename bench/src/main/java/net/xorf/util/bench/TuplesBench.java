@@ -0,0 +1,58 @@
+package net.xorf.util.bench;
+
+import net.xorf.util.Tuples;
+import net.xorf.util.Tuples.Tuple2;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * <tt>Tuples.zip</tt>/<tt>unzip2</tt> against pairing by index with
+ * streams.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules=jdk.incubator.vector"})
+public class TuplesBench {
+    @Benchmark
+    public void zip(Inputs in, Blackhole bh) {
+        Inputs.drain(Tuples.zip(in.boxed, in.boxed), bh);
+    }
+
+    @Benchmark
+    public void zipStream(Inputs in, Blackhole bh) {
+        final List<Integer> l = in.boxed;
+        IntStream.range(0, l.size())
+                .mapToObj(i -> new AbstractMap.SimpleImmutableEntry<Integer, Integer>(l.get(i), l.get(i)))
+                .forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void unzip(Inputs in, Blackhole bh) {
+        Tuple2<Iterable<Integer>, Iterable<Integer>> u = Tuples.unzip2(Tuples.zip(in.boxed, in.boxed));
+        Inputs.drain(u._1, bh);
+        Inputs.drain(u._2, bh);
+    }
+
+    @Benchmark
+    public void unzipStream(Inputs in, Blackhole bh) {
+        final List<Integer> l = in.boxed;
+        List<Map.Entry<Integer, Integer>> pairs = IntStream.range(0, l.size())
+                .mapToObj(i -> (Map.Entry<Integer, Integer>) new AbstractMap.SimpleImmutableEntry<Integer, Integer>(l.get(i), l.get(i)))
+                .collect(Collectors.toList());
+        pairs.stream().map(Map.Entry::getKey).forEach(bh::consume);
+        pairs.stream().map(Map.Entry::getValue).forEach(bh::consume);
+    }
+}
@@ -0,0 +1,134 @@
+package net.xorf.util.bench;
+
+import net.xorf.util.Views;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The core {@link Views} operations over a boxed list, each next to the
+ * <tt>java.util.stream</tt> code it would replace.  Stream variants are
+ * suffixed <tt>Stream</tt>.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules=jdk.incubator.vector"})
+public class ViewsBench {
+    private static final Views.Mapper<Integer, Integer> TIMES_3 = x -> x * 3;
+    private static final Views.Filter<Integer> EVEN = x -> (x & 1) == 0;
+    private static final Views.Func1<Integer, Integer> MOD_16 = x -> x & 15;
+
+    @Benchmark
+    public void map(Inputs in, Blackhole bh) {
+        Inputs.drain(Views.viewOf(in.boxed).map(TIMES_3), bh);
+    }
+
+    @Benchmark
+    public void mapStream(Inputs in, Blackhole bh) {
+        in.boxed.stream().map(x -> x * 3).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void filter(Inputs in, Blackhole bh) {
+        Inputs.drain(Views.viewOf(in.boxed).filter(EVEN), bh);
+    }
+
+    @Benchmark
+    public void filterStream(Inputs in, Blackhole bh) {
+        in.boxed.stream().filter(x -> (x & 1) == 0).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public int aggregate(Inputs in) {
+        return Views.aggregate(in.boxed, 0, (Integer acc, Integer x) -> acc + x);
+    }
+
+    @Benchmark
+    public int aggregateStream(Inputs in) {
+        return in.boxed.stream().reduce(0, Integer::sum);
+    }
+
+    @Benchmark
+    public int count(Inputs in) {
+        return Views.viewOf(in.boxed).filter(EVEN).count();
+    }
+
+    @Benchmark
+    public long countStream(Inputs in) {
+        return in.boxed.stream().filter(x -> (x & 1) == 0).count();
+    }
+
+    @Benchmark
+    public Integer get(Inputs in) {
+        return Views.viewOf(in.boxed).map(TIMES_3).get(in.size / 2);
+    }
+
+    @Benchmark
+    public Integer getStream(Inputs in) {
+        return in.boxed.stream().map(x -> x * 3).skip(in.size / 2).findFirst().get();
+    }
+
+    @Benchmark
+    public void slice(Inputs in, Blackhole bh) {
+        Inputs.drain(Views.slice(in.boxed, in.size / 4, in.size / 2), bh);
+    }
+
+    @Benchmark
+    public void sliceStream(Inputs in, Blackhole bh) {
+        in.boxed.stream().skip(in.size / 4).limit(in.size / 2).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void grouped(Inputs in, Blackhole bh) {
+        for (Iterable<Integer> group : Views.grouped(in.boxed, 64))
+            Inputs.drain(group, bh);
+    }
+
+    @Benchmark
+    public void groupedStream(Inputs in, Blackhole bh) {
+        //the nearest stream idiom: index-based sublists
+        for (int i = 0; i < in.size; i += 64)
+            in.boxed.subList(i, Math.min(in.size, i + 64)).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void unique(Inputs in, Blackhole bh) {
+        Inputs.drain(Views.unique(in.boxed), bh);
+    }
+
+    @Benchmark
+    public void uniqueStream(Inputs in, Blackhole bh) {
+        in.boxed.stream().distinct().forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void orderBy(Inputs in, Blackhole bh) {
+        Inputs.drain(Views.viewOf(in.boxed).orderBy(MOD_16), bh);
+    }
+
+    @Benchmark
+    public void orderByStream(Inputs in, Blackhole bh) {
+        in.boxed.stream().sorted(Comparator.comparing((Integer x) -> x & 15)).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public Map<Integer, Set<Integer>> groupBy(Inputs in) {
+        return Views.groupBy(in.boxed, MOD_16);
+    }
+
+    @Benchmark
+    public Map<Integer, Set<Integer>> groupByStream(Inputs in) {
+        return in.boxed.stream().collect(Collectors.groupingBy(x -> x & 15, Collectors.toSet()));
+    }
+}
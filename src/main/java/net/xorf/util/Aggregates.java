@@ -0,0 +1,370 @@
+package net.xorf.util;
+
+import net.xorf.util.Views.CombinableAggregate;
+import net.xorf.util.Views.Func0;
+import net.xorf.util.Views.ToDoubleFunc1;
+import net.xorf.util.Views.ToLongFunc1;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Built-in {@link CombinableAggregate}s, as factories of empty (identity)
+ * aggregates, and the parallel reduction behind
+ * <tt>Views.aggregate(source, identity, parallelism)</tt>.
+ *
+ * Partial aggregates - of chunks, threads or time slices - are combined
+ * with <tt>merge</tt>, the receiver always holding the earlier elements, so
+ * order-sensitive aggregates like {@link #first} and {@link #last} merge
+ * correctly too.  For an aggregate kept up to date incrementally, fold each
+ * period into a fresh aggregate and merge it into the running total.
+ */
+public final class Aggregates {
+    private Aggregates() { }
+
+    /** merges <tt>parts</tt>, in order, into a fresh aggregate */
+    public static <TAgg, TElem> CombinableAggregate<TAgg, TElem>
+            mergeAll(Func0<? extends CombinableAggregate<TAgg, TElem>> identity,
+                     Iterable<? extends CombinableAggregate<TAgg, TElem>> parts) {
+        CombinableAggregate<TAgg, TElem> total = identity.call();
+        for (CombinableAggregate<TAgg, TElem> p : parts)
+            total.merge(p);
+        return total;
+    }
+
+    static <TAgg, TElem> TAgg aggregate(Iterable<TElem> source,
+                                        Func0<? extends CombinableAggregate<TAgg, TElem>> identity,
+                                        int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive");
+        List<? extends Iterable<TElem>> parts = parallelism == 1
+                ? Collections.singletonList(source)
+                : Views.split(source, parallelism);
+        if (parts.size() <= 1)
+            return Views.aggregate(source, identity.call());
+
+        //the caller folds the first part while the pool folds the rest;
+        //joining a fork/join task helps run it instead of parking a worker
+        List<Fold<TAgg, TElem>> folds = new ArrayList<Fold<TAgg, TElem>>(parts.size());
+        for (Iterable<TElem> part : parts)
+            folds.add(new Fold<TAgg, TElem>(part, identity));
+        ForkJoinTask.invokeAll(folds);
+        CombinableAggregate<TAgg, TElem> total = folds.get(0).join();
+        for (Fold<TAgg, TElem> f : folds.subList(1, folds.size()))
+            total.merge(f.join());
+        return total.value();
+    }
+
+    /** one part of a parallel aggregate */
+    static final class Fold<TAgg, TElem> extends RecursiveTask<CombinableAggregate<TAgg, TElem>> {
+        private static final long serialVersionUID = 1L;
+        private final transient Iterable<TElem> part;
+        private final transient Func0<? extends CombinableAggregate<TAgg, TElem>> identity;
+
+        Fold(Iterable<TElem> part, Func0<? extends CombinableAggregate<TAgg, TElem>> identity) {
+            this.part = part;
+            this.identity = identity;
+        }
+
+        @Override
+        protected CombinableAggregate<TAgg, TElem> compute() {
+            CombinableAggregate<TAgg, TElem> agg = identity.call();
+            for (TElem e : part)
+                agg.call(e);
+            return agg;
+        }
+    }
+
+    public static <T> Func0<CombinableAggregate<Long, T>> count() {
+        return new Func0<CombinableAggregate<Long, T>>() {
+            @Override
+            public CombinableAggregate<Long, T> call() {
+                return new Count<T>();
+            }
+        };
+    }
+
+    static final class Count<T> implements CombinableAggregate<Long, T> {
+        private long n = 0;
+
+        @Override public void call(T e) { n++; }
+        @Override public Long value() { return n; }
+
+        @Override
+        public void merge(CombinableAggregate<Long, T> other) {
+            n += ((Count<T>) other).n;
+        }
+    }
+
+    public static <T> Func0<CombinableAggregate<Long, T>> longSum(final ToLongFunc1<? super T> value) {
+        return new Func0<CombinableAggregate<Long, T>>() {
+            @Override
+            public CombinableAggregate<Long, T> call() {
+                return new LongSum<T>(value);
+            }
+        };
+    }
+
+    static final class LongSum<T> implements CombinableAggregate<Long, T> {
+        private final ToLongFunc1<? super T> value;
+        private long sum = 0;
+
+        LongSum(ToLongFunc1<? super T> value) {
+            this.value = value;
+        }
+
+        @Override public void call(T e) { sum += value.call(e); }
+        @Override public Long value() { return sum; }
+
+        @Override
+        public void merge(CombinableAggregate<Long, T> other) {
+            sum += ((LongSum<T>) other).sum;
+        }
+    }
+
+    /** a compensated sum, so rounding barely depends on how the source was split */
+    public static <T> Func0<CombinableAggregate<Double, T>> sum(final ToDoubleFunc1<? super T> value) {
+        return new Func0<CombinableAggregate<Double, T>>() {
+            @Override
+            public CombinableAggregate<Double, T> call() {
+                return new Sum<T>(value);
+            }
+        };
+    }
+
+    static final class Sum<T> implements CombinableAggregate<Double, T> {
+        private final ToDoubleFunc1<? super T> value;
+        private final Windows.DoubleSum sum = new Windows.DoubleSum();
+
+        Sum(ToDoubleFunc1<? super T> value) {
+            this.value = value;
+        }
+
+        @Override public void call(T e) { sum.add(value.call(e)); }
+        @Override public Double value() { return sum.value(); }
+
+        @Override
+        public void merge(CombinableAggregate<Double, T> other) {
+            sum.add(((Sum<T>) other).sum.value());
+        }
+    }
+
+    /** null if there are no elements; a null comparator means natural order */
+    public static <T> Func0<CombinableAggregate<T, T>> min(final Comparator<? super T> comparator) {
+        return new Func0<CombinableAggregate<T, T>>() {
+            @Override
+            public CombinableAggregate<T, T> call() {
+                return new Extreme<T>(comparator, false);
+            }
+        };
+    }
+
+    public static <T> Func0<CombinableAggregate<T, T>> max(final Comparator<? super T> comparator) {
+        return new Func0<CombinableAggregate<T, T>>() {
+            @Override
+            public CombinableAggregate<T, T> call() {
+                return new Extreme<T>(comparator, true);
+            }
+        };
+    }
+
+    /** min or max; of equal elements the first is kept */
+    static final class Extreme<T> implements CombinableAggregate<T, T> {
+        private final Comparator<? super T> comparator;
+        private final boolean max;
+        private T best;
+        private boolean any = false;
+
+        Extreme(Comparator<? super T> comparator, boolean max) {
+            this.comparator = comparator;
+            this.max = max;
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean better(T e) {
+            int c = comparator != null ? comparator.compare(e, best) : ((Comparable<? super T>) e).compareTo(best);
+            return max ? c > 0 : c < 0;
+        }
+
+        @Override
+        public void call(T e) {
+            if (!any || better(e)) {
+                best = e;
+                any = true;
+            }
+        }
+
+        @Override public T value() { return best; }
+
+        @Override
+        public void merge(CombinableAggregate<T, T> other) {
+            Extreme<T> o = (Extreme<T>) other;
+            if (o.any)
+                call(o.best);
+        }
+    }
+
+    public static <T> Func0<CombinableAggregate<T, T>> first() {
+        return new Func0<CombinableAggregate<T, T>>() {
+            @Override
+            public CombinableAggregate<T, T> call() {
+                return new Ends<T>(true);
+            }
+        };
+    }
+
+    public static <T> Func0<CombinableAggregate<T, T>> last() {
+        return new Func0<CombinableAggregate<T, T>>() {
+            @Override
+            public CombinableAggregate<T, T> call() {
+                return new Ends<T>(false);
+            }
+        };
+    }
+
+    /** the first or last element; null if there are none */
+    static final class Ends<T> implements CombinableAggregate<T, T> {
+        private final boolean first;
+        private T e;
+        private boolean any = false;
+
+        Ends(boolean first) {
+            this.first = first;
+        }
+
+        @Override
+        public void call(T elem) {
+            if (!first || !any)
+                e = elem;
+            any = true;
+        }
+
+        @Override public T value() { return e; }
+
+        @Override
+        public void merge(CombinableAggregate<T, T> other) {
+            Ends<T> o = (Ends<T>) other;
+            if (o.any)
+                call(o.e);
+        }
+    }
+
+    /** count, mean and variance of <tt>value</tt>, by Welford's method */
+    public static <T> Func0<CombinableAggregate<Moments, T>> moments(final ToDoubleFunc1<? super T> value) {
+        return new Func0<CombinableAggregate<Moments, T>>() {
+            @Override
+            public CombinableAggregate<Moments, T> call() {
+                return new Welford<T>(value);
+            }
+        };
+    }
+
+    /** the mean of <tt>value</tt>; NaN if there are no elements */
+    public static <T> Func0<CombinableAggregate<Double, T>> mean(final ToDoubleFunc1<? super T> value) {
+        return new Func0<CombinableAggregate<Double, T>>() {
+            @Override
+            public CombinableAggregate<Double, T> call() {
+                return new Projection<T>(new Welford<T>(value), false);
+            }
+        };
+    }
+
+    /** the sample variance of <tt>value</tt>; NaN for fewer than two elements */
+    public static <T> Func0<CombinableAggregate<Double, T>> variance(final ToDoubleFunc1<? super T> value) {
+        return new Func0<CombinableAggregate<Double, T>>() {
+            @Override
+            public CombinableAggregate<Double, T> call() {
+                return new Projection<T>(new Welford<T>(value), true);
+            }
+        };
+    }
+
+    /** a snapshot of {@link #moments} */
+    public static final class Moments {
+        private final long count;
+        private final double mean, m2;
+
+        Moments(long count, double mean, double m2) {
+            this.count = count;
+            this.mean = mean;
+            this.m2 = m2;
+        }
+
+        public long count() { return count; }
+        public double mean() { return count == 0 ? Double.NaN : mean; }
+        /** sample variance, dividing by n - 1 */
+        public double variance() { return count < 2 ? Double.NaN : m2 / (count - 1); }
+        public double populationVariance() { return count == 0 ? Double.NaN : m2 / count; }
+        public double stdDev() { return Math.sqrt(variance()); }
+
+        @Override
+        public String toString() {
+            return "Moments(n=" + count + ", mean=" + mean() + ", variance=" + variance() + ")";
+        }
+    }
+
+    static final class Welford<T> implements CombinableAggregate<Moments, T> {
+        private final ToDoubleFunc1<? super T> value;
+        private long n = 0;
+        private double mean = 0, m2 = 0;
+
+        Welford(ToDoubleFunc1<? super T> value) {
+            this.value = value;
+        }
+
+        @Override
+        public void call(T e) {
+            double x = value.call(e);
+            n++;
+            double delta = x - mean;
+            mean += delta / n;
+            m2 += delta * (x - mean);
+        }
+
+        @Override
+        public Moments value() {
+            return new Moments(n, mean, m2);
+        }
+
+        /** Chan et al.'s pairwise update */
+        @Override
+        public void merge(CombinableAggregate<Moments, T> other) {
+            Welford<T> o = (Welford<T>) other;
+            if (o.n == 0)
+                return;
+            long total = n + o.n;
+            double delta = o.mean - mean;
+            mean += delta * o.n / total;
+            m2 += o.m2 + delta * delta * ((double) n * o.n / total);
+            n = total;
+        }
+    }
+
+    /** {@link #mean} and {@link #variance}: one figure of a {@link Welford} */
+    static final class Projection<T> implements CombinableAggregate<Double, T> {
+        private final Welford<T> w;
+        private final boolean variance;
+
+        Projection(Welford<T> w, boolean variance) {
+            this.w = w;
+            this.variance = variance;
+        }
+
+        @Override public void call(T e) { w.call(e); }
+
+        @Override
+        public Double value() {
+            Moments m = w.value();
+            return variance ? m.variance() : m.mean();
+        }
+
+        @Override
+        public void merge(CombinableAggregate<Double, T> other) {
+            w.merge(((Projection<T>) other).w);
+        }
+    }
+}
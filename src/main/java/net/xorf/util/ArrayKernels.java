@@ -0,0 +1,345 @@
+package net.xorf.util;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Terminal operations over ranges of primitive arrays - sums, min/max,
+ * range counts, dot products and range selection.  These back the
+ * operations on the primitive array views returned by
+ * <tt>Views.viewOf(int[]/long[]/float[]/double[])</tt>.
+ *
+ * Two implementations exist: a plain scalar one, and one built on the
+ * <tt>jdk.incubator.vector</tt> API using the platform's preferred vector
+ * species.  The vector kernels are used when that module has been added to
+ * the boot layer (<tt>--add-modules jdk.incubator.vector</tt>) and the
+ * system property <tt>xorf.kernels.scalar</tt> is not set to <tt>true</tt>.
+ * Ranges shorter than a few vectors always take the scalar path.
+ *
+ * All ranges are <tt>[from, to)</tt>; value ranges are <tt>[lo, hi)</tt>.
+ * Vectorized floating point sums and dot products add in a different order
+ * than a sequential loop and may differ from it in the last bits.
+ */
+public final class ArrayKernels {
+
+    //static-only utilities
+    private ArrayKernels() { }
+
+    /** below this many elements the scalar kernels win */
+    private static final int VECTOR_THRESHOLD = 64;
+
+    private static final Impl SCALAR = new ScalarImpl();
+    private static final Impl VECTOR = loadVectorImpl();
+
+    private static Impl loadVectorImpl() {
+        if (Boolean.getBoolean("xorf.kernels.scalar"))
+            return null;
+        try {
+            if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+                return null;
+            return (Impl) Class.forName("net.xorf.util.VectorKernels")
+                    .getDeclaredConstructor().newInstance();
+        } catch (Throwable t) {
+            //module present but unusable on this platform - stay scalar
+            return null;
+        }
+    }
+
+    /** true if the vector kernels are in use */
+    public static boolean isVectorized() {
+        return VECTOR != null;
+    }
+
+    private static Impl impl(int from, int to) {
+        return VECTOR != null && to - from >= VECTOR_THRESHOLD ? VECTOR : SCALAR;
+    }
+
+    private static void checkRange(int length, int from, int to) {
+        if (from < 0 || to > length || from > to)
+            throw new IndexOutOfBoundsException("[" + from + ", " + to + ") of " + length);
+    }
+
+    private static void checkRange(int length, int from, int to, int[] out) {
+        checkRange(length, from, to);
+        if (out.length < to - from)
+            throw new IllegalArgumentException("selection buffer too small");
+    }
+
+    public static long sum(int[] a, int from, int to) {
+        checkRange(a.length, from, to);
+        return impl(from, to).sum(a, from, to);
+    }
+
+    public static long sum(long[] a, int from, int to) {
+        checkRange(a.length, from, to);
+        return impl(from, to).sum(a, from, to);
+    }
+
+    public static float sum(float[] a, int from, int to) {
+        checkRange(a.length, from, to);
+        return impl(from, to).sum(a, from, to);
+    }
+
+    public static double sum(double[] a, int from, int to) {
+        checkRange(a.length, from, to);
+        return impl(from, to).sum(a, from, to);
+    }
+
+    /** @throws NoSuchElementException if the range is empty */
+    public static int min(int[] a, int from, int to) {
+        checkNotEmpty(a.length, from, to);
+        return impl(from, to).min(a, from, to);
+    }
+
+    public static long min(long[] a, int from, int to) {
+        checkNotEmpty(a.length, from, to);
+        return impl(from, to).min(a, from, to);
+    }
+
+    public static float min(float[] a, int from, int to) {
+        checkNotEmpty(a.length, from, to);
+        return impl(from, to).min(a, from, to);
+    }
+
+    public static double min(double[] a, int from, int to) {
+        checkNotEmpty(a.length, from, to);
+        return impl(from, to).min(a, from, to);
+    }
+
+    public static int max(int[] a, int from, int to) {
+        checkNotEmpty(a.length, from, to);
+        return impl(from, to).max(a, from, to);
+    }
+
+    public static long max(long[] a, int from, int to) {
+        checkNotEmpty(a.length, from, to);
+        return impl(from, to).max(a, from, to);
+    }
+
+    public static float max(float[] a, int from, int to) {
+        checkNotEmpty(a.length, from, to);
+        return impl(from, to).max(a, from, to);
+    }
+
+    public static double max(double[] a, int from, int to) {
+        checkNotEmpty(a.length, from, to);
+        return impl(from, to).max(a, from, to);
+    }
+
+    private static void checkNotEmpty(int length, int from, int to) {
+        checkRange(length, from, to);
+        if (from == to)
+            throw new NoSuchElementException("empty range");
+    }
+
+    public static int countInRange(int[] a, int from, int to, int lo, int hi) {
+        checkRange(a.length, from, to);
+        return impl(from, to).countInRange(a, from, to, lo, hi);
+    }
+
+    public static int countInRange(long[] a, int from, int to, long lo, long hi) {
+        checkRange(a.length, from, to);
+        return impl(from, to).countInRange(a, from, to, lo, hi);
+    }
+
+    public static int countInRange(double[] a, int from, int to, double lo, double hi) {
+        checkRange(a.length, from, to);
+        return impl(from, to).countInRange(a, from, to, lo, hi);
+    }
+
+    /**
+     * Writes the index of every element of <tt>a[from, to)</tt> lying in
+     * <tt>[lo, hi)</tt> into <tt>out</tt>, in ascending order.
+     *
+     * @return the number of indexes written
+     */
+    public static int selectRange(int[] a, int from, int to, int lo, int hi, int[] out) {
+        checkRange(a.length, from, to, out);
+        return impl(from, to).selectRange(a, from, to, lo, hi, out);
+    }
+
+    public static int selectRange(long[] a, int from, int to, long lo, long hi, int[] out) {
+        checkRange(a.length, from, to, out);
+        return impl(from, to).selectRange(a, from, to, lo, hi, out);
+    }
+
+    public static int selectRange(double[] a, int from, int to, double lo, double hi, int[] out) {
+        checkRange(a.length, from, to, out);
+        return impl(from, to).selectRange(a, from, to, lo, hi, out);
+    }
+
+    /** dot product of <tt>a[from, to)</tt> and <tt>b[from, to)</tt> */
+    public static float dot(float[] a, float[] b, int from, int to) {
+        checkRange(a.length, from, to);
+        checkRange(b.length, from, to);
+        return impl(from, to).dot(a, b, from, to);
+    }
+
+    public static double dot(double[] a, double[] b, int from, int to) {
+        checkRange(a.length, from, to);
+        checkRange(b.length, from, to);
+        return impl(from, to).dot(a, b, from, to);
+    }
+
+    /**
+     * The kernel set.  Arguments have already been range-checked by the
+     * facade methods above.
+     */
+    static abstract class Impl {
+        abstract long sum(int[] a, int from, int to);
+        abstract long sum(long[] a, int from, int to);
+        abstract float sum(float[] a, int from, int to);
+        abstract double sum(double[] a, int from, int to);
+
+        abstract int min(int[] a, int from, int to);
+        abstract long min(long[] a, int from, int to);
+        abstract float min(float[] a, int from, int to);
+        abstract double min(double[] a, int from, int to);
+
+        abstract int max(int[] a, int from, int to);
+        abstract long max(long[] a, int from, int to);
+        abstract float max(float[] a, int from, int to);
+        abstract double max(double[] a, int from, int to);
+
+        abstract int countInRange(int[] a, int from, int to, int lo, int hi);
+        abstract int countInRange(long[] a, int from, int to, long lo, long hi);
+        abstract int countInRange(double[] a, int from, int to, double lo, double hi);
+
+        abstract int selectRange(int[] a, int from, int to, int lo, int hi, int[] out);
+        abstract int selectRange(long[] a, int from, int to, long lo, long hi, int[] out);
+        abstract int selectRange(double[] a, int from, int to, double lo, double hi, int[] out);
+
+        abstract float dot(float[] a, float[] b, int from, int to);
+        abstract double dot(double[] a, double[] b, int from, int to);
+    }
+
+    static final class ScalarImpl extends Impl {
+        @Override long sum(int[] a, int from, int to) {
+            long s = 0;
+            for (int i = from; i < to; i++) s += a[i];
+            return s;
+        }
+
+        @Override long sum(long[] a, int from, int to) {
+            long s = 0;
+            for (int i = from; i < to; i++) s += a[i];
+            return s;
+        }
+
+        @Override float sum(float[] a, int from, int to) {
+            float s = 0;
+            for (int i = from; i < to; i++) s += a[i];
+            return s;
+        }
+
+        @Override double sum(double[] a, int from, int to) {
+            double s = 0;
+            for (int i = from; i < to; i++) s += a[i];
+            return s;
+        }
+
+        @Override int min(int[] a, int from, int to) {
+            int m = a[from];
+            for (int i = from + 1; i < to; i++) m = Math.min(m, a[i]);
+            return m;
+        }
+
+        @Override long min(long[] a, int from, int to) {
+            long m = a[from];
+            for (int i = from + 1; i < to; i++) m = Math.min(m, a[i]);
+            return m;
+        }
+
+        @Override float min(float[] a, int from, int to) {
+            float m = a[from];
+            for (int i = from + 1; i < to; i++) m = Math.min(m, a[i]);
+            return m;
+        }
+
+        @Override double min(double[] a, int from, int to) {
+            double m = a[from];
+            for (int i = from + 1; i < to; i++) m = Math.min(m, a[i]);
+            return m;
+        }
+
+        @Override int max(int[] a, int from, int to) {
+            int m = a[from];
+            for (int i = from + 1; i < to; i++) m = Math.max(m, a[i]);
+            return m;
+        }
+
+        @Override long max(long[] a, int from, int to) {
+            long m = a[from];
+            for (int i = from + 1; i < to; i++) m = Math.max(m, a[i]);
+            return m;
+        }
+
+        @Override float max(float[] a, int from, int to) {
+            float m = a[from];
+            for (int i = from + 1; i < to; i++) m = Math.max(m, a[i]);
+            return m;
+        }
+
+        @Override double max(double[] a, int from, int to) {
+            double m = a[from];
+            for (int i = from + 1; i < to; i++) m = Math.max(m, a[i]);
+            return m;
+        }
+
+        @Override int countInRange(int[] a, int from, int to, int lo, int hi) {
+            int n = 0;
+            for (int i = from; i < to; i++) n += (a[i] >= lo & a[i] < hi) ? 1 : 0;
+            return n;
+        }
+
+        @Override int countInRange(long[] a, int from, int to, long lo, long hi) {
+            int n = 0;
+            for (int i = from; i < to; i++) n += (a[i] >= lo & a[i] < hi) ? 1 : 0;
+            return n;
+        }
+
+        @Override int countInRange(double[] a, int from, int to, double lo, double hi) {
+            int n = 0;
+            for (int i = from; i < to; i++) n += (a[i] >= lo & a[i] < hi) ? 1 : 0;
+            return n;
+        }
+
+        @Override int selectRange(int[] a, int from, int to, int lo, int hi, int[] out) {
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                out[n] = i;
+                n += (a[i] >= lo & a[i] < hi) ? 1 : 0;
+            }
+            return n;
+        }
+
+        @Override int selectRange(long[] a, int from, int to, long lo, long hi, int[] out) {
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                out[n] = i;
+                n += (a[i] >= lo & a[i] < hi) ? 1 : 0;
+            }
+            return n;
+        }
+
+        @Override int selectRange(double[] a, int from, int to, double lo, double hi, int[] out) {
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                out[n] = i;
+                n += (a[i] >= lo & a[i] < hi) ? 1 : 0;
+            }
+            return n;
+        }
+
+        @Override float dot(float[] a, float[] b, int from, int to) {
+            float s = 0;
+            for (int i = from; i < to; i++) s += a[i] * b[i];
+            return s;
+        }
+
+        @Override double dot(double[] a, double[] b, int from, int to) {
+            double s = 0;
+            for (int i = from; i < to; i++) s += a[i] * b[i];
+            return s;
+        }
+    }
+}
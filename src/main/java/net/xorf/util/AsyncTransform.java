@@ -0,0 +1,172 @@
+package net.xorf.util;
+
+import net.xorf.util.Views.CloseableIterator;
+import net.xorf.util.Views.Func1;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A mapping view like {@link Views.Transform}, but whose mapper runs on
+ * worker threads, with up to <tt>maxConcurrency</tt> calls in flight at
+ * once - for mappers that spend their time blocked on I/O.  Workers are
+ * virtual threads where the JDK has them, daemon platform threads
+ * otherwise.
+ *
+ * The source is iterated on the consumer's thread, only as far ahead as
+ * needed to keep <tt>maxConcurrency</tt> calls running.  In ordered mode
+ * results come out in source order, so one slow element holds back those
+ * after it; in unordered mode they come out as they complete.
+ *
+ * A mapper exception is rethrown from the <tt>next</tt> call that would have
+ * returned its result (ordered) or as soon as it happens (unordered), and
+ * cancels the calls still in flight.  Each iterator is a
+ * {@link CloseableIterator}: closing it - which <tt>first(n)</tt> does once
+ * it has its n elements - cancels outstanding calls and releases the
+ * workers.  Iterators that are simply dropped let their idle workers time
+ * out.
+ */
+public class AsyncTransform<TSource, TDest> extends Views.View<TDest> {
+    protected final Iterable<TSource> source;
+    protected final Func1<TSource, TDest> mapFunc;
+    protected final int maxConcurrency;
+    protected final boolean ordered;
+
+    public AsyncTransform(Iterable<TSource> source, Func1<TSource, TDest> mapper, int maxConcurrency, boolean ordered) {
+        if (maxConcurrency < 1)
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        this.source = source;
+        this.mapFunc = mapper;
+        this.maxConcurrency = maxConcurrency;
+        this.ordered = ordered;
+    }
+
+    @Override
+    public Iterator<TDest> iterator() {
+        return ordered ? this.new OrderedIterator() : this.new UnorderedIterator();
+    }
+
+    abstract class AsyncIterator implements CloseableIterator<TDest> {
+        protected final Iterator<TSource> sourceItr = source.iterator();
+        protected final ExecutorService executor = Threads.boundedExecutor("xorf-mapAsync", maxConcurrency, true);
+        private boolean closed = false;
+
+        abstract int inFlight();
+        abstract void submit(Callable<TDest> task);
+        /** removes and returns the next result to hand out, waiting if need be */
+        abstract Future<TDest> take() throws InterruptedException;
+        abstract void cancelAll();
+
+        private void fill() {
+            while (!closed && inFlight() < maxConcurrency && sourceItr.hasNext()) {
+                final TSource e = sourceItr.next();
+                submit(new Callable<TDest>() {
+                    @Override public TDest call() { return mapFunc.call(e); }
+                });
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (closed)
+                return false;
+            fill();
+            if (inFlight() == 0) {
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public TDest next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            try {
+                Future<TDest> f = take();
+                //keep the pipeline full while we wait
+                fill();
+                return f.get();
+            } catch (ExecutionException e) {
+                close();
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                throw new IllegalStateException(cause);
+            } catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for a mapped element", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed)
+                return;
+            closed = true;
+            cancelAll();
+            executor.shutdownNow();
+            Views.close(sourceItr);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public class OrderedIterator extends AsyncIterator {
+        private final ArrayDeque<Future<TDest>> pending = new ArrayDeque<Future<TDest>>();
+
+        @Override int inFlight() { return pending.size(); }
+
+        @Override void submit(Callable<TDest> task) {
+            pending.add(executor.submit(task));
+        }
+
+        @Override Future<TDest> take() {
+            return pending.poll();
+        }
+
+        @Override void cancelAll() {
+            for (Future<TDest> f : pending)
+                f.cancel(true);
+            pending.clear();
+        }
+    }
+
+    public class UnorderedIterator extends AsyncIterator {
+        private final CompletionService<TDest> completions = new ExecutorCompletionService<TDest>(executor);
+        private final Set<Future<TDest>> pending = new HashSet<Future<TDest>>();
+
+        @Override int inFlight() { return pending.size(); }
+
+        @Override void submit(Callable<TDest> task) {
+            pending.add(completions.submit(task));
+        }
+
+        @Override Future<TDest> take() throws InterruptedException {
+            Future<TDest> f = completions.take();
+            pending.remove(f);
+            return f;
+        }
+
+        @Override void cancelAll() {
+            for (Future<TDest> f : pending)
+                f.cancel(true);
+            pending.clear();
+        }
+    }
+}
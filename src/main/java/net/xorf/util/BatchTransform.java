@@ -0,0 +1,243 @@
+package net.xorf.util;
+
+import net.xorf.util.Views.CloseableIterator;
+import net.xorf.util.Views.Func1;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A transform that hands its mapper up to <tt>batchSize</tt> source
+ * elements at a time and flattens the lists it returns, for mappers that
+ * are much cheaper called in bulk.  Result lists needn't be the same size
+ * as their batches.
+ *
+ * Each iterator reuses one batch list, cleared between calls, so mappers
+ * must not keep a reference to the list they are given.
+ *
+ * With a maximum latency, the source is drained on a background thread and
+ * a batch is handed to the mapper once it is full or once its first element
+ * has waited <tt>maxLatency</tt>, whichever comes first - so a slow source
+ * doesn't hold up elements already read.  The iterator is then a
+ * {@link CloseableIterator}; closing it stops the background thread, as
+ * does dropping it once it has been garbage collected.
+ */
+public class BatchTransform<TSource, TDest> extends Views.View<TDest> {
+    protected final Iterable<TSource> source;
+    protected final Func1<List<TSource>, List<TDest>> mapFunc;
+    protected final int batchSize;
+    /** in nanoseconds; 0 for no latency bound */
+    protected final long maxLatency;
+
+    public BatchTransform(Iterable<TSource> source, int batchSize, Func1<List<TSource>, List<TDest>> mapper) {
+        this(source, batchSize, 0, TimeUnit.NANOSECONDS, mapper);
+    }
+
+    public BatchTransform(Iterable<TSource> source, int batchSize, long maxLatency, TimeUnit unit,
+                          Func1<List<TSource>, List<TDest>> mapper) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("batchSize must be positive");
+        if (maxLatency < 0)
+            throw new IllegalArgumentException("maxLatency cannot be < 0");
+        this.source = source;
+        this.batchSize = batchSize;
+        this.maxLatency = unit.toNanos(maxLatency);
+        this.mapFunc = mapper;
+    }
+
+    @Override
+    public Iterator<TDest> iterator() {
+        return maxLatency > 0 ? this.new TimedBatchIterator() : this.new BatchIterator(source.iterator());
+    }
+
+    public class BatchIterator implements CloseableIterator<TDest> {
+        private final Iterator<TSource> sourceItr;
+        protected final List<TSource> batch = new ArrayList<TSource>(batchSize);
+        private List<TDest> results = Collections.emptyList();
+        private int pos = 0;
+
+        public BatchIterator(Iterator<TSource> sourceItr) {
+            this.sourceItr = sourceItr;
+        }
+
+        /** refills <tt>batch</tt>; false if the source is exhausted */
+        protected boolean fill() {
+            while (batch.size() < batchSize && sourceItr.hasNext())
+                batch.add(sourceItr.next());
+            return !batch.isEmpty();
+        }
+
+        @Override
+        public boolean hasNext() {
+            //mappers may return empty lists, so keep going until a result turns up
+            while (pos == results.size()) {
+                batch.clear();
+                if (!fill())
+                    return false;
+                results = mapFunc.call(batch);
+                pos = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public TDest next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return results.get(pos++);
+        }
+
+        @Override
+        public void close() {
+            Views.close(sourceItr);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Reads the source through a feeder thread.  The feeder owns the source
+     * iterator - it is only ever touched on that thread - and passes
+     * elements, then an end marker or the source's exception, through a
+     * bounded queue.  An iterator dropped without being closed stops its
+     * feeder once it has been garbage collected, as {@link Prefetch} does.
+     */
+    public class TimedBatchIterator extends BatchIterator {
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(batchSize);
+        private final Cleaner.Cleanable cleanable;
+        private boolean ended = false;
+        /** a source failure, thrown once the elements before it are out */
+        private Throwable failure;
+
+        public TimedBatchIterator() {
+            super(null);
+            Thread feeder = Threads.factory("xorf-mapBatch", true).newThread(new Feeder<TSource>(source, queue));
+            cleanable = CLEANER.register(this, interrupter(feeder));
+            feeder.start();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected boolean fill() {
+            if (failure != null)
+                rethrowFailure();
+            if (ended)
+                return false;
+            try {
+                //the latency clock starts with the batch's first element
+                Object o = queue.take();
+                long deadline = System.nanoTime() + maxLatency;
+                while (true) {
+                    if (o == END) {
+                        ended = true;
+                        break;
+                    }
+                    if (o instanceof Failure) {
+                        ended = true;
+                        failure = ((Failure) o).error;
+                        break;
+                    }
+                    batch.add(o == NULL ? null : (TSource) o);
+                    if (batch.size() == batchSize)
+                        break;
+                    long wait = deadline - System.nanoTime();
+                    o = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (o == null)
+                        break;
+                }
+            } catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for source elements", e);
+            }
+            if (batch.isEmpty() && failure != null)
+                rethrowFailure();
+            return !batch.isEmpty();
+        }
+
+        private void rethrowFailure() {
+            Throwable t = failure;
+            failure = null;
+            if (t instanceof RuntimeException)
+                throw (RuntimeException) t;
+            if (t instanceof Error)
+                throw (Error) t;
+            throw new IllegalStateException(t);
+        }
+
+        @Override
+        public void close() {
+            ended = true;
+            cleanable.clean();
+        }
+    }
+
+    //built in a static method so the action can't capture the iterator
+    private static Runnable interrupter(final Thread feeder) {
+        return new Runnable() {
+            @Override public void run() { feeder.interrupt(); }
+        };
+    }
+
+    /**
+     * The feeder thread's work.  It must not refer to the iterator, or the
+     * iterator could never be collected and an abandoned feeder would
+     * block forever on a full queue.
+     */
+    static final class Feeder<TSource> implements Runnable {
+        private final Iterable<TSource> source;
+        private final BlockingQueue<Object> queue;
+
+        Feeder(Iterable<TSource> source, BlockingQueue<Object> queue) {
+            this.source = source;
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            Iterator<TSource> itr = null;
+            try {
+                itr = source.iterator();
+                while (itr.hasNext()) {
+                    TSource e = itr.next();
+                    queue.put(e == null ? NULL : e);
+                }
+                queue.put(END);
+            } catch (InterruptedException e) {
+                //closed by the consumer, or the iterator was collected
+            } catch (Throwable t) {
+                try {
+                    queue.put(new Failure(t));
+                } catch (InterruptedException e) {
+                    //closed by the consumer, or the iterator was collected
+                }
+            } finally {
+                if (itr != null)
+                    Views.close(itr);
+            }
+        }
+    }
+
+    private static final Cleaner CLEANER = Cleaner.create(Threads.factory("xorf-mapBatch-cleaner", false));
+    private static final Object END = new Object();
+    /** stands in for null elements, since a null from <tt>poll</tt> means a timeout */
+    private static final Object NULL = new Object();
+
+    private static final class Failure {
+        final Throwable error;
+
+        Failure(Throwable error) {
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package net.xorf.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Growable, append-only column buffers.  A column holds the values of one
+ * field for a run of rows in a single array - a primitive array for
+ * <tt>int</tt>, <tt>long</tt> and <tt>double</tt> fields, an
+ * <tt>Object[]</tt> otherwise.
+ *
+ * Columns are filled once and then read through views; the views returned
+ * by {@link Column#view()} cover the rows present at the time of the call.
+ *
+ * Use a {@link ColumnBuilder} when the field type is only known at runtime:
+ * it picks a primitive column from the first value it sees and falls back
+ * to a reference column if a later value doesn't fit.
+ */
+public final class Columns {
+
+    //static-only utilities
+    private Columns() { }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    static int grow(int capacity, int needed) {
+        int cap = Math.max(capacity, INITIAL_CAPACITY);
+        while (cap < needed)
+            cap = cap < (Integer.MAX_VALUE >> 1) ? cap << 1 : Integer.MAX_VALUE - 8;
+        return cap;
+    }
+
+    public static abstract class Column<T> {
+        protected int size;
+
+        public int size() {
+            return size;
+        }
+
+        /** the value at <tt>idx</tt>, boxed if the column is primitive */
+        public abstract T get(int idx);
+
+        /** a view over the rows currently in the column */
+        public abstract Views.View<T> view();
+
+        /**
+         * A view over the rows named by the first <tt>count</tt> entries of
+         * <tt>selection</tt>, in selection order.
+         */
+        public abstract Views.View<T> view(int[] selection, int count);
+
+        protected void checkIndex(int idx) {
+            if (idx < 0 || idx >= size)
+                throw new IndexOutOfBoundsException(String.valueOf(idx));
+        }
+    }
+
+    public static final class IntColumn extends Column<Integer> {
+        private int[] data;
+
+        public IntColumn() {
+            this(INITIAL_CAPACITY);
+        }
+
+        public IntColumn(int capacity) {
+            data = new int[capacity];
+        }
+
+        public void add(int value) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, grow(data.length, size + 1));
+            data[size++] = value;
+        }
+
+        public int getInt(int idx) {
+            checkIndex(idx);
+            return data[idx];
+        }
+
+        @Override
+        public Integer get(int idx) {
+            return getInt(idx);
+        }
+
+        /** the backing array; only the first <tt>size()</tt> entries are valid */
+        public int[] array() {
+            return data;
+        }
+
+        @Override
+        public Views.IntView view() {
+            final int[] arr = data;
+            final int end = size;
+            return new Views.IntView() {
+                @Override
+                public PrimitiveIterator.OfInt iterator() {
+                    return new PrimitiveIterator.OfInt() {
+                        private int idx = 0;
+                        @Override public boolean hasNext() { return idx < end; }
+                        @Override public int nextInt() {
+                            if (idx >= end) throw new NoSuchElementException();
+                            return arr[idx++];
+                        }
+                        @Override public void remove() { throw new UnsupportedOperationException(); }
+                    };
+                }
+            };
+        }
+
+        @Override
+        public Views.IntView view(final int[] selection, final int count) {
+            final int[] arr = data;
+            return new Views.IntView() {
+                @Override
+                public PrimitiveIterator.OfInt iterator() {
+                    return new PrimitiveIterator.OfInt() {
+                        private int idx = 0;
+                        @Override public boolean hasNext() { return idx < count; }
+                        @Override public int nextInt() {
+                            if (idx >= count) throw new NoSuchElementException();
+                            return arr[selection[idx++]];
+                        }
+                        @Override public void remove() { throw new UnsupportedOperationException(); }
+                    };
+                }
+            };
+        }
+    }
+
+    public static final class LongColumn extends Column<Long> {
+        private long[] data;
+
+        public LongColumn() {
+            this(INITIAL_CAPACITY);
+        }
+
+        public LongColumn(int capacity) {
+            data = new long[capacity];
+        }
+
+        public void add(long value) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, grow(data.length, size + 1));
+            data[size++] = value;
+        }
+
+        public long getLong(int idx) {
+            checkIndex(idx);
+            return data[idx];
+        }
+
+        @Override
+        public Long get(int idx) {
+            return getLong(idx);
+        }
+
+        /** the backing array; only the first <tt>size()</tt> entries are valid */
+        public long[] array() {
+            return data;
+        }
+
+        @Override
+        public Views.LongView view() {
+            final long[] arr = data;
+            final int end = size;
+            return new Views.LongView() {
+                @Override
+                public PrimitiveIterator.OfLong iterator() {
+                    return new PrimitiveIterator.OfLong() {
+                        private int idx = 0;
+                        @Override public boolean hasNext() { return idx < end; }
+                        @Override public long nextLong() {
+                            if (idx >= end) throw new NoSuchElementException();
+                            return arr[idx++];
+                        }
+                        @Override public void remove() { throw new UnsupportedOperationException(); }
+                    };
+                }
+            };
+        }
+
+        @Override
+        public Views.LongView view(final int[] selection, final int count) {
+            final long[] arr = data;
+            return new Views.LongView() {
+                @Override
+                public PrimitiveIterator.OfLong iterator() {
+                    return new PrimitiveIterator.OfLong() {
+                        private int idx = 0;
+                        @Override public boolean hasNext() { return idx < count; }
+                        @Override public long nextLong() {
+                            if (idx >= count) throw new NoSuchElementException();
+                            return arr[selection[idx++]];
+                        }
+                        @Override public void remove() { throw new UnsupportedOperationException(); }
+                    };
+                }
+            };
+        }
+    }
+
+    public static final class DoubleColumn extends Column<Double> {
+        private double[] data;
+
+        public DoubleColumn() {
+            this(INITIAL_CAPACITY);
+        }
+
+        public DoubleColumn(int capacity) {
+            data = new double[capacity];
+        }
+
+        public void add(double value) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, grow(data.length, size + 1));
+            data[size++] = value;
+        }
+
+        public double getDouble(int idx) {
+            checkIndex(idx);
+            return data[idx];
+        }
+
+        @Override
+        public Double get(int idx) {
+            return getDouble(idx);
+        }
+
+        /** the backing array; only the first <tt>size()</tt> entries are valid */
+        public double[] array() {
+            return data;
+        }
+
+        @Override
+        public Views.DoubleView view() {
+            final double[] arr = data;
+            final int end = size;
+            return new Views.DoubleView() {
+                @Override
+                public PrimitiveIterator.OfDouble iterator() {
+                    return new PrimitiveIterator.OfDouble() {
+                        private int idx = 0;
+                        @Override public boolean hasNext() { return idx < end; }
+                        @Override public double nextDouble() {
+                            if (idx >= end) throw new NoSuchElementException();
+                            return arr[idx++];
+                        }
+                        @Override public void remove() { throw new UnsupportedOperationException(); }
+                    };
+                }
+            };
+        }
+
+        @Override
+        public Views.DoubleView view(final int[] selection, final int count) {
+            final double[] arr = data;
+            return new Views.DoubleView() {
+                @Override
+                public PrimitiveIterator.OfDouble iterator() {
+                    return new PrimitiveIterator.OfDouble() {
+                        private int idx = 0;
+                        @Override public boolean hasNext() { return idx < count; }
+                        @Override public double nextDouble() {
+                            if (idx >= count) throw new NoSuchElementException();
+                            return arr[selection[idx++]];
+                        }
+                        @Override public void remove() { throw new UnsupportedOperationException(); }
+                    };
+                }
+            };
+        }
+    }
+
+    public static final class RefColumn<T> extends Column<T> {
+        private Object[] data;
+
+        public RefColumn() {
+            this(INITIAL_CAPACITY);
+        }
+
+        public RefColumn(int capacity) {
+            data = new Object[capacity];
+        }
+
+        public void add(T value) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, grow(data.length, size + 1));
+            data[size++] = value;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T get(int idx) {
+            checkIndex(idx);
+            return (T) data[idx];
+        }
+
+        /** the backing array; only the first <tt>size()</tt> entries are valid */
+        public Object[] array() {
+            return data;
+        }
+
+        @Override
+        public Views.View<T> view() {
+            final Object[] arr = data;
+            final int end = size;
+            return new Views.View<T>() {
+                @Override
+                public Iterator<T> iterator() {
+                    return new Iterator<T>() {
+                        private int idx = 0;
+                        @Override public boolean hasNext() { return idx < end; }
+                        @SuppressWarnings("unchecked")
+                        @Override public T next() {
+                            if (idx >= end) throw new NoSuchElementException();
+                            return (T) arr[idx++];
+                        }
+                        @Override public void remove() { throw new UnsupportedOperationException(); }
+                    };
+                }
+            };
+        }
+
+        @Override
+        public Views.View<T> view(final int[] selection, final int count) {
+            final Object[] arr = data;
+            return new Views.View<T>() {
+                @Override
+                public Iterator<T> iterator() {
+                    return new Iterator<T>() {
+                        private int idx = 0;
+                        @Override public boolean hasNext() { return idx < count; }
+                        @SuppressWarnings("unchecked")
+                        @Override public T next() {
+                            if (idx >= count) throw new NoSuchElementException();
+                            return (T) arr[selection[idx++]];
+                        }
+                        @Override public void remove() { throw new UnsupportedOperationException(); }
+                    };
+                }
+            };
+        }
+    }
+
+    /**
+     * Fills a column whose element type is only known at runtime.  The first
+     * non-null value decides the column kind: <tt>Integer</tt>, <tt>Long</tt>
+     * and <tt>Double</tt> values go into primitive columns, anything else
+     * into a reference column.  A null, or a value of another type, arriving
+     * later moves the rows collected so far into a reference column.
+     */
+    public static final class ColumnBuilder<T> {
+        private static final int EMPTY = 0, INT = 1, LONG = 2, DOUBLE = 3, REF = 4;
+
+        private int kind = EMPTY;
+        private int leadingNulls = 0;
+        private Column<?> column;
+
+        @SuppressWarnings("unchecked")
+        public void add(T value) {
+            switch (kind) {
+                case INT:
+                    if (value instanceof Integer) { ((IntColumn) column).add((Integer) value); return; }
+                    break;
+                case LONG:
+                    if (value instanceof Long) { ((LongColumn) column).add((Long) value); return; }
+                    break;
+                case DOUBLE:
+                    if (value instanceof Double) { ((DoubleColumn) column).add((Double) value); return; }
+                    break;
+                case REF:
+                    ((RefColumn<T>) column).add(value);
+                    return;
+                default:
+                    if (value == null) { leadingNulls++; return; }
+                    start(value);
+                    add(value);
+                    return;
+            }
+            toRef();
+            ((RefColumn<T>) column).add(value);
+        }
+
+        private void start(T value) {
+            if (leadingNulls > 0) {
+                toRef();
+                return;
+            }
+            if (value instanceof Integer) { kind = INT; column = new IntColumn(); }
+            else if (value instanceof Long) { kind = LONG; column = new LongColumn(); }
+            else if (value instanceof Double) { kind = DOUBLE; column = new DoubleColumn(); }
+            else { kind = REF; column = new RefColumn<T>(); }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void toRef() {
+            RefColumn<T> ref = new RefColumn<T>(Math.max(INITIAL_CAPACITY, leadingNulls + (column == null ? 0 : column.size())));
+            for (int i = 0; i < leadingNulls; i++)
+                ref.add(null);
+            if (column != null)
+                for (int i = 0; i < column.size(); i++)
+                    ref.add((T) column.get(i));
+            leadingNulls = 0;
+            column = ref;
+            kind = REF;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Column<T> build() {
+            if (kind == EMPTY) {
+                //all nulls, or nothing at all
+                toRef();
+            }
+            return (Column<T>) column;
+        }
+    }
+}
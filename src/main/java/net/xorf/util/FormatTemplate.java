@@ -0,0 +1,179 @@
+package net.xorf.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A <tt>String.format</tt> pattern applied to a single string argument,
+ * parsed once so that formatting doesn't go through <tt>Formatter</tt>
+ * for every call.
+ *
+ * Patterns made only of literal text, <tt>%%</tt>, <tt>%n</tt> and
+ * <tt>%s</tt> conversions (optionally with argument index 1, the
+ * <tt>-</tt> flag and a width, e.g. <tt>%1$-10s</tt>) are rendered directly.
+ * Anything else falls back to a <tt>Formatter</tt> writing to the same
+ * output, so results are always those of <tt>String.format(pattern, arg)</tt>.
+ */
+public final class FormatTemplate {
+    private static final int MAX_CACHED = 256;
+    private static final ConcurrentMap<String, FormatTemplate> TEMPLATES =
+            new ConcurrentHashMap<String, FormatTemplate>();
+
+    private final String pattern;
+    /** literal text around the slots; null if the pattern needs a Formatter */
+    private final String[] literals;
+    private final int[] widths;
+    private final boolean[] leftAlign;
+
+    private FormatTemplate(String pattern, String[] literals, int[] widths, boolean[] leftAlign) {
+        this.pattern = pattern;
+        this.literals = literals;
+        this.widths = widths;
+        this.leftAlign = leftAlign;
+    }
+
+    public static FormatTemplate compile(String pattern) {
+        FormatTemplate t = TEMPLATES.get(pattern);
+        if (t == null) {
+            t = parse(pattern);
+            if (TEMPLATES.size() < MAX_CACHED)
+                TEMPLATES.putIfAbsent(pattern, t);
+        }
+        return t;
+    }
+
+    private static FormatTemplate parse(String pattern) {
+        List<String> literals = new ArrayList<String>();
+        List<Integer> widths = new ArrayList<Integer>();
+        List<Boolean> left = new ArrayList<Boolean>();
+        StringBuilder lit = new StringBuilder();
+        int ordinary = 0;
+        int len = pattern.length();
+        for (int i = 0; i < len; i++) {
+            char c = pattern.charAt(i);
+            if (c != '%') {
+                lit.append(c);
+                continue;
+            }
+            if (++i == len)
+                return fallback(pattern);
+            c = pattern.charAt(i);
+            if (c == '%') { lit.append('%'); continue; }
+            if (c == 'n') { lit.append(System.lineSeparator()); continue; }
+
+            //each unindexed %s takes the next argument, and there is only one
+            if (pattern.startsWith("1$", i))
+                i += 2;
+            else if (++ordinary > 1)
+                return fallback(pattern);
+            boolean leftAlign = false;
+            if (i < len && pattern.charAt(i) == '-') {
+                leftAlign = true;
+                i++;
+            }
+            //a leading 0 would be a flag
+            if (i < len && pattern.charAt(i) == '0')
+                return fallback(pattern);
+            int width = 0;
+            while (i < len && Character.isDigit(pattern.charAt(i))) {
+                width = width * 10 + (pattern.charAt(i) - '0');
+                if (width > 1 << 20)
+                    return fallback(pattern);
+                i++;
+            }
+            //'-' needs a width
+            if (i == len || pattern.charAt(i) != 's' || (leftAlign && width == 0))
+                return fallback(pattern);
+            literals.add(lit.toString());
+            lit.setLength(0);
+            widths.add(width);
+            left.add(leftAlign);
+        }
+        literals.add(lit.toString());
+
+        int[] w = new int[widths.size()];
+        boolean[] l = new boolean[left.size()];
+        for (int i = 0; i < w.length; i++) {
+            w[i] = widths.get(i);
+            l[i] = left.get(i);
+        }
+        return new FormatTemplate(pattern, literals.toArray(new String[literals.size()]), w, l);
+    }
+
+    private static FormatTemplate fallback(String pattern) {
+        return new FormatTemplate(pattern, null, null, null);
+    }
+
+    public String pattern() {
+        return pattern;
+    }
+
+    /** true if the pattern is rendered without a <tt>Formatter</tt> */
+    public boolean isDirect() {
+        return literals != null;
+    }
+
+    /**
+     * true if the pattern contains exactly one unpadded <tt>%s</tt>, so the
+     * argument can be streamed between {@link #appendPrefix} and
+     * {@link #appendSuffix} rather than built up front.
+     */
+    public boolean canWrap() {
+        return literals != null && widths.length == 1 && widths[0] == 0;
+    }
+
+    /** true if the argument doesn't appear in the output at all */
+    public boolean ignoresArgument() {
+        return literals != null && widths.length == 0;
+    }
+
+    public <A extends Appendable> A appendPrefix(A out) throws IOException {
+        out.append(literals[0]);
+        return out;
+    }
+
+    public <A extends Appendable> A appendSuffix(A out) throws IOException {
+        out.append(literals[literals.length - 1]);
+        return out;
+    }
+
+    /** appends <tt>String.format(pattern, arg)</tt> to <tt>out</tt> */
+    public <A extends Appendable> A format(A out, CharSequence arg) throws IOException {
+        if (literals == null) {
+            //not closed, which would close out; a Formatter keeps write failures to itself
+            Formatter f = new Formatter(out).format(pattern, arg == null ? null : arg.toString());
+            if (f.ioException() != null)
+                throw f.ioException();
+            return out;
+        }
+        CharSequence a = arg == null ? "null" : arg;
+        for (int i = 0; i < widths.length; i++) {
+            out.append(literals[i]);
+            int pad = widths[i] - a.length();
+            if (pad > 0 && !leftAlign[i])
+                for (int p = 0; p < pad; p++) out.append(' ');
+            out.append(a);
+            if (pad > 0 && leftAlign[i])
+                for (int p = 0; p < pad; p++) out.append(' ');
+        }
+        out.append(literals[literals.length - 1]);
+        return out;
+    }
+
+    public String format(CharSequence arg) {
+        try {
+            return format(new StringBuilder(), arg).toString();
+        } catch (IOException e) {
+            throw new AssertionError(e); //StringBuilder doesn't throw
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -2,9 +2,12 @@ package net.xorf.util;
 
 import java.lang.reflect.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class GenericReflectionUtils {
     /**
@@ -34,43 +37,51 @@ public class GenericReflectionUtils {
         }
     }
 
+    /**
+     * Resolved type arguments, cached per child class.  Keeping the cache in
+     * a <tt>ClassValue</tt> ties each entry to the child class itself, so
+     * caching doesn't keep classes (or their loaders) from being unloaded.
+     * The inner map is keyed by base class.
+     */
+    private static final ClassValue<ConcurrentMap<Class<?>, List<Class<?>>>> TYPE_ARGUMENTS =
+            new ClassValue<ConcurrentMap<Class<?>, List<Class<?>>>>() {
+                @Override
+                protected ConcurrentMap<Class<?>, List<Class<?>>> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<Class<?>, List<Class<?>>>(4);
+                }
+            };
+
     /**
      * Get the actual type arguments a child class has used to extend a generic
-     * base class.
+     * base class or implement a generic interface.  Results are cached, so
+     * repeated calls for the same pair of classes don't reflect again.
      * 
      * @param baseClass
-     *            the base class
+     *            the base class or interface
      * @param childClass
      *            the child class
-     * @return a list of the raw classes for the actual type arguments.
+     * @return an unmodifiable list of the raw classes for the actual type
+     *            arguments; an entry is null if its type argument can't be
+     *            resolved to a class (e.g. it is still a type variable)
      */
     public static <T> List<Class<?>> getTypeArguments(Class<T> baseClass,
             Class<? extends T> childClass) {
-        Map<Type, Type> resolvedTypes = new HashMap<Type, Type>();
-        Type type = childClass;
-        // start walking up the inheritance hierarchy until we hit baseClass
-        while (!getClass(type).equals(baseClass)) {
-            if (type instanceof Class) {
-                // there is no useful information for us in raw types, so just
-                // keep going.
-                type = ((Class<?>) type).getGenericSuperclass();
-            } else {
-                ParameterizedType parameterizedType = (ParameterizedType) type;
-                Class<?> rawType = (Class<?>) parameterizedType.getRawType();
-
-                Type[] actualTypeArguments = parameterizedType
-                        .getActualTypeArguments();
-                TypeVariable<?>[] typeParameters = rawType.getTypeParameters();
-                for (int i = 0; i < actualTypeArguments.length; i++) {
-                    resolvedTypes
-                            .put(typeParameters[i], actualTypeArguments[i]);
-                }
-
-                if (!rawType.equals(baseClass)) {
-                    type = rawType.getGenericSuperclass();
-                }
-            }
+        ConcurrentMap<Class<?>, List<Class<?>>> cached = TYPE_ARGUMENTS.get(childClass);
+        List<Class<?>> ret = cached.get(baseClass);
+        if (ret == null) {
+            ret = Collections.unmodifiableList(resolveTypeArguments(baseClass, childClass));
+            List<Class<?>> prev = cached.putIfAbsent(baseClass, ret);
+            if (prev != null)
+                ret = prev;
         }
+        return ret;
+    }
+
+    private static List<Class<?>> resolveTypeArguments(Class<?> baseClass, Class<?> childClass) {
+        Map<Type, Type> resolvedTypes = new HashMap<Type, Type>();
+        Type type = findSupertype(childClass, baseClass, resolvedTypes);
+        if (type == null)
+            throw new IllegalArgumentException(childClass + " does not extend " + baseClass);
 
         // finally, for each actual type argument provided to baseClass,
         // determine (if possible)
@@ -82,7 +93,7 @@ public class GenericReflectionUtils {
             actualTypeArguments = ((ParameterizedType) type)
                     .getActualTypeArguments();
         }
-        List<Class<?>> typeArgumentsAsClasses = new ArrayList<Class<?>>();
+        List<Class<?>> typeArgumentsAsClasses = new ArrayList<Class<?>>(actualTypeArguments.length);
         // resolve types by chasing down type variables.
         for (Type baseType : actualTypeArguments) {
             while (resolvedTypes.containsKey(baseType)) {
@@ -92,6 +103,49 @@ public class GenericReflectionUtils {
         }
         return typeArgumentsAsClasses;
     }
+
+    /**
+     * Depth-first search from <tt>type</tt> up through superclasses and
+     * interfaces for <tt>baseClass</tt>, recording the binding of every
+     * type parameter passed on the way in <tt>resolvedTypes</tt>.
+     *
+     * @return the (possibly parameterized) type under which <tt>baseClass</tt>
+     *          was reached, or null if it isn't a supertype
+     */
+    private static Type findSupertype(Type type, Class<?> baseClass, Map<Type, Type> resolvedTypes) {
+        Class<?> rawType = getClass(type);
+        if (rawType == null)
+            return null;
+
+        if (type instanceof ParameterizedType) {
+            Type[] actualTypeArguments = ((ParameterizedType) type)
+                    .getActualTypeArguments();
+            TypeVariable<?>[] typeParameters = rawType.getTypeParameters();
+            for (int i = 0; i < actualTypeArguments.length; i++) {
+                resolvedTypes
+                        .put(typeParameters[i], actualTypeArguments[i]);
+            }
+        }
+
+        if (rawType.equals(baseClass))
+            return type;
+
+        if (!baseClass.isAssignableFrom(rawType))
+            return null;
+
+        Type superclass = rawType.getGenericSuperclass();
+        if (superclass != null) {
+            Type found = findSupertype(superclass, baseClass, resolvedTypes);
+            if (found != null)
+                return found;
+        }
+        for (Type iface : rawType.getGenericInterfaces()) {
+            Type found = findSupertype(iface, baseClass, resolvedTypes);
+            if (found != null)
+                return found;
+        }
+        return null;
+    }
     
     public abstract static class GenericParamWrapper<T> {
         private Iterable<T> wrapped;
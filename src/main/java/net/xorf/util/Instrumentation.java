@@ -0,0 +1,330 @@
+package net.xorf.util;
+
+import net.xorf.util.Views.CloseableIterator;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-stage counters for view pipelines: elements produced, time spent and,
+ * optionally, bytes allocated.
+ *
+ * A stage is instrumented explicitly with <tt>View.instrument(name)</tt>,
+ * or - with <tt>-Dxorf.instrument=true</tt> - every stage built by
+ * <tt>viewOf</tt>, <tt>map</tt>, <tt>filter</tt>, <tt>unique</tt>,
+ * <tt>first</tt>, <tt>from</tt>, <tt>concatenate</tt> and <tt>orderBy</tt>
+ * is.  {@link #ENABLED} is a constant, so with the property unset the
+ * checks in those factories are folded away by the JIT.
+ *
+ * Every element is counted, but after the first (timed outright, since it
+ * pays for warm-up) only about one in {@value #SAMPLE_EVERY} is timed,
+ * from the first <tt>hasNext</tt> or <tt>next</tt> call for it to the
+ * <tt>next</tt> that returns it, and the sampled time is scaled up to the
+ * elements counted.  The gaps between samples are random, so stages don't
+ * all sample the same elements and charge each other for their clock
+ * reads.  Calls that end iteration are timed only when they fall on a
+ * sample.
+ *
+ * Times are inclusive: a stage's iterator pulls from the stages upstream of
+ * it, so its time includes theirs.  {@link #report} subtracts the nearest
+ * instrumented stages upstream to give each stage's own time, and
+ * their element counts to give its input count and selectivity.
+ *
+ * Counters are kept per iterator and published to the {@link Stage} (and
+ * the {@link MetricsSink}, if one is set) every {@value #FLUSH_EVERY}
+ * elements and when the iterator ends or is closed.  Allocation sampling
+ * (<tt>-Dxorf.instrument.allocations=true</tt> or
+ * {@link #setAllocationSampling}) reads the thread's allocation counter at
+ * those same points only, and needs a HotSpot-compatible JVM.
+ */
+public final class Instrumentation {
+    /** whether the <tt>Views</tt> factories instrument every stage they build */
+    public static final boolean ENABLED = Boolean.getBoolean("xorf.instrument");
+
+    private static final int FLUSH_EVERY = 4096;
+    /** the mean gap between timed elements */
+    private static final int SAMPLE_EVERY = 16;
+    private static final AtomicInteger IDS = new AtomicInteger();
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private static volatile boolean sampleAllocations = Boolean.getBoolean("xorf.instrument.allocations");
+    private static volatile MetricsSink sink;
+
+    /** receives each stage's counters as they are published, as deltas */
+    public interface MetricsSink {
+        void record(Stage stage, long elements, long nanos, long allocatedBytes);
+    }
+
+    private Instrumentation() { }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        try {
+            java.lang.management.ThreadMXBean b = ManagementFactory.getThreadMXBean();
+            if (b instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) b).isThreadAllocatedMemorySupported())
+                return (com.sun.management.ThreadMXBean) b;
+        } catch (LinkageError e) {
+            //not a HotSpot-compatible JVM
+        }
+        return null;
+    }
+
+    public static void setSink(MetricsSink s) {
+        sink = s;
+    }
+
+    public static void setAllocationSampling(boolean on) {
+        sampleAllocations = on;
+    }
+
+    public static <T> Views.View<T> instrument(String name, Iterable<T> view) {
+        if (view instanceof InstrumentedView) {
+            //already wrapped in global mode: rename rather than nest; nothing has
+            //iterated the new view yet, so its stage starts from zero
+            InstrumentedView<T> iv = (InstrumentedView<T>) view;
+            return new InstrumentedView<T>(name, iv.view, iv.upstream);
+        }
+        return new InstrumentedView<T>(name, view, Views.upstreams(view));
+    }
+
+    /** the global-mode wrapper used by the factories */
+    static <T> Views.View<T> stage(String name, Views.View<T> view) {
+        return new InstrumentedView<T>(name, view, Views.upstreams(view));
+    }
+
+    /** @return the counters of <tt>view</tt>, or null if it isn't instrumented */
+    public static Stage stageOf(Iterable<?> view) {
+        return view instanceof InstrumentedView ? ((InstrumentedView<?>) view).stage : null;
+    }
+
+    public static final class Stage {
+        private final int id = IDS.incrementAndGet();
+        private final String name, kind;
+        private final LongAdder elements = new LongAdder(), nanos = new LongAdder(),
+                allocated = new LongAdder(), iterations = new LongAdder();
+
+        Stage(String name, String kind) {
+            this.name = name;
+            this.kind = kind;
+        }
+
+        public int id() { return id; }
+        public String name() { return name; }
+        /** the class of the instrumented view */
+        public String kind() { return kind; }
+        public long elements() { return elements.sum(); }
+        public long nanos() { return nanos.sum(); }
+        public long allocatedBytes() { return allocated.sum(); }
+        public long iterations() { return iterations.sum(); }
+
+        public void reset() {
+            elements.reset();
+            nanos.reset();
+            allocated.reset();
+            iterations.reset();
+        }
+
+        void publish(long n, long t, long bytes) {
+            elements.add(n);
+            nanos.add(t);
+            allocated.add(bytes);
+            MetricsSink s = sink;
+            if (s != null)
+                s.record(this, n, t, bytes);
+        }
+
+        @Override
+        public String toString() {
+            return "Stage(" + id + " " + name + ": " + elements() + " elements, " + nanos() + "ns)";
+        }
+    }
+
+    static final class InstrumentedView<T> extends Views.View<T> {
+        final Iterable<T> view;
+        final List<Iterable<?>> upstream;
+        final Stage stage;
+
+        InstrumentedView(String name, Iterable<T> view, List<Iterable<?>> upstream) {
+            this.view = view;
+            this.upstream = upstream;
+            this.stage = new Stage(name, view.getClass().getSimpleName());
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new CountingIterator<T>(view, stage);
+        }
+    }
+
+    static final class CountingIterator<T> implements CloseableIterator<T> {
+        private final Stage stage;
+        private final Iterator<T> itr;
+        private final long thread;
+        /** elements since the last flush, those of them sampled, and those timed outright */
+        private long count = 0, sampled = 0, exact = 0;
+        /** elements so far, and to skip before the next sample */
+        private long seen = 0;
+        private int untilSample = 0;
+        /** time measured outright, and time of the sampled elements */
+        private long exactNanos = 0, sampledNanos = 0, allocMark;
+        /** when the element being sampled was first asked for, or -1 */
+        private long sampleStart = -1;
+        private boolean finished = false;
+
+        CountingIterator(Iterable<T> view, Stage stage) {
+            this.stage = stage;
+            stage.iterations.increment();
+            thread = Thread.currentThread().getId();
+            allocMark = allocated();
+            long t0 = System.nanoTime();
+            itr = view.iterator(); //eager stages do their work here
+            exactNanos += System.nanoTime() - t0;
+        }
+
+        private long allocated() {
+            return sampleAllocations && THREADS != null ? THREADS.getThreadAllocatedBytes(thread) : -1;
+        }
+
+        private void flush() {
+            long bytes = 0;
+            if (allocMark >= 0 && Thread.currentThread().getId() == thread) {
+                long now = allocated();
+                if (now >= 0)
+                    bytes = now - allocMark;
+                allocMark = now;
+            }
+            long nanos = exactNanos;
+            if (sampled > 0)
+                nanos += (long) ((double) sampledNanos * (count - exact) / sampled);
+            stage.publish(count, nanos, bytes);
+            count = sampled = exact = 0;
+            exactNanos = sampledNanos = 0;
+        }
+
+        /** starts the clock if the element about to be pulled is a sample */
+        private void startSample() {
+            if (sampleStart < 0 && untilSample == 0)
+                sampleStart = System.nanoTime();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (finished)
+                return false;
+            startSample();
+            boolean more = itr.hasNext();
+            if (!more) {
+                if (sampleStart >= 0) {
+                    exactNanos += System.nanoTime() - sampleStart;
+                    sampleStart = -1;
+                }
+                close();
+            }
+            return more;
+        }
+
+        @Override
+        public T next() {
+            startSample();
+            T e = itr.next();
+            if (sampleStart >= 0) {
+                long t = System.nanoTime() - sampleStart;
+                sampleStart = -1;
+                if (seen == 0) {
+                    exactNanos += t;
+                    exact++;
+                } else {
+                    sampledNanos += t;
+                    sampled++;
+                }
+                untilSample = ThreadLocalRandom.current().nextInt(2 * SAMPLE_EVERY - 1);
+            } else {
+                untilSample--;
+            }
+            seen++;
+            if (++count == FLUSH_EVERY)
+                flush();
+            return e;
+        }
+
+        @Override
+        public void close() {
+            if (finished)
+                return;
+            finished = true;
+            Views.close(itr);
+            flush();
+        }
+
+        @Override
+        public void remove() {
+            itr.remove();
+        }
+    }
+
+    /**
+     * A text tree of the pipeline ending at <tt>view</tt>, one line per
+     * stage, upstream stages indented below the stages reading them.
+     * Views that aren't instrumented are listed by class, without counters.
+     */
+    public static String report(Iterable<?> view) {
+        StringBuilder sb = new StringBuilder();
+        report(sb, view, 0);
+        return sb.toString();
+    }
+
+    private static void report(StringBuilder sb, Iterable<?> view, int depth) {
+        for (int i = 0; i < depth; i++)
+            sb.append("  ");
+        if (!(view instanceof InstrumentedView)) {
+            sb.append(view == null ? "null" : view.getClass().getSimpleName()).append('\n');
+            if (view != null)
+                for (Iterable<?> up : Views.upstreams(view))
+                    report(sb, up, depth + 1);
+            return;
+        }
+        InstrumentedView<?> v = (InstrumentedView<?>) view;
+        Stage s = v.stage;
+        long out = s.elements(), total = s.nanos();
+        long[] in = {0, 0}; //elements, nanos of the instrumented stages feeding this one
+        boolean known = true;
+        for (Iterable<?> up : v.upstream)
+            known &= sumUpstream(up, in);
+        sb.append(String.format(Locale.ROOT, "[%d] %s (%s)", s.id, s.name, s.kind));
+        if (known)
+            sb.append(String.format(Locale.ROOT, "  in %,d", in[0]));
+        sb.append(String.format(Locale.ROOT, "  out %,d", out));
+        if (known && in[0] > 0)
+            sb.append(String.format(Locale.ROOT, "  selectivity %.1f%%", 100.0 * out / in[0]));
+        sb.append(String.format(Locale.ROOT, "  self %.3f ms  total %.3f ms",
+                Math.max(0, total - in[1]) / 1e6, total / 1e6));
+        if (s.allocatedBytes() > 0)
+            sb.append(String.format(Locale.ROOT, "  alloc %,d B", s.allocatedBytes()));
+        sb.append(String.format(Locale.ROOT, "  iterations %d\n", s.iterations()));
+        for (Iterable<?> up : v.upstream)
+            report(sb, up, depth + 1);
+    }
+
+    /** @return false if some path upstream reaches a source that isn't instrumented */
+    private static boolean sumUpstream(Iterable<?> up, long[] acc) {
+        if (up instanceof InstrumentedView) {
+            Stage s = ((InstrumentedView<?>) up).stage;
+            acc[0] += s.elements();
+            acc[1] += s.nanos();
+            return true;
+        }
+        List<Iterable<?>> ups = up == null ? Collections.<Iterable<?>>emptyList() : Views.upstreams(up);
+        if (ups.isEmpty())
+            return false;
+        boolean known = true;
+        for (Iterable<?> u : ups)
+            known &= sumUpstream(u, acc);
+        return known;
+    }
+}
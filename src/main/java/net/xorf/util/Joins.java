@@ -0,0 +1,215 @@
+package net.xorf.util;
+
+import net.xorf.util.Views.CloseableIterator;
+import net.xorf.util.Views.Func1;
+import net.xorf.util.Views.ToLongFunc1;
+
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The views behind <tt>Views.intersect</tt>, <tt>except</tt>,
+ * <tt>semiJoin</tt> and <tt>antiJoin</tt>: each iterator reads the right
+ * side's keys into a {@link KeySet} and streams the left side past them.
+ * Like the other views the joins are live - an iterator sees both sides
+ * as they are when it is created (and a hash set on the right, used as
+ * it is, as it is while iterating).
+ */
+final class Joins {
+    private Joins() { }
+
+    /** the Bloom filter's hash: the key's own hashCode, which strings cache */
+    private static final ToLongFunc1<Object> HASH_CODE = new ToLongFunc1<Object>() {
+        @Override
+        public long call(Object key) {
+            return key == null ? 0 : Sketches.mix64(key.hashCode());
+        }
+    };
+
+    /**
+     * An open-addressing hash set: one reference per slot and no entry
+     * objects, at half the memory of a <tt>HashSet</tt> or less.
+     */
+    static final class KeySet {
+        private Object[] keys;
+        private int size;
+        private boolean hasNull;
+
+        KeySet(int expectedSize) {
+            keys = new Object[PrimitiveMaps.tableSize(expectedSize)];
+        }
+
+        private int slot(Object key) {
+            int mask = keys.length - 1;
+            int i = PrimitiveMaps.mix(key) & mask;
+            while (keys[i] != null && !keys[i].equals(key))
+                i = (i + 1) & mask;
+            return i;
+        }
+
+        int size() { return size + (hasNull ? 1 : 0); }
+
+        boolean contains(Object key) {
+            return key == null ? hasNull : keys[slot(key)] != null;
+        }
+
+        /** @return false if <tt>key</tt> was already present */
+        boolean add(Object key) {
+            if (key == null) {
+                boolean added = !hasNull;
+                hasNull = true;
+                return added;
+            }
+            int i = slot(key);
+            if (keys[i] != null)
+                return false;
+            keys[i] = key;
+            if (++size * 2 > keys.length)
+                rehash();
+            return true;
+        }
+
+        private void rehash() {
+            Object[] old = keys;
+            keys = new Object[old.length << 1];
+            for (Object k : old)
+                if (k != null)
+                    keys[slot(k)] = k;
+        }
+
+        void putAll(Sketches.BloomFilter<Object> bloom) {
+            if (hasNull)
+                bloom.put(null);
+            for (Object k : keys)
+                if (k != null)
+                    bloom.put(k);
+        }
+    }
+
+    /** the built right side */
+    static final class Probe {
+        private final Set<?> set;
+        private final KeySet keys;
+        private final Sketches.BloomFilter<Object> bloom;
+
+        private Probe(Set<?> set, KeySet keys, Sketches.BloomFilter<Object> bloom) {
+            this.set = set;
+            this.keys = keys;
+            this.bloom = bloom;
+        }
+
+        static <TRight> Probe build(Iterable<? extends TRight> right, Func1<? super TRight, ?> key, double fpp) {
+            Iterable<?> src = Views.unwrap(right);
+            //equals-based sets are used as they are (see Views.contains)
+            if (key == null && Double.isNaN(fpp)
+                    && (src instanceof HashSet || src instanceof EnumSet || src instanceof ConcurrentHashMap.KeySetView))
+                return new Probe((Set<?>) src, null, null);
+
+            int size = Views.sizeIfKnown(right);
+            KeySet keys = new KeySet(size < 0 ? 16 : size);
+            Iterator<? extends TRight> itr = right.iterator();
+            try {
+                while (itr.hasNext()) {
+                    TRight e = itr.next();
+                    keys.add(key == null ? e : key.call(e));
+                }
+            } finally {
+                Views.close(itr);
+            }
+            Sketches.BloomFilter<Object> bloom = null;
+            if (!Double.isNaN(fpp)) {
+                bloom = Sketches.bloomFilter(keys.size(), fpp, HASH_CODE);
+                keys.putAll(bloom);
+            }
+            return new Probe(null, keys, bloom);
+        }
+
+        boolean contains(Object key) {
+            if (set != null)
+                return set.contains(key);
+            if (bloom != null && !bloom.mightContain(key))
+                return false;
+            return keys.contains(key);
+        }
+    }
+
+    /**
+     * The elements of <tt>left</tt> whose keys are (or with <tt>anti</tt>,
+     * aren't) among <tt>right</tt>'s, optionally only the first with each
+     * key.  A null key function is the identity; a NaN <tt>fpp</tt> means
+     * no Bloom filter.
+     */
+    static final class JoinView<T, TRight> extends Views.View<T> {
+        final Iterable<T> left;
+        final Iterable<? extends TRight> right;
+        private final Func1<? super T, ?> leftKey;
+        private final Func1<? super TRight, ?> rightKey;
+        private final boolean anti, distinct;
+        private final double fpp;
+
+        JoinView(Iterable<T> left, Iterable<? extends TRight> right, Func1<? super T, ?> leftKey,
+                 Func1<? super TRight, ?> rightKey, boolean anti, boolean distinct, double fpp) {
+            this.left = left;
+            this.right = right;
+            this.leftKey = leftKey;
+            this.rightKey = rightKey;
+            this.anti = anti;
+            this.distinct = distinct;
+            this.fpp = fpp;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new JoinIterator(Probe.build(right, rightKey, fpp));
+        }
+
+        final class JoinIterator implements CloseableIterator<T> {
+            private final Probe probe;
+            private final Iterator<T> itr = left.iterator();
+            private final KeySet seen = distinct ? new KeySet(16) : null;
+            private T next;
+            private boolean ready = false;
+
+            JoinIterator(Probe probe) {
+                this.probe = probe;
+            }
+
+            @Override
+            public boolean hasNext() {
+                while (!ready && itr.hasNext()) {
+                    T e = itr.next();
+                    Object k = leftKey == null ? e : leftKey.call(e);
+                    if (probe.contains(k) != anti && (seen == null || seen.add(k))) {
+                        next = e;
+                        ready = true;
+                    }
+                }
+                return ready;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                T e = next;
+                next = null;
+                ready = false;
+                return e;
+            }
+
+            @Override
+            public void close() {
+                Views.close(itr);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+}
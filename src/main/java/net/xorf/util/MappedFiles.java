@@ -0,0 +1,65 @@
+package net.xorf.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only memory mapping helpers for the file-backed views.  A file is
+ * mapped a window at a time; the channel is only open while a window is
+ * being mapped, since a mapping stays valid after its channel is closed
+ * and is released when the buffer is collected.
+ *
+ * IO failures are rethrown as <tt>UncheckedIOException</tt>, as these are
+ * called from inside iterators.
+ */
+final class MappedFiles {
+
+    //static-only utilities
+    private MappedFiles() { }
+
+    /** the largest window a single <tt>MappedByteBuffer</tt> can cover */
+    static final long MAX_WINDOW = Integer.MAX_VALUE;
+
+    static long size(Path path) {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return ch.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** maps <tt>[pos, pos + len)</tt> of <tt>path</tt>; <tt>len</tt> may not exceed {@link #MAX_WINDOW} */
+    static MappedByteBuffer map(Path path, long pos, long len) {
+        if (len > MAX_WINDOW)
+            throw new IllegalArgumentException("window too large: " + len);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads up to <tt>len</tt> bytes at <tt>pos</tt> without mapping them,
+     * for small probes like finding a line boundary.
+     */
+    static ByteBuffer read(Path path, long pos, int len) {
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (buf.hasRemaining()) {
+                int n = ch.read(buf, pos + buf.position());
+                if (n < 0)
+                    break;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buf.flip();
+        return buf;
+    }
+}
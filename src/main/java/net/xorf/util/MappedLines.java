@@ -0,0 +1,344 @@
+package net.xorf.util;
+
+import net.xorf.util.Views.CloseableIterator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A lazy view of the lines of a file, read through memory-mapped windows.
+ * Lines end at <tt>\n</tt>, <tt>\r</tt> or <tt>\r\n</tt>, as with
+ * <tt>BufferedReader.readLine</tt>, and don't include the terminator.
+ *
+ * For ASCII-compatible charsets (UTF-8, ISO-8859-x, windows-125x, ...) lines
+ * are {@link Tokenizer.Slice}s straight over the mapped bytes: nothing is
+ * copied or decoded until a caller asks for a <tt>String</tt>.  Lines
+ * holding non-ASCII bytes are decoded to Strings, except under ISO-8859-1
+ * where every byte is its own character.  Other charsets (UTF-16, ...) are
+ * read with a <tt>BufferedReader</tt> instead of being mapped.
+ *
+ * The file is mapped {@link #WINDOW} bytes at a time, so files larger than
+ * a single mapping are fine; a line that doesn't fit in a window gets a
+ * bigger one.  {@link #split} cuts the file into byte ranges at line
+ * boundaries so several threads can scan one file.
+ */
+public class MappedLines extends Views.View<CharSequence> implements Views.Splittable<CharSequence> {
+    static final int WINDOW = 1 << 26;
+    /** bytes probed at a time when looking for a split point */
+    private static final int PROBE = 1 << 13;
+
+    private final Path path;
+    private final Charset charset;
+    private final boolean mappable;
+    private final boolean latin1;
+    /** byte range of the file covered; <tt>end</tt> is -1 for "to end of file" */
+    private final long start, end;
+
+    public MappedLines(Path path, Charset charset) {
+        this(path, charset, 0, -1);
+    }
+
+    private MappedLines(Path path, Charset charset, long start, long end) {
+        this.path = path;
+        this.charset = charset;
+        this.mappable = isAsciiCompatible(charset);
+        this.latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+        this.start = start;
+        this.end = end;
+    }
+
+    private static boolean isAsciiCompatible(Charset cs) {
+        if (cs.equals(StandardCharsets.UTF_8) || cs.equals(StandardCharsets.US_ASCII)
+                || cs.equals(StandardCharsets.ISO_8859_1))
+            return true;
+        if (!cs.canEncode())
+            return false;
+        byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++)
+            ascii[i] = (byte) i;
+        byte[] encoded = new String(ascii, StandardCharsets.US_ASCII).getBytes(cs);
+        return Arrays.equals(ascii, encoded);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    @Override
+    public Iterator<CharSequence> iterator() {
+        if (!mappable)
+            return new ReaderIterator();
+        return this.new LineIterator(start, end < 0 ? MappedFiles.size(path) : end);
+    }
+
+    /**
+     * Cuts this view into at most <tt>parts</tt> views over consecutive
+     * byte ranges, each starting at the beginning of a line.  Together they
+     * yield exactly the lines of this view, in order.  Files that can't be
+     * mapped aren't split.
+     */
+    @Override
+    public List<MappedLines> split(int parts) {
+        if (parts < 1)
+            throw new IllegalArgumentException("parts must be positive");
+        if (!mappable || parts == 1)
+            return Collections.singletonList(this);
+        long to = end < 0 ? MappedFiles.size(path) : end;
+        List<MappedLines> ret = new ArrayList<MappedLines>(parts);
+        long from = start;
+        for (int i = 1; i < parts && from < to; i++) {
+            long cut = lineStartAfter(start + (to - start) * i / parts, to);
+            if (cut <= from)
+                continue;
+            ret.add(new MappedLines(path, charset, from, cut));
+            from = cut;
+        }
+        if (from < to || ret.isEmpty())
+            ret.add(new MappedLines(path, charset, from, to));
+        return ret;
+    }
+
+    /** the start of the first line beginning at or after <tt>pos</tt>, or <tt>limit</tt> */
+    private long lineStartAfter(long pos, long limit) {
+        if (pos <= start)
+            return start;
+        //a line starts at pos if the byte before it ends one
+        long p = pos - 1;
+        while (p < limit) {
+            ByteBuffer probe = MappedFiles.read(path, p, (int) Math.min(PROBE, limit - p + 1));
+            for (int i = 0; i < probe.limit(); i++) {
+                byte b = probe.get(i);
+                if (b == '\n')
+                    return Math.min(p + i + 1, limit);
+                if (b == '\r') {
+                    long next = p + i + 1;
+                    if (next < limit && byteAt(probe, i + 1, next) == '\n')
+                        next++;
+                    return Math.min(next, limit);
+                }
+            }
+            if (probe.limit() == 0)
+                break;
+            p += probe.limit();
+        }
+        return limit;
+    }
+
+    private byte byteAt(ByteBuffer probe, int idx, long filePos) {
+        if (idx < probe.limit())
+            return probe.get(idx);
+        ByteBuffer one = MappedFiles.read(path, filePos, 1);
+        return one.limit() == 0 ? 0 : one.get(0);
+    }
+
+    @Override
+    public String toString() {
+        return "MappedLines(" + path + (end < 0 ? "" : ", [" + start + ", " + end + ")") + ")";
+    }
+
+    /**
+     * Walks the mapped windows.  <tt>pos</tt> is relative to the current
+     * window; the window never extends past <tt>end</tt>, and is remapped
+     * from the start of the current line when that line runs off it.
+     */
+    public class LineIterator implements Iterator<CharSequence> {
+        private final long end;
+        private long windowStart;
+        private ByteBuffer window;
+        private ByteChars chars;
+        private int pos;
+        private CharSequence next;
+
+        LineIterator(long start, long end) {
+            this.end = end;
+            map(start, WINDOW);
+        }
+
+        private void map(long from, long size) {
+            windowStart = from;
+            window = MappedFiles.map(path, from, Math.min(size, end - from));
+            chars = new ByteChars(window, 0, window.limit());
+            pos = 0;
+        }
+
+        private CharSequence advance() {
+            for (;;) {
+                int limit = window.limit();
+                if (pos >= limit && windowStart + limit >= end)
+                    return null;
+                boolean highBytes = false;
+                for (int i = pos; i < limit; i++) {
+                    byte b = window.get(i);
+                    highBytes |= b < 0;
+                    if (b != '\n' && b != '\r')
+                        continue;
+                    int nextPos = i + 1;
+                    if (b == '\r') {
+                        if (nextPos == limit && windowStart + limit < end)
+                            break; //can't see whether \n follows - remap
+                        if (nextPos < limit && window.get(nextPos) == '\n')
+                            nextPos++;
+                    }
+                    CharSequence line = line(pos, i, highBytes);
+                    pos = nextPos;
+                    return line;
+                }
+                if (windowStart + limit >= end) {
+                    //last line, no terminator
+                    CharSequence line = line(pos, limit, highBytes);
+                    pos = limit;
+                    return line;
+                }
+                long lineLength = limit - pos;
+                if (lineLength >= MappedFiles.MAX_WINDOW)
+                    throw new IllegalStateException("line at byte " + (windowStart + pos)
+                            + " is longer than " + MappedFiles.MAX_WINDOW + " bytes");
+                map(windowStart + pos, Math.min(MappedFiles.MAX_WINDOW, Math.max(WINDOW, lineLength * 2)));
+            }
+        }
+
+        private CharSequence line(int from, int to, boolean highBytes) {
+            if (highBytes && !latin1) {
+                ByteBuffer bytes = window.duplicate();
+                bytes.position(from).limit(to);
+                return charset.decode(bytes).toString();
+            }
+            return new Tokenizer.Slice(chars, from, to);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null)
+                next = advance();
+            return next != null;
+        }
+
+        @Override
+        public CharSequence next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            CharSequence ret = next;
+            next = null;
+            return ret;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * For charsets whose newlines can't be found byte-wise.  The reader is
+     * closed at the end, on a read error, or when the iterator is closed.
+     */
+    private class ReaderIterator implements CloseableIterator<CharSequence> {
+        private final BufferedReader reader;
+        private String next;
+        private boolean done = false;
+
+        ReaderIterator() {
+            try {
+                reader = Files.newBufferedReader(path, charset);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    next = reader.readLine();
+                } catch (IOException e) {
+                    close();
+                    throw new UncheckedIOException(e);
+                }
+                if (next == null)
+                    close();
+            }
+            return next != null;
+        }
+
+        @Override
+        public void close() {
+            if (done)
+                return;
+            done = true;
+            next = null;
+            try {
+                reader.close();
+            } catch (IOException e) {
+                //nothing to do
+            }
+        }
+
+        @Override
+        public CharSequence next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            String ret = next;
+            next = null;
+            return ret;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Bytes of a buffer read as characters one-to-one, which is right for
+     * ASCII under any ASCII-compatible charset and for all of ISO-8859-1.
+     */
+    static final class ByteChars implements CharSequence {
+        private final ByteBuffer buf;
+        private final int offset, length;
+
+        ByteChars(ByteBuffer buf, int offset, int length) {
+            this.buf = buf;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length)
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            return (char) (buf.get(offset + index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || to > length || from > to)
+                throw new IndexOutOfBoundsException("[" + from + ", " + to + ")");
+            return new ByteChars(buf, offset + from, to - from);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++)
+                bytes[i] = buf.get(offset + i);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package net.xorf.util;
+
+import net.xorf.util.Views.Func1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe, bounded memoizing wrapper around a {@link Func1}.  It is a
+ * {@link Views.Mapper}, so it drops into <tt>map</tt>, <tt>orderBy</tt> and
+ * <tt>groupBy</tt> unchanged; see {@link Views#memoizeFilter(Views.Filter, long)}
+ * for filters.
+ *
+ * Entries are spread over lock-striped segments by key hash.  Each segment
+ * runs W-TinyLFU: new entries go into a small LRU window; entries leaving
+ * the window compete for a place in a segmented LRU main area (probation
+ * and protected) and are only admitted if a frequency sketch says they are
+ * used more often than the entry they would displace.  One-off keys
+ * therefore can't flush out frequently used ones.
+ *
+ * Capacity is a number of entries, or a total weight if a {@link Weigher}
+ * is given.  Values are computed outside the segment locks, so two threads
+ * missing on the same key at once may both call the function; only one
+ * result is kept.  Null keys and values are cached like any other.
+ */
+public class Memoizer<K, V> implements Views.Mapper<K, V> {
+    public interface Weigher<K, V> { long weigh(K key, V value); }
+
+    private static final Object NULL = new Object();
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Func1<K, V> func;
+    private final Weigher<? super K, ? super V> weigher;
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+
+    public Memoizer(Func1<K, V> func, long maxEntries) {
+        this(func, maxEntries, null);
+    }
+
+    /** @param weigher the weight of each entry, or null to count entries */
+    public Memoizer(Func1<K, V> func, long maxWeight, Weigher<? super K, ? super V> weigher) {
+        if (maxWeight < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.func = func;
+        this.weigher = weigher;
+        //keep at least 64 units per segment so the policy has room to work
+        int n = 1;
+        while (n < MAX_SEGMENTS && maxWeight / (n * 2) >= 64)
+            n *= 2;
+        segments = new Segment[n];
+        for (int i = 0; i < n; i++)
+            segments[i] = new Segment(maxWeight / n + (i < maxWeight % n ? 1 : 0), evictions);
+        segmentMask = n - 1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V call(K key) {
+        Object k = key == null ? NULL : key;
+        int h = spread(k.hashCode());
+        Segment seg = segments[h & segmentMask];
+        Object v = seg.get(k, h);
+        if (v != null) {
+            hits.increment();
+            return v == NULL ? null : (V) v;
+        }
+        misses.increment();
+        V value = func.call(key);
+        long w = weigher == null ? 1 : weigher.weigh(key, value);
+        if (w < 0)
+            throw new IllegalStateException("negative weight for " + key);
+        Object kept = seg.put(k, value == null ? NULL : value, w);
+        return kept == NULL ? null : (V) kept;
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        return h ^ (h >>> 16);
+    }
+
+    public long hitCount() { return hits.sum(); }
+    public long missCount() { return misses.sum(); }
+    public long evictionCount() { return evictions.sum(); }
+
+    public double hitRate() {
+        long h = hits.sum(), total = h + misses.sum();
+        return total == 0 ? 1.0 : (double) h / total;
+    }
+
+    /** entries currently held */
+    public long size() {
+        long n = 0;
+        for (Segment s : segments)
+            n += s.size();
+        return n;
+    }
+
+    public void clear() {
+        for (Segment s : segments)
+            s.clear();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + size() + " entries, " + hitCount() + " hits, " + missCount() + " misses, "
+                + evictionCount() + " evictions)";
+    }
+
+    private static final class Node {
+        final Object key;
+        final Object value;
+        final long weight;
+
+        Node(Object key, Object value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * One lock stripe.  The window gets 1% of the capacity, the protected
+     * segment 80% of the rest; each queue is an access-ordered map whose
+     * first entry is the least recently used.
+     */
+    private static final class Segment {
+        private final long capacity, windowCap, protectedCap;
+        private final LinkedHashMap<Object, Node> window = new LinkedHashMap<Object, Node>(16, 0.75f, true);
+        private final LinkedHashMap<Object, Node> probation = new LinkedHashMap<Object, Node>(16, 0.75f, true);
+        private final LinkedHashMap<Object, Node> protect = new LinkedHashMap<Object, Node>(16, 0.75f, true);
+        private long windowWeight = 0, probationWeight = 0, protectedWeight = 0;
+        private final FrequencySketch sketch;
+        private final LongAdder evictions;
+
+        Segment(long capacity, LongAdder evictions) {
+            this.capacity = capacity;
+            this.evictions = evictions;
+            this.windowCap = Math.max(1, capacity / 100);
+            this.protectedCap = (capacity - windowCap) * 4 / 5;
+            this.sketch = new FrequencySketch(capacity);
+        }
+
+        synchronized Object get(Object key, int hash) {
+            sketch.increment(hash);
+            Node n = window.get(key);
+            if (n == null)
+                n = protect.get(key);
+            if (n == null) {
+                n = probation.remove(key);
+                if (n == null)
+                    return null;
+                //a second hit promotes from probation
+                probationWeight -= n.weight;
+                protect.put(key, n);
+                protectedWeight += n.weight;
+                while (protectedWeight > protectedCap) {
+                    Node demoted = removeFirst(protect);
+                    protectedWeight -= demoted.weight;
+                    probation.put(demoted.key, demoted);
+                    probationWeight += demoted.weight;
+                }
+            }
+            return n.value;
+        }
+
+        /** @return the value now cached for <tt>key</tt> - another thread's, if it got there first */
+        synchronized Object put(Object key, Object value, long weight) {
+            Node existing = find(key);
+            if (existing != null)
+                return existing.value;
+            if (weight > capacity)
+                return value; //could never fit
+            Node n = new Node(key, value, weight);
+            window.put(key, n);
+            windowWeight += weight;
+            while (windowWeight > windowCap && !window.isEmpty()) {
+                Node candidate = removeFirst(window);
+                windowWeight -= candidate.weight;
+                admit(candidate, sketch.frequency(spread(candidate.key.hashCode())));
+            }
+            return value;
+        }
+
+        /**
+         * Moves a window leaver into probation if it beats every entry it
+         * would displace.  The victims are picked before any is removed, so
+         * a losing candidate costs the main area nothing.
+         */
+        private void admit(Node candidate, int candidateFreq) {
+            long mainCap = capacity - windowCap;
+            if (candidate.weight > mainCap) {
+                evictions.increment(); //could never fit beside the window
+                return;
+            }
+            long excess = probationWeight + protectedWeight + candidate.weight - mainCap;
+            List<Node> victims = new ArrayList<Node>();
+            for (LinkedHashMap<Object, Node> q : Arrays.asList(probation, protect)) {
+                for (Iterator<Node> it = q.values().iterator(); excess > 0 && it.hasNext(); ) {
+                    Node victim = it.next();
+                    if (sketch.frequency(spread(victim.key.hashCode())) >= candidateFreq) {
+                        evictions.increment();
+                        return; //candidate loses
+                    }
+                    victims.add(victim);
+                    excess -= victim.weight;
+                }
+            }
+            for (Node victim : victims) {
+                if (probation.remove(victim.key) != null)
+                    probationWeight -= victim.weight;
+                else if (protect.remove(victim.key) != null)
+                    protectedWeight -= victim.weight;
+                evictions.increment();
+            }
+            probation.put(candidate.key, candidate);
+            probationWeight += candidate.weight;
+        }
+
+        private Node find(Object key) {
+            Node n = window.get(key);
+            if (n == null)
+                n = probation.get(key);
+            if (n == null)
+                n = protect.get(key);
+            return n;
+        }
+
+        private static Node removeFirst(LinkedHashMap<Object, Node> q) {
+            Iterator<Map.Entry<Object, Node>> it = q.entrySet().iterator();
+            Node n = it.next().getValue();
+            it.remove();
+            return n;
+        }
+
+        synchronized long size() {
+            return window.size() + probation.size() + protect.size();
+        }
+
+        synchronized void clear() {
+            window.clear();
+            probation.clear();
+            protect.clear();
+            windowWeight = probationWeight = protectedWeight = 0;
+        }
+    }
+
+    /**
+     * A count-min sketch of recent access frequencies: four rows of
+     * saturating counters, all halved periodically so that old popularity
+     * fades.
+     */
+    private static final class FrequencySketch {
+        private static final int MAX_COUNT = 15;
+        private final int[][] rows = new int[4][];
+        private final int mask;
+        private final long resetAt;
+        private long samples = 0;
+
+        FrequencySketch(long capacity) {
+            int width = 16;
+            while (width < capacity && width < (1 << 16))
+                width <<= 1;
+            for (int i = 0; i < rows.length; i++)
+                rows[i] = new int[width];
+            mask = width - 1;
+            resetAt = 10L * width;
+        }
+
+        private int index(int hash, int row) {
+            int h = hash * (0x9e3779b1 + 2 * row);
+            return (h ^ (h >>> 15)) & mask;
+        }
+
+        void increment(int hash) {
+            for (int r = 0; r < rows.length; r++) {
+                int i = index(hash, r);
+                if (rows[r][i] < MAX_COUNT)
+                    rows[r][i]++;
+            }
+            if (++samples >= resetAt) {
+                samples /= 2;
+                for (int[] row : rows)
+                    for (int i = 0; i < row.length; i++)
+                        row[i] >>>= 1;
+            }
+        }
+
+        int frequency(int hash) {
+            int f = MAX_COUNT;
+            for (int r = 0; r < rows.length; r++)
+                f = Math.min(f, rows[r][index(hash, r)]);
+            return f;
+        }
+    }
+
+    /** a memoized {@link Views.Filter}, so it still selects the filter overloads */
+    public static class MemoizedFilter<T> extends Memoizer<T, Boolean> implements Views.Filter<T> {
+        public MemoizedFilter(Views.Filter<T> filter, long maxEntries) {
+            super(filter, maxEntries);
+        }
+    }
+}
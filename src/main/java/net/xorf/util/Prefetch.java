@@ -0,0 +1,206 @@
+package net.xorf.util;
+
+import net.xorf.util.Views.CloseableIterator;
+
+import java.lang.ref.Cleaner;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A view that drains its source on a background thread into a bounded
+ * {@link SpscRing}, so producing elements (parsing, expensive transforms)
+ * overlaps with consuming them.  The producer is a dedicated platform
+ * thread by default, or a virtual thread where available if asked for.
+ *
+ * Each iterator starts its own producer, at most <tt>capacity</tt>
+ * elements (up to 2^30) ahead of the consumer.  When the ring is full the
+ * producer waits (backpressure); when it is empty the consumer waits.
+ * Both wait by spinning briefly, then parking until the other side wakes
+ * them, so a busy pipeline hands elements across without locks.
+ *
+ * Source exceptions are rethrown to the consumer after the elements that
+ * came before them.  Closing the iterator stops the producer at once and
+ * closes the source on the producer's thread; an iterator that is simply
+ * dropped stops its producer once it has been garbage collected.
+ */
+public class Prefetch<T> extends Views.View<T> {
+    private static final Cleaner CLEANER = Cleaner.create(Threads.factory("xorf-prefetch-cleaner", false));
+    private static final Object NULL = new Object();
+    /** spins before a waiting side parks */
+    private static final int SPINS = 128;
+    /** upper bound on a park, in case a wakeup is missed */
+    private static final long PARK_NANOS = 1000000;
+
+    protected final Iterable<T> source;
+    protected final int capacity;
+    protected final boolean virtualThread;
+
+    public Prefetch(Iterable<T> source, int capacity, boolean virtualThread) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        if (capacity > SpscRing.MAX_CAPACITY)
+            throw new IllegalArgumentException("capacity cannot be > 2^30: " + capacity);
+        this.source = source;
+        this.capacity = capacity;
+        this.virtualThread = virtualThread;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new PrefetchIterator<T>(source, capacity, virtualThread);
+    }
+
+    /**
+     * Everything the producer and consumer share.  It must not refer to the
+     * iterator, or the iterator could never be collected and abandoned
+     * producers would never be stopped.
+     */
+    static final class Channel<T> implements Runnable {
+        final Iterable<T> source;
+        final SpscRing<Object> ring;
+        volatile boolean done = false, cancelled = false;
+        volatile Throwable error;
+        volatile Thread producerWaiting, consumerWaiting;
+
+        Channel(Iterable<T> source, int capacity) {
+            this.source = source;
+            this.ring = new SpscRing<Object>(capacity);
+        }
+
+        @Override
+        public void run() {
+            Iterator<T> itr = null;
+            try {
+                itr = source.iterator();
+                while (!cancelled && itr.hasNext()) {
+                    T e = itr.next();
+                    Object o = e == null ? NULL : e;
+                    for (int spins = 0; !ring.offer(o); spins++) {
+                        if (cancelled)
+                            return;
+                        if (spins < SPINS) {
+                            Thread.onSpinWait();
+                        } else {
+                            producerWaiting = Thread.currentThread();
+                            if (!ring.offer(o)) {
+                                LockSupport.parkNanos(this, PARK_NANOS);
+                                producerWaiting = null;
+                                continue;
+                            }
+                            producerWaiting = null;
+                            break;
+                        }
+                    }
+                    wake(consumerWaiting);
+                }
+            } catch (Throwable t) {
+                error = t;
+            } finally {
+                done = true;
+                wake(consumerWaiting);
+                if (itr != null)
+                    Views.close(itr);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            wake(producerWaiting);
+        }
+
+        static void wake(Thread t) {
+            if (t != null)
+                LockSupport.unpark(t);
+        }
+    }
+
+    public static class PrefetchIterator<T> implements CloseableIterator<T> {
+        private final Channel<T> channel;
+        private final Cleaner.Cleanable cleanable;
+        private Object next;
+        private boolean closed = false;
+
+        PrefetchIterator(Iterable<T> source, int capacity, boolean virtualThread) {
+            channel = new Channel<T>(source, capacity);
+            cleanable = CLEANER.register(this, canceller(channel));
+            Threads.factory("xorf-prefetch", virtualThread).newThread(channel).start();
+        }
+
+        //built in a static method so the action can't capture the iterator
+        private static Runnable canceller(final Channel<?> ch) {
+            return new Runnable() {
+                @Override public void run() { ch.cancel(); }
+            };
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null)
+                return true;
+            if (closed)
+                return false;
+            for (int spins = 0; ; spins++) {
+                //read done before polling, so an empty ring after done really is the end
+                boolean done = channel.done;
+                Object o = channel.ring.poll();
+                if (o != null) {
+                    next = o;
+                    Channel.wake(channel.producerWaiting);
+                    return true;
+                }
+                if (done) {
+                    Throwable t = channel.error;
+                    close();
+                    if (t != null)
+                        rethrow(t);
+                    return false;
+                }
+                if (spins < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    channel.consumerWaiting = Thread.currentThread();
+                    if (channel.ring.isEmpty() && !channel.done)
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                    channel.consumerWaiting = null;
+                    if (Thread.currentThread().isInterrupted()) {
+                        close();
+                        throw new IllegalStateException("interrupted waiting for prefetched elements");
+                    }
+                }
+            }
+        }
+
+        private static void rethrow(Throwable t) {
+            if (t instanceof RuntimeException)
+                throw (RuntimeException) t;
+            if (t instanceof Error)
+                throw (Error) t;
+            throw new IllegalStateException(t);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Object o = next;
+            next = null;
+            return o == NULL ? null : (T) o;
+        }
+
+        @Override
+        public void close() {
+            if (closed)
+                return;
+            closed = true;
+            next = null;
+            cleanable.clean();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
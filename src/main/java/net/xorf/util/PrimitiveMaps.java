@@ -0,0 +1,379 @@
+package net.xorf.util;
+
+/**
+ * Small open-addressing hash maps with primitive keys and/or values.  These
+ * are the targets of the <tt>Views.asLongLongMap</tt> family of collectors
+ * and store their entries in flat arrays, so neither keys nor values are
+ * boxed and no entry objects are created.
+ *
+ * The maps use linear probing over power-of-two tables and are not
+ * thread-safe.  <tt>int</tt> keys and values widen losslessly into the
+ * <tt>long</tt> maps.
+ */
+public final class PrimitiveMaps {
+
+    //static-only utilities
+    private PrimitiveMaps() { }
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    public interface LongLongProc { void call(long key, long value); }
+    public interface LongDoubleProc { void call(long key, double value); }
+    public interface ObjLongProc<K> { void call(K key, long value); }
+    public interface ObjDoubleProc<K> { void call(K key, double value); }
+
+    static int mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return (int) (key ^ (key >>> 33));
+    }
+
+    static int mix(Object key) {
+        int h = key.hashCode() * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    static int tableSize(int expected) {
+        int cap = DEFAULT_CAPACITY;
+        while (cap < expected * 2)
+            cap <<= 1;
+        return cap;
+    }
+
+    public static class LongLongMap {
+        private long[] keys;
+        private long[] values;
+        private boolean[] used;
+        private int size;
+
+        public LongLongMap() {
+            this(DEFAULT_CAPACITY);
+        }
+
+        public LongLongMap(int expectedSize) {
+            alloc(tableSize(expectedSize));
+        }
+
+        private void alloc(int cap) {
+            keys = new long[cap];
+            values = new long[cap];
+            used = new boolean[cap];
+        }
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (used[i] && keys[i] != key)
+                i = (i + 1) & mask;
+            return i;
+        }
+
+        public int size() { return size; }
+
+        public boolean isEmpty() { return size == 0; }
+
+        public boolean containsKey(long key) {
+            return used[slot(key)];
+        }
+
+        public long get(long key) {
+            return get(key, 0L);
+        }
+
+        public long get(long key, long defaultValue) {
+            int i = slot(key);
+            return used[i] ? values[i] : defaultValue;
+        }
+
+        public void put(long key, long value) {
+            int i = slot(key);
+            if (!used[i]) {
+                used[i] = true;
+                keys[i] = key;
+                if (++size * 2 > keys.length)
+                    rehash();
+                i = slot(key);
+            }
+            values[i] = value;
+        }
+
+        /** adds <tt>delta</tt> to the value for <tt>key</tt> (0 if absent) and returns the sum */
+        public long add(long key, long delta) {
+            long v = get(key) + delta;
+            put(key, v);
+            return v;
+        }
+
+        public void foreach(LongLongProc proc) {
+            for (int i = 0; i < keys.length; i++)
+                if (used[i]) proc.call(keys[i], values[i]);
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys, oldValues = values;
+            boolean[] oldUsed = used;
+            alloc(keys.length << 1);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int s = slot(oldKeys[i]);
+                    used[s] = true;
+                    keys[s] = oldKeys[i];
+                    values[s] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    public static class LongDoubleMap {
+        private long[] keys;
+        private double[] values;
+        private boolean[] used;
+        private int size;
+
+        public LongDoubleMap() {
+            this(DEFAULT_CAPACITY);
+        }
+
+        public LongDoubleMap(int expectedSize) {
+            alloc(tableSize(expectedSize));
+        }
+
+        private void alloc(int cap) {
+            keys = new long[cap];
+            values = new double[cap];
+            used = new boolean[cap];
+        }
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (used[i] && keys[i] != key)
+                i = (i + 1) & mask;
+            return i;
+        }
+
+        public int size() { return size; }
+
+        public boolean isEmpty() { return size == 0; }
+
+        public boolean containsKey(long key) {
+            return used[slot(key)];
+        }
+
+        public double get(long key) {
+            return get(key, 0.0);
+        }
+
+        public double get(long key, double defaultValue) {
+            int i = slot(key);
+            return used[i] ? values[i] : defaultValue;
+        }
+
+        public void put(long key, double value) {
+            int i = slot(key);
+            if (!used[i]) {
+                used[i] = true;
+                keys[i] = key;
+                if (++size * 2 > keys.length)
+                    rehash();
+                i = slot(key);
+            }
+            values[i] = value;
+        }
+
+        /** adds <tt>delta</tt> to the value for <tt>key</tt> (0 if absent) and returns the sum */
+        public double add(long key, double delta) {
+            double v = get(key) + delta;
+            put(key, v);
+            return v;
+        }
+
+        public void foreach(LongDoubleProc proc) {
+            for (int i = 0; i < keys.length; i++)
+                if (used[i]) proc.call(keys[i], values[i]);
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            double[] oldValues = values;
+            boolean[] oldUsed = used;
+            alloc(keys.length << 1);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int s = slot(oldKeys[i]);
+                    used[s] = true;
+                    keys[s] = oldKeys[i];
+                    values[s] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    /** null keys are not supported */
+    public static class ObjLongMap<K> {
+        private Object[] keys;
+        private long[] values;
+        private int size;
+
+        public ObjLongMap() {
+            this(DEFAULT_CAPACITY);
+        }
+
+        public ObjLongMap(int expectedSize) {
+            alloc(tableSize(expectedSize));
+        }
+
+        private void alloc(int cap) {
+            keys = new Object[cap];
+            values = new long[cap];
+        }
+
+        private int slot(Object key) {
+            if (key == null)
+                throw new IllegalArgumentException("null keys are not supported");
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != null && !keys[i].equals(key))
+                i = (i + 1) & mask;
+            return i;
+        }
+
+        public int size() { return size; }
+
+        public boolean isEmpty() { return size == 0; }
+
+        public boolean containsKey(K key) {
+            return keys[slot(key)] != null;
+        }
+
+        public long get(K key) {
+            return get(key, 0L);
+        }
+
+        public long get(K key, long defaultValue) {
+            int i = slot(key);
+            return keys[i] != null ? values[i] : defaultValue;
+        }
+
+        public void put(K key, long value) {
+            int i = slot(key);
+            if (keys[i] == null) {
+                keys[i] = key;
+                if (++size * 2 > keys.length)
+                    rehash();
+                i = slot(key);
+            }
+            values[i] = value;
+        }
+
+        /** adds <tt>delta</tt> to the value for <tt>key</tt> (0 if absent) and returns the sum */
+        public long add(K key, long delta) {
+            long v = get(key) + delta;
+            put(key, v);
+            return v;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void foreach(ObjLongProc<? super K> proc) {
+            for (int i = 0; i < keys.length; i++)
+                if (keys[i] != null) proc.call((K) keys[i], values[i]);
+        }
+
+        private void rehash() {
+            Object[] oldKeys = keys;
+            long[] oldValues = values;
+            alloc(keys.length << 1);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int s = slot(oldKeys[i]);
+                    keys[s] = oldKeys[i];
+                    values[s] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    /** null keys are not supported */
+    public static class ObjDoubleMap<K> {
+        private Object[] keys;
+        private double[] values;
+        private int size;
+
+        public ObjDoubleMap() {
+            this(DEFAULT_CAPACITY);
+        }
+
+        public ObjDoubleMap(int expectedSize) {
+            alloc(tableSize(expectedSize));
+        }
+
+        private void alloc(int cap) {
+            keys = new Object[cap];
+            values = new double[cap];
+        }
+
+        private int slot(Object key) {
+            if (key == null)
+                throw new IllegalArgumentException("null keys are not supported");
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != null && !keys[i].equals(key))
+                i = (i + 1) & mask;
+            return i;
+        }
+
+        public int size() { return size; }
+
+        public boolean isEmpty() { return size == 0; }
+
+        public boolean containsKey(K key) {
+            return keys[slot(key)] != null;
+        }
+
+        public double get(K key) {
+            return get(key, 0.0);
+        }
+
+        public double get(K key, double defaultValue) {
+            int i = slot(key);
+            return keys[i] != null ? values[i] : defaultValue;
+        }
+
+        public void put(K key, double value) {
+            int i = slot(key);
+            if (keys[i] == null) {
+                keys[i] = key;
+                if (++size * 2 > keys.length)
+                    rehash();
+                i = slot(key);
+            }
+            values[i] = value;
+        }
+
+        /** adds <tt>delta</tt> to the value for <tt>key</tt> (0 if absent) and returns the sum */
+        public double add(K key, double delta) {
+            double v = get(key) + delta;
+            put(key, v);
+            return v;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void foreach(ObjDoubleProc<? super K> proc) {
+            for (int i = 0; i < keys.length; i++)
+                if (keys[i] != null) proc.call((K) keys[i], values[i]);
+        }
+
+        private void rehash() {
+            Object[] oldKeys = keys;
+            double[] oldValues = values;
+            alloc(keys.length << 1);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int s = slot(oldKeys[i]);
+                    keys[s] = oldKeys[i];
+                    values[s] = oldValues[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package net.xorf.util;
+
+import net.xorf.util.Views.CloseableIterator;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+
+/**
+ * A blocking view of a <tt>java.util.concurrent.Flow.Publisher</tt>.  Each
+ * iterator subscribes afresh and requests no more than <tt>bufferSize</tt>
+ * elements beyond those it has consumed, so at most <tt>bufferSize</tt> are
+ * ever held.  Demand is topped up in batches once a quarter of the buffer
+ * (at least one element) has been consumed.
+ *
+ * <tt>hasNext</tt> blocks until an element or a terminal signal arrives; an
+ * <tt>onError</tt> is rethrown from it once the elements before it have been
+ * consumed.  Closing the iterator cancels the subscription.
+ */
+public class PublisherView<T> extends Views.View<T> {
+    private static final Object COMPLETE = new Object();
+
+    protected final Flow.Publisher<T> publisher;
+    protected final int bufferSize;
+
+    public PublisherView(Flow.Publisher<T> publisher, int bufferSize) {
+        if (bufferSize < 1)
+            throw new IllegalArgumentException("bufferSize must be positive");
+        this.publisher = publisher;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public PublisherIterator iterator() {
+        PublisherIterator itr = this.new PublisherIterator();
+        publisher.subscribe(itr.subscriber);
+        return itr;
+    }
+
+    private static final class Failure {
+        final Throwable error;
+
+        Failure(Throwable error) {
+            this.error = error;
+        }
+    }
+
+    public class PublisherIterator implements CloseableIterator<T> {
+        //room for a full buffer plus the terminal signal
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(bufferSize + 1);
+        private final int replenish = Math.max(1, bufferSize / 4);
+        private volatile Flow.Subscription subscription;
+        private volatile boolean cancelled = false;
+        private int consumed = 0;
+        private Object next;
+        private boolean ended = false;
+
+        final Flow.Subscriber<T> subscriber = new Flow.Subscriber<T>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                if (subscription != null || cancelled) {
+                    s.cancel();
+                    return;
+                }
+                subscription = s;
+                s.request(bufferSize);
+            }
+
+            @Override
+            public void onNext(T item) {
+                //demand never exceeds free space, so this only fails for a publisher over-delivering
+                if (!queue.offer(item)) {
+                    subscription.cancel();
+                    queue.clear();
+                    queue.offer(new Failure(new IllegalStateException("publisher sent more than requested")));
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                queue.offer(new Failure(t));
+            }
+
+            @Override
+            public void onComplete() {
+                queue.offer(COMPLETE);
+            }
+        };
+
+        @Override
+        public boolean hasNext() {
+            if (next != null)
+                return true;
+            if (ended)
+                return false;
+            Object o;
+            try {
+                o = queue.take();
+            } catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for published elements", e);
+            }
+            if (o == COMPLETE) {
+                ended = true;
+                return false;
+            }
+            if (o instanceof Failure) {
+                ended = true;
+                Throwable t = ((Failure) o).error;
+                if (t instanceof RuntimeException)
+                    throw (RuntimeException) t;
+                if (t instanceof Error)
+                    throw (Error) t;
+                throw new IllegalStateException(t);
+            }
+            next = o;
+            if (++consumed == replenish) {
+                consumed = 0;
+                subscription.request(replenish);
+            }
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Object o = next;
+            next = null;
+            return (T) o;
+        }
+
+        @Override
+        public void close() {
+            if (cancelled)
+                return;
+            cancelled = true;
+            ended = true;
+            next = null;
+            Flow.Subscription s = subscription;
+            if (s != null)
+                s.cancel();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
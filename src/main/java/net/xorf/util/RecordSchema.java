@@ -0,0 +1,226 @@
+package net.xorf.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The layout of a fixed-width binary record: named fields at fixed offsets,
+ * in a fixed byte order.  Fields are declared in record order on a
+ * {@link Builder}, which hands back a typed handle for each:
+ *
+ * <pre>
+ *   RecordSchema.Builder b = RecordSchema.builder(ByteOrder.LITTLE_ENDIAN);
+ *   RecordSchema.IntField id = b.int32("id");
+ *   RecordSchema.LongField ts = b.int64("ts");
+ *   b.skip(4);
+ *   RecordSchema.DoubleField price = b.float64("price");
+ *   RecordSchema schema = b.build();
+ * </pre>
+ *
+ * The handles are used to read fields from {@link Records}; each reads only
+ * its own bytes.  Integer fields of up to 4 bytes read as <tt>int</tt>,
+ * 8-byte and unsigned 4-byte ones as <tt>long</tt>, and floating point
+ * fields as <tt>double</tt>.
+ */
+public final class RecordSchema {
+    private final ByteOrder order;
+    private final int recordSize;
+    private final List<Field<?>> fields;
+    private final Map<String, Field<?>> byName;
+    /** shared with the fields, so handles from another schema are caught */
+    private final Object owner;
+
+    private RecordSchema(Builder b) {
+        this.order = b.order;
+        this.recordSize = b.size;
+        this.fields = Collections.unmodifiableList(new ArrayList<Field<?>>(b.fields));
+        this.byName = new LinkedHashMap<String, Field<?>>();
+        for (Field<?> f : fields)
+            byName.put(f.name, f);
+        this.owner = b.owner;
+    }
+
+    public static Builder builder(ByteOrder order) {
+        return new Builder(order);
+    }
+
+    public static Builder builder() {
+        return builder(ByteOrder.BIG_ENDIAN);
+    }
+
+    public ByteOrder order() {
+        return order;
+    }
+
+    public int recordSize() {
+        return recordSize;
+    }
+
+    public List<Field<?>> fields() {
+        return fields;
+    }
+
+    /** @throws IllegalArgumentException if there's no such field */
+    public Field<?> field(String name) {
+        Field<?> f = byName.get(name);
+        if (f == null)
+            throw new IllegalArgumentException("no field named " + name);
+        return f;
+    }
+
+    /** @throws IllegalArgumentException if <tt>f</tt> wasn't declared for this schema */
+    <F extends Field<?>> F check(F f) {
+        if (f.owner != owner)
+            throw new IllegalArgumentException("field " + f.name + " belongs to another schema");
+        return f;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("RecordSchema(").append(recordSize).append(" bytes, ").append(order);
+        for (Field<?> f : fields)
+            sb.append(", ").append(f);
+        return sb.append(')').toString();
+    }
+
+    public static final class Builder {
+        private final ByteOrder order;
+        private final Object owner = new Object();
+        private final List<Field<?>> fields = new ArrayList<Field<?>>();
+        private int size = 0;
+        private boolean built = false;
+
+        private Builder(ByteOrder order) {
+            this.order = order;
+        }
+
+        private <F extends Field<?>> F add(F f) {
+            if (built)
+                throw new IllegalStateException("schema already built");
+            for (Field<?> other : fields)
+                if (other.name.equals(f.name))
+                    throw new IllegalArgumentException("duplicate field name " + f.name);
+            fields.add(f);
+            size += f.width;
+            return f;
+        }
+
+        public IntField int8(String name)    { return add(new IntField(owner, name, size, 1, false)); }
+        public IntField uint8(String name)   { return add(new IntField(owner, name, size, 1, true)); }
+        public IntField int16(String name)   { return add(new IntField(owner, name, size, 2, false)); }
+        public IntField uint16(String name)  { return add(new IntField(owner, name, size, 2, true)); }
+        public IntField int32(String name)   { return add(new IntField(owner, name, size, 4, false)); }
+        public LongField uint32(String name) { return add(new LongField(owner, name, size, 4)); }
+        public LongField int64(String name)  { return add(new LongField(owner, name, size, 8)); }
+        public DoubleField float32(String name) { return add(new DoubleField(owner, name, size, 4)); }
+        public DoubleField float64(String name) { return add(new DoubleField(owner, name, size, 8)); }
+
+        /** skips <tt>bytes</tt> of padding or unused data */
+        public Builder skip(int bytes) {
+            if (bytes < 0)
+                throw new IllegalArgumentException("negative padding");
+            size += bytes;
+            return this;
+        }
+
+        public RecordSchema build() {
+            if (size == 0)
+                throw new IllegalStateException("empty record");
+            built = true;
+            return new RecordSchema(this);
+        }
+    }
+
+    /**
+     * A field handle.  <tt>get</tt> boxes; the typed subclasses read
+     * primitives.
+     */
+    public static abstract class Field<T> {
+        final Object owner;
+        final String name;
+        final int offset, width;
+
+        Field(Object owner, String name, int offset, int width) {
+            this.owner = owner;
+            this.name = name;
+            this.offset = offset;
+            this.width = width;
+        }
+
+        public String name() { return name; }
+        public int offset() { return offset; }
+        public int width() { return width; }
+
+        /** reads this field of the record starting at <tt>pos</tt> */
+        abstract T get(ByteBuffer buf, int pos);
+
+        @Override
+        public String toString() {
+            return name + "@" + offset + ":" + width;
+        }
+    }
+
+    public static final class IntField extends Field<Integer> {
+        private final boolean unsigned;
+
+        IntField(Object owner, String name, int offset, int width, boolean unsigned) {
+            super(owner, name, offset, width);
+            this.unsigned = unsigned;
+        }
+
+        int getInt(ByteBuffer buf, int pos) {
+            switch (width) {
+                case 1: {
+                    byte b = buf.get(pos + offset);
+                    return unsigned ? b & 0xff : b;
+                }
+                case 2: {
+                    short s = buf.getShort(pos + offset);
+                    return unsigned ? s & 0xffff : s;
+                }
+                default:
+                    return buf.getInt(pos + offset);
+            }
+        }
+
+        @Override
+        Integer get(ByteBuffer buf, int pos) {
+            return getInt(buf, pos);
+        }
+    }
+
+    public static final class LongField extends Field<Long> {
+        LongField(Object owner, String name, int offset, int width) {
+            super(owner, name, offset, width);
+        }
+
+        long getLong(ByteBuffer buf, int pos) {
+            return width == 8 ? buf.getLong(pos + offset) : buf.getInt(pos + offset) & 0xffffffffL;
+        }
+
+        @Override
+        Long get(ByteBuffer buf, int pos) {
+            return getLong(buf, pos);
+        }
+    }
+
+    public static final class DoubleField extends Field<Double> {
+        DoubleField(Object owner, String name, int offset, int width) {
+            super(owner, name, offset, width);
+        }
+
+        double getDouble(ByteBuffer buf, int pos) {
+            return width == 8 ? buf.getDouble(pos + offset) : buf.getFloat(pos + offset);
+        }
+
+        @Override
+        Double get(ByteBuffer buf, int pos) {
+            return getDouble(buf, pos);
+        }
+    }
+}
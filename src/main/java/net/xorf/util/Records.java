@@ -0,0 +1,403 @@
+package net.xorf.util;
+
+import net.xorf.util.RecordSchema.DoubleField;
+import net.xorf.util.RecordSchema.Field;
+import net.xorf.util.RecordSchema.IntField;
+import net.xorf.util.RecordSchema.LongField;
+import net.xorf.util.Tuples.Tuple2;
+import net.xorf.util.Tuples.Tuple3;
+import net.xorf.util.Tuples.Tuple4;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A lazy view of a file of fixed-width binary records laid out as described
+ * by a {@link RecordSchema}.  The file is memory-mapped a window of whole
+ * records at a time, so a scan holds no more than one window of it and
+ * allocates next to nothing per record:
+ *
+ * <ul>
+ * <li>iterating the view itself yields one flyweight {@link Cursor} per
+ * iterator, moved from record to record - read fields from it, or copy
+ * them out, before calling <tt>next</tt> again;</li>
+ * <li>{@link #ints}, {@link #longs} and {@link #doubles} project single
+ * fields into the primitive views;</li>
+ * <li>{@link #tuples} decodes a Tuple2-Tuple4 of fields per record, for
+ * callers that need to hold on to records.</li>
+ * </ul>
+ *
+ * The <tt>filter</tt> overloads taking a field return a view that skips
+ * records failing a predicate on that field; each filter, like each
+ * projection, reads only its own field's bytes.  {@link #split} cuts the
+ * file at record boundaries for parallel scans.
+ */
+public class Records extends Views.View<Records.Cursor> implements Views.Splittable<Records.Cursor> {
+    static final int WINDOW = 1 << 26;
+
+    private final Path path;
+    private final RecordSchema schema;
+    /** record index range covered; <tt>last</tt> is -1 for "to end of file" */
+    private final long first, last;
+    private final FieldFilter[] filters;
+
+    public Records(Path path, RecordSchema schema) {
+        this(path, schema, 0, -1, new FieldFilter[0]);
+    }
+
+    private Records(Path path, RecordSchema schema, long first, long last, FieldFilter[] filters) {
+        this.path = path;
+        this.schema = schema;
+        this.first = first;
+        this.last = last;
+        this.filters = filters;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public RecordSchema schema() {
+        return schema;
+    }
+
+    private long recordCount() {
+        long size = MappedFiles.size(path);
+        if (size % schema.recordSize() != 0)
+            throw new IllegalStateException(path + " is " + size + " bytes, not a whole number of "
+                    + schema.recordSize() + "-byte records");
+        return size / schema.recordSize();
+    }
+
+    private Records with(FieldFilter f) {
+        FieldFilter[] fs = Arrays.copyOf(filters, filters.length + 1);
+        fs[filters.length] = f;
+        return new Records(path, schema, first, last, fs);
+    }
+
+    public Records filter(final IntField field, final Views.IntPredicate pred) {
+        schema.check(field);
+        return with(new FieldFilter() {
+            @Override boolean accept(ByteBuffer buf, int pos) { return pred.call(field.getInt(buf, pos)); }
+        });
+    }
+
+    public Records filter(final LongField field, final Views.LongPredicate pred) {
+        schema.check(field);
+        return with(new FieldFilter() {
+            @Override boolean accept(ByteBuffer buf, int pos) { return pred.call(field.getLong(buf, pos)); }
+        });
+    }
+
+    public Records filter(final DoubleField field, final Views.DoublePredicate pred) {
+        schema.check(field);
+        return with(new FieldFilter() {
+            @Override boolean accept(ByteBuffer buf, int pos) { return pred.call(field.getDouble(buf, pos)); }
+        });
+    }
+
+    @Override
+    public Iterator<Cursor> iterator() {
+        final Scan scan = this.new Scan();
+        final Cursor cursor = this.new Cursor(scan);
+        return new ScanIterator<Cursor>(scan) {
+            @Override Cursor current() { return cursor; }
+        };
+    }
+
+    public Views.IntView ints(final IntField field) {
+        schema.check(field);
+        return new Views.IntView() {
+            @Override
+            public PrimitiveIterator.OfInt iterator() {
+                final Scan scan = Records.this.new Scan();
+                return new PrimitiveIterator.OfInt() {
+                    @Override public boolean hasNext() { return scan.hasNext(); }
+                    @Override public int nextInt() {
+                        scan.next();
+                        return field.getInt(scan.window, scan.pos);
+                    }
+                };
+            }
+        };
+    }
+
+    public Views.LongView longs(final LongField field) {
+        schema.check(field);
+        return new Views.LongView() {
+            @Override
+            public PrimitiveIterator.OfLong iterator() {
+                final Scan scan = Records.this.new Scan();
+                return new PrimitiveIterator.OfLong() {
+                    @Override public boolean hasNext() { return scan.hasNext(); }
+                    @Override public long nextLong() {
+                        scan.next();
+                        return field.getLong(scan.window, scan.pos);
+                    }
+                };
+            }
+        };
+    }
+
+    public Views.DoubleView doubles(final DoubleField field) {
+        schema.check(field);
+        return new Views.DoubleView() {
+            @Override
+            public PrimitiveIterator.OfDouble iterator() {
+                final Scan scan = Records.this.new Scan();
+                return new PrimitiveIterator.OfDouble() {
+                    @Override public boolean hasNext() { return scan.hasNext(); }
+                    @Override public double nextDouble() {
+                        scan.next();
+                        return field.getDouble(scan.window, scan.pos);
+                    }
+                };
+            }
+        };
+    }
+
+    public <T1, T2> Views.View<Tuple2<T1, T2>> tuples(final Field<T1> f1, final Field<T2> f2) {
+        schema.check(f1);
+        schema.check(f2);
+        return new Views.View<Tuple2<T1, T2>>() {
+            @Override
+            public Iterator<Tuple2<T1, T2>> iterator() {
+                final Scan scan = Records.this.new Scan();
+                return new ScanIterator<Tuple2<T1, T2>>(scan) {
+                    @Override Tuple2<T1, T2> current() {
+                        return Tuples.tuple(f1.get(scan.window, scan.pos), f2.get(scan.window, scan.pos));
+                    }
+                };
+            }
+        };
+    }
+
+    public <T1, T2, T3> Views.View<Tuple3<T1, T2, T3>>
+            tuples(final Field<T1> f1, final Field<T2> f2, final Field<T3> f3) {
+        schema.check(f1);
+        schema.check(f2);
+        schema.check(f3);
+        return new Views.View<Tuple3<T1, T2, T3>>() {
+            @Override
+            public Iterator<Tuple3<T1, T2, T3>> iterator() {
+                final Scan scan = Records.this.new Scan();
+                return new ScanIterator<Tuple3<T1, T2, T3>>(scan) {
+                    @Override Tuple3<T1, T2, T3> current() {
+                        ByteBuffer w = scan.window;
+                        int p = scan.pos;
+                        return Tuples.tuple(f1.get(w, p), f2.get(w, p), f3.get(w, p));
+                    }
+                };
+            }
+        };
+    }
+
+    public <T1, T2, T3, T4> Views.View<Tuple4<T1, T2, T3, T4>>
+            tuples(final Field<T1> f1, final Field<T2> f2, final Field<T3> f3, final Field<T4> f4) {
+        schema.check(f1);
+        schema.check(f2);
+        schema.check(f3);
+        schema.check(f4);
+        return new Views.View<Tuple4<T1, T2, T3, T4>>() {
+            @Override
+            public Iterator<Tuple4<T1, T2, T3, T4>> iterator() {
+                final Scan scan = Records.this.new Scan();
+                return new ScanIterator<Tuple4<T1, T2, T3, T4>>(scan) {
+                    @Override Tuple4<T1, T2, T3, T4> current() {
+                        ByteBuffer w = scan.window;
+                        int p = scan.pos;
+                        return Tuples.tuple(f1.get(w, p), f2.get(w, p), f3.get(w, p), f4.get(w, p));
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Cuts this view into at most <tt>parts</tt> views over consecutive
+     * runs of records, keeping any filters.
+     */
+    @Override
+    public List<Records> split(int parts) {
+        if (parts < 1)
+            throw new IllegalArgumentException("parts must be positive");
+        long to = last < 0 ? recordCount() : last;
+        long n = to - first;
+        List<Records> ret = new ArrayList<Records>(parts);
+        long from = first;
+        for (int i = 1; i <= parts; i++) {
+            long cut = first + n * i / parts;
+            if (cut > from || (i == parts && ret.isEmpty())) {
+                ret.add(new Records(path, schema, from, cut, filters));
+                from = cut;
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return "Records(" + path + (last < 0 ? "" : ", [" + first + ", " + last + ")") + ")";
+    }
+
+    static abstract class FieldFilter {
+        abstract boolean accept(ByteBuffer buf, int pos);
+    }
+
+    /**
+     * Steps through the records of one iteration.  <tt>window</tt> and
+     * <tt>pos</tt> locate the current record; windows hold whole records
+     * and never extend past the end of the range.
+     */
+    final class Scan {
+        private final int recordSize = schema.recordSize();
+        private final long endByte;
+        private long windowStart;
+        ByteBuffer window;
+        int pos;
+        private boolean ready = false, done = false;
+
+        Scan() {
+            long to = last < 0 ? recordCount() : last;
+            endByte = to * recordSize;
+            map(first * recordSize);
+            pos = -recordSize;
+        }
+
+        private void map(long from) {
+            long windowBytes = (long) Math.max(1, WINDOW / recordSize) * recordSize;
+            windowStart = from;
+            window = MappedFiles.map(path, from, Math.min(windowBytes, endByte - from)).order(schema.order());
+            pos = 0;
+        }
+
+        private boolean advance() {
+            for (;;) {
+                pos += recordSize;
+                if (pos + recordSize > window.limit()) {
+                    long next = windowStart + pos;
+                    if (next >= endByte)
+                        return false;
+                    map(next);
+                }
+                if (accept())
+                    return true;
+            }
+        }
+
+        private boolean accept() {
+            for (FieldFilter f : filters)
+                if (!f.accept(window, pos))
+                    return false;
+            return true;
+        }
+
+        boolean hasNext() {
+            if (!ready && !done) {
+                ready = advance();
+                done = !ready;
+            }
+            return ready;
+        }
+
+        void next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            ready = false;
+        }
+
+        long index() {
+            return (windowStart + pos) / recordSize;
+        }
+    }
+
+    static abstract class ScanIterator<T> implements Iterator<T> {
+        private final Scan scan;
+
+        ScanIterator(Scan scan) {
+            this.scan = scan;
+        }
+
+        abstract T current();
+
+        @Override
+        public boolean hasNext() {
+            return scan.hasNext();
+        }
+
+        @Override
+        public T next() {
+            scan.next();
+            return current();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * The record an iterator is positioned on.  The same cursor is returned
+     * by every <tt>next</tt> of an iterator, so it must not be kept past
+     * the following call; copy fields or {@link #tuple} them out instead.
+     */
+    public final class Cursor {
+        private final Scan scan;
+
+        Cursor(Scan scan) {
+            this.scan = scan;
+        }
+
+        /** the record's position in the file, counting from 0 */
+        public long index() {
+            return scan.index();
+        }
+
+        public int getInt(IntField field) {
+            return schema.check(field).getInt(scan.window, scan.pos);
+        }
+
+        public long getLong(LongField field) {
+            return schema.check(field).getLong(scan.window, scan.pos);
+        }
+
+        public double getDouble(DoubleField field) {
+            return schema.check(field).getDouble(scan.window, scan.pos);
+        }
+
+        public <T> T get(Field<T> field) {
+            return schema.check(field).get(scan.window, scan.pos);
+        }
+
+        public <T1, T2> Tuple2<T1, T2> tuple(Field<T1> f1, Field<T2> f2) {
+            return Tuples.tuple(get(f1), get(f2));
+        }
+
+        public <T1, T2, T3> Tuple3<T1, T2, T3> tuple(Field<T1> f1, Field<T2> f2, Field<T3> f3) {
+            return Tuples.tuple(get(f1), get(f2), get(f3));
+        }
+
+        public <T1, T2, T3, T4> Tuple4<T1, T2, T3, T4>
+                tuple(Field<T1> f1, Field<T2> f2, Field<T3> f3, Field<T4> f4) {
+            return Tuples.tuple(get(f1), get(f2), get(f3), get(f4));
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("#").append(index()).append('(');
+            String sep = "";
+            for (Field<?> f : schema.fields()) {
+                sb.append(sep).append(f.name()).append('=').append(f.get(scan.window, scan.pos));
+                sep = ", ";
+            }
+            return sb.append(')').toString();
+        }
+    }
+}
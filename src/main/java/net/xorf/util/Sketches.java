@@ -0,0 +1,836 @@
+package net.xorf.util;
+
+import net.xorf.util.Tuples.ObjLongTuple2;
+import net.xorf.util.Views.CombinableAggregate;
+import net.xorf.util.Views.Func0;
+import net.xorf.util.Views.Func1;
+import net.xorf.util.Views.ToDoubleFunc1;
+import net.xorf.util.Views.ToLongFunc1;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed-size approximate aggregates for streams too big to hold:
+ * {@link HyperLogLog} distinct counts, {@link TopK} heavy hitters and
+ * {@link Quantiles}.  Each is a {@link CombinableAggregate}, so sketches of
+ * parts of a stream merge into a sketch of the whole, and each serializes
+ * to a compact byte array that <tt>fromBytes</tt> reads back.  A
+ * {@link BloomFilter} for approximate membership merges and serializes
+ * the same way.
+ *
+ * Elements are hashed to 64 bits by {@link #hash64} unless a hash function
+ * is given.  It hashes strings, numbers and byte arrays by content; other
+ * objects by <tt>hashCode</tt>, which only has 32 bits to offer - supply a
+ * better hash for those when counting beyond tens of millions.  Sketches
+ * merged or read back must use the same hash function.
+ */
+public final class Sketches {
+    private static final byte HLL = 1, TOPK = 2, KLL = 3, BLOOM = 4;
+
+    private Sketches() { }
+
+    /** a 64-bit hash of <tt>o</tt>'s contents (see the class comment) */
+    public static long hash64(Object o) {
+        if (o == null)
+            return 0x5bd1e9955bd1e995L;
+        if (o instanceof CharSequence) {
+            CharSequence s = (CharSequence) o;
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < s.length(); i++)
+                h = (h ^ s.charAt(i)) * 0x100000001b3L;
+            return mix64(h ^ s.length());
+        }
+        if (o instanceof Long || o instanceof Integer || o instanceof Short || o instanceof Byte)
+            return mix64(((Number) o).longValue());
+        if (o instanceof Double)
+            return mix64(Double.doubleToLongBits((Double) o));
+        if (o instanceof byte[]) {
+            byte[] b = (byte[]) o;
+            long h = 0xcbf29ce484222325L;
+            for (byte x : b)
+                h = (h ^ (x & 0xff)) * 0x100000001b3L;
+            return mix64(h ^ b.length);
+        }
+        return mix64(o.hashCode());
+    }
+
+    /** the MurmurHash3 finalizer */
+    static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static final ToLongFunc1<Object> HASH = new ToLongFunc1<Object>() {
+        @Override public long call(Object arg) { return hash64(arg); }
+    };
+
+    private static ByteBuffer header(byte[] bytes, byte tag) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (bytes.length < 1 || in.get() != tag)
+            throw new IllegalArgumentException("not a serialized " + new String[] {"", "HyperLogLog", "TopK", "Quantiles", "BloomFilter"}[tag]);
+        return in;
+    }
+
+    /* HyperLogLog */
+
+    /**
+     * Distinct counts in <tt>2^precision</tt> bytes, with a relative
+     * standard error of about <tt>1.04 / sqrt(2^precision)</tt> - 0.8% at
+     * precision 14, in 16KB.
+     */
+    public static <T> Func0<HyperLogLog<T>> distinctCount(int precision) {
+        return distinctCount(precision, HASH);
+    }
+
+    public static <T> Func0<HyperLogLog<T>> distinctCount(final int precision, final ToLongFunc1<? super T> hash) {
+        HyperLogLog.check(precision);
+        return new Func0<HyperLogLog<T>>() {
+            @Override public HyperLogLog<T> call() { return new HyperLogLog<T>(precision, hash); }
+        };
+    }
+
+    public static final class HyperLogLog<T> implements CombinableAggregate<Long, T> {
+        private final int p;
+        private final byte[] registers;
+        private final ToLongFunc1<? super T> hash;
+
+        HyperLogLog(int precision, ToLongFunc1<? super T> hash) {
+            this.p = precision;
+            this.registers = new byte[1 << precision];
+            this.hash = hash;
+        }
+
+        static void check(int precision) {
+            if (precision < 4 || precision > 18)
+                throw new IllegalArgumentException("precision must be 4..18");
+        }
+
+        @Override
+        public void call(T e) {
+            long h = hash.call(e);
+            int idx = (int) (h >>> (64 - p));
+            //the guard bit caps the run of zeros so rho fits the register
+            int rho = Long.numberOfLeadingZeros((h << p) | (1L << (p - 1))) + 1;
+            if (rho > registers[idx])
+                registers[idx] = (byte) rho;
+        }
+
+        /**
+         * Ertl's improved estimator, which corrects the raw HyperLogLog
+         * estimate's bias at small and large counts without empirical
+         * tables.
+         */
+        @Override
+        public Long value() {
+            int m = registers.length, q = 64 - p;
+            int[] hist = new int[q + 2];
+            for (byte r : registers)
+                hist[r]++;
+            if (hist[0] == m)
+                return 0L;
+            double z = m * tau(1 - (double) hist[q + 1] / m);
+            for (int r = q; r >= 1; r--)
+                z = 0.5 * (z + hist[r]);
+            z += m * sigma((double) hist[0] / m);
+            return Math.round(m / (2 * Math.log(2)) * m / z);
+        }
+
+        private static double sigma(double x) {
+            double y = 1, z = x, prev;
+            do {
+                x *= x;
+                prev = z;
+                z += x * y;
+                y += y;
+            } while (z != prev);
+            return z;
+        }
+
+        private static double tau(double x) {
+            if (x == 0 || x == 1)
+                return 0;
+            double y = 1, z = 1 - x, prev;
+            do {
+                x = Math.sqrt(x);
+                prev = z;
+                y *= 0.5;
+                z -= (1 - x) * (1 - x) * y;
+            } while (z != prev);
+            return z / 3;
+        }
+
+        @Override
+        public void merge(CombinableAggregate<Long, T> other) {
+            HyperLogLog<T> o = (HyperLogLog<T>) other;
+            if (o.p != p)
+                throw new IllegalArgumentException("can't merge precision " + o.p + " into " + p);
+            for (int i = 0; i < registers.length; i++)
+                if (o.registers[i] > registers[i])
+                    registers[i] = o.registers[i];
+        }
+
+        public byte[] toBytes() {
+            ByteBuffer out = ByteBuffer.allocate(2 + registers.length);
+            out.put(HLL).put((byte) p).put(registers);
+            return out.array();
+        }
+
+        public static <T> HyperLogLog<T> fromBytes(byte[] bytes) {
+            return fromBytes(bytes, HASH);
+        }
+
+        public static <T> HyperLogLog<T> fromBytes(byte[] bytes, ToLongFunc1<? super T> hash) {
+            try {
+                ByteBuffer in = header(bytes, HLL);
+                int p = in.get();
+                check(p);
+                HyperLogLog<T> h = new HyperLogLog<T>(p, hash);
+                in.get(h.registers);
+                return h;
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("truncated HyperLogLog", e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "HyperLogLog(~" + value() + " distinct, precision " + p + ")";
+        }
+    }
+
+    /* Count-Min top-k */
+
+    /** the <tt>k</tt> most frequent elements, over a 1024 x 4 Count-Min sketch */
+    public static <T> Func0<TopK<T>> topK(int k) {
+        return topK(k, 1024, 4, HASH);
+    }
+
+    /**
+     * Counts are overestimated by at most <tt>e / width</tt> of the total,
+     * with probability <tt>1 - e^-depth</tt>.
+     */
+    public static <T> Func0<TopK<T>> topK(final int k, final int width, final int depth, final ToLongFunc1<? super T> hash) {
+        TopK.check(k, width, depth);
+        return new Func0<TopK<T>>() {
+            @Override public TopK<T> call() { return new TopK<T>(k, width, depth, hash); }
+        };
+    }
+
+    /**
+     * Heavy hitters: a Count-Min sketch estimates every element's count,
+     * and a min-heap keeps the <tt>k</tt> elements with the highest
+     * estimates seen so far.  The value is those elements and estimates,
+     * most frequent first.
+     */
+    public static final class TopK<T> implements CombinableAggregate<List<ObjLongTuple2<T>>, T> {
+        private final int k, width, depth;
+        private final long[] table;
+        private final ToLongFunc1<? super T> hash;
+        private long total = 0;
+        //min-heap of candidates by estimate, with each candidate's heap slot
+        private final Object[] keys;
+        private final long[] counts;
+        private int size = 0;
+        private final Map<T, Integer> slots = new HashMap<T, Integer>();
+
+        TopK(int k, int width, int depth, ToLongFunc1<? super T> hash) {
+            this.k = k;
+            this.width = width;
+            this.depth = depth;
+            this.table = new long[width * depth];
+            this.hash = hash;
+            this.keys = new Object[k];
+            this.counts = new long[k];
+        }
+
+        static void check(int k, int width, int depth) {
+            if (k < 1 || width < 1 || depth < 1 || (long) width * depth > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("bad top-k shape " + k + "/" + width + "x" + depth);
+        }
+
+        /** rows hash independently; deriving them from halves of one hash makes colliding rows collide together */
+        private int cell(long h, int row) {
+            long x = mix64(h + row * 0x9e3779b97f4a7c15L);
+            return row * width + (int) (((x >>> 32) * width) >>> 32);
+        }
+
+        @Override
+        public void call(T e) {
+            long h = hash.call(e);
+            long est = Long.MAX_VALUE;
+            for (int r = 0; r < depth; r++)
+                est = Math.min(est, ++table[cell(h, r)]);
+            total++;
+            offer(e, est);
+        }
+
+        /** the estimated count of <tt>e</tt> */
+        public long estimate(T e) {
+            long h = hash.call(e);
+            long est = Long.MAX_VALUE;
+            for (int r = 0; r < depth; r++)
+                est = Math.min(est, table[cell(h, r)]);
+            return est;
+        }
+
+        public long total() {
+            return total;
+        }
+
+        private void offer(T e, long est) {
+            Integer at = slots.get(e);
+            if (at != null) {
+                counts[at] = est;
+                siftDown(at);
+            } else if (size < k) {
+                keys[size] = e;
+                counts[size] = est;
+                slots.put(e, size);
+                siftUp(size++);
+            } else if (est > counts[0]) {
+                slots.remove(keys[0]);
+                keys[0] = e;
+                counts[0] = est;
+                slots.put(e, 0);
+                siftDown(0);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void swap(int a, int b) {
+            Object ka = keys[a];
+            long ca = counts[a];
+            keys[a] = keys[b];
+            counts[a] = counts[b];
+            keys[b] = ka;
+            counts[b] = ca;
+            slots.put((T) keys[a], a);
+            slots.put((T) keys[b], b);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0 && counts[(i - 1) / 2] > counts[i]) {
+                swap(i, (i - 1) / 2);
+                i = (i - 1) / 2;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int l = 2 * i + 1, r = l + 1, min = i;
+                if (l < size && counts[l] < counts[min])
+                    min = l;
+                if (r < size && counts[r] < counts[min])
+                    min = r;
+                if (min == i)
+                    return;
+                swap(i, min);
+                i = min;
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<ObjLongTuple2<T>> value() {
+            List<ObjLongTuple2<T>> out = new ArrayList<ObjLongTuple2<T>>(size);
+            for (int i = 0; i < size; i++)
+                out.add(new ObjLongTuple2<T>((T) keys[i], counts[i]));
+            out.sort(new Comparator<ObjLongTuple2<T>>() {
+                @Override
+                public int compare(ObjLongTuple2<T> a, ObjLongTuple2<T> b) {
+                    return Long.compare(b._2, a._2);
+                }
+            });
+            return out;
+        }
+
+        /** sums the counters, then re-ranks both sides' candidates against the sum */
+        @Override
+        @SuppressWarnings("unchecked")
+        public void merge(CombinableAggregate<List<ObjLongTuple2<T>>, T> other) {
+            TopK<T> o = (TopK<T>) other;
+            if (o.width != width || o.depth != depth)
+                throw new IllegalArgumentException("can't merge a " + o.width + "x" + o.depth + " sketch into " + width + "x" + depth);
+            for (int i = 0; i < table.length; i++)
+                table[i] += o.table[i];
+            total += o.total;
+            List<T> candidates = new ArrayList<T>(size + o.size);
+            for (int i = 0; i < size; i++)
+                candidates.add((T) keys[i]);
+            for (int i = 0; i < o.size; i++)
+                if (!slots.containsKey(o.keys[i]))
+                    candidates.add((T) o.keys[i]);
+            size = 0;
+            slots.clear();
+            Arrays.fill(keys, null);
+            for (T c : candidates)
+                offer(c, estimate(c));
+        }
+
+        /** @param encoder the bytes of a candidate element */
+        public byte[] toBytes(Func1<? super T, byte[]> encoder) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(TOPK);
+            writeVarLong(out, k);
+            writeVarLong(out, width);
+            writeVarLong(out, depth);
+            writeVarLong(out, total);
+            for (long c : table)
+                writeVarLong(out, c);
+            writeVarLong(out, size);
+            for (int i = 0; i < size; i++) {
+                @SuppressWarnings("unchecked")
+                byte[] b = encoder.call((T) keys[i]);
+                writeVarLong(out, b.length);
+                out.write(b, 0, b.length);
+            }
+            return out.toByteArray();
+        }
+
+        public static <T> TopK<T> fromBytes(byte[] bytes, Func1<byte[], T> decoder) {
+            return fromBytes(bytes, decoder, HASH);
+        }
+
+        public static <T> TopK<T> fromBytes(byte[] bytes, Func1<byte[], T> decoder, ToLongFunc1<? super T> hash) {
+            try {
+                ByteBuffer in = header(bytes, TOPK);
+                int k = (int) readVarLong(in), width = (int) readVarLong(in), depth = (int) readVarLong(in);
+                check(k, width, depth);
+                TopK<T> t = new TopK<T>(k, width, depth, hash);
+                t.total = readVarLong(in);
+                for (int i = 0; i < t.table.length; i++)
+                    t.table[i] = readVarLong(in);
+                int n = (int) readVarLong(in);
+                for (int i = 0; i < n; i++) {
+                    byte[] b = new byte[(int) readVarLong(in)];
+                    in.get(b);
+                    T e = decoder.call(b);
+                    t.offer(e, t.estimate(e));
+                }
+                return t;
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("truncated TopK", e);
+            }
+        }
+
+        /** an encoder for string elements, for {@link #toBytes} */
+        public static final Func1<String, byte[]> UTF8 = new Func1<String, byte[]>() {
+            @Override public byte[] call(String s) { return s.getBytes(StandardCharsets.UTF_8); }
+        };
+
+        public static final Func1<byte[], String> FROM_UTF8 = new Func1<byte[], String>() {
+            @Override public String call(byte[] b) { return new String(b, StandardCharsets.UTF_8); }
+        };
+
+        @Override
+        public String toString() {
+            return "TopK(" + value() + " of " + total + ")";
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7fL) != 0) {
+            out.write((int) ((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            v |= (long) (b & 0x7f) << shift;
+            if (b >= 0)
+                return v;
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    /* KLL quantiles */
+
+    /** quantiles of <tt>value</tt>, with a KLL sketch of accuracy parameter 200 (about 1.3% rank error) */
+    public static <T> Func0<Quantiles<T>> quantiles(ToDoubleFunc1<? super T> value) {
+        return quantiles(value, 200);
+    }
+
+    public static <T> Func0<Quantiles<T>> quantiles(final ToDoubleFunc1<? super T> value, final int k) {
+        Quantiles.check(k);
+        return new Func0<Quantiles<T>>() {
+            @Override public Quantiles<T> call() { return new Quantiles<T>(value, k); }
+        };
+    }
+
+    /**
+     * A KLL sketch.  Values are buffered in levels; when a level fills, it
+     * is sorted and every other value (from a random offset) is promoted
+     * to the level above, where it stands for twice as many.  Level
+     * capacities shrink geometrically going down from the top one, so the
+     * sketch holds O(k) values whatever the stream's length.
+     */
+    public static final class Quantiles<T> implements CombinableAggregate<Quantiles.Summary, T> {
+        private final ToDoubleFunc1<? super T> value;
+        private final int k;
+        private double[][] levels = {new double[8]};
+        private int[] sizes = {0};
+        private long n = 0;
+        private double min = Double.NaN, max = Double.NaN;
+        private long coin = 0x9e3779b97f4a7c15L;
+
+        Quantiles(ToDoubleFunc1<? super T> value, int k) {
+            this.value = value;
+            this.k = k;
+        }
+
+        static void check(int k) {
+            if (k < 8 || k > 65535)
+                throw new IllegalArgumentException("k must be 8..65535");
+        }
+
+        private int capacity(int level) {
+            int depth = levels.length - 1 - level;
+            return Math.max(2, (int) Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+        }
+
+        private int retained() {
+            int r = 0;
+            for (int s : sizes)
+                r += s;
+            return r;
+        }
+
+        private int totalCapacity() {
+            int c = 0;
+            for (int h = 0; h < levels.length; h++)
+                c += capacity(h);
+            return c;
+        }
+
+        @Override
+        public void call(T e) {
+            add(value.call(e));
+        }
+
+        public void add(double x) {
+            if (Double.isNaN(x))
+                return;
+            if (n++ == 0) {
+                min = max = x;
+            } else {
+                min = Math.min(min, x);
+                max = Math.max(max, x);
+            }
+            append(0, x);
+            if (sizes[0] >= capacity(0))
+                compress();
+        }
+
+        private void append(int level, double x) {
+            if (sizes[level] == levels[level].length)
+                levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+            levels[level][sizes[level]++] = x;
+        }
+
+        private void compress() {
+            while (retained() > totalCapacity() || sizes[0] >= capacity(0)) {
+                int h = 0;
+                while (sizes[h] < capacity(h))
+                    h++;
+                compact(h);
+            }
+        }
+
+        /** promotes every other value of <tt>level</tt>, keeping one back if there's an odd number */
+        private void compact(int level) {
+            if (level == levels.length - 1) {
+                levels = Arrays.copyOf(levels, levels.length + 1);
+                levels[level + 1] = new double[8];
+                sizes = Arrays.copyOf(sizes, sizes.length + 1);
+            }
+            double[] items = levels[level];
+            int size = sizes[level];
+            Arrays.sort(items, 0, size);
+            int keep = size & 1;
+            coin ^= coin << 13;
+            coin ^= coin >>> 7;
+            coin ^= coin << 17;
+            for (int i = keep + (int) (coin & 1); i < size; i += 2)
+                append(level + 1, items[i]);
+            sizes[level] = keep;
+        }
+
+        @Override
+        public void merge(CombinableAggregate<Summary, T> other) {
+            Quantiles<T> o = (Quantiles<T>) other;
+            if (o.k != k)
+                throw new IllegalArgumentException("can't merge k=" + o.k + " into k=" + k);
+            if (o.n == 0)
+                return;
+            while (levels.length < o.levels.length) {
+                levels = Arrays.copyOf(levels, levels.length + 1);
+                levels[levels.length - 1] = new double[8];
+                sizes = Arrays.copyOf(sizes, sizes.length + 1);
+            }
+            for (int h = 0; h < o.levels.length; h++)
+                for (int i = 0; i < o.sizes[h]; i++)
+                    append(h, o.levels[h][i]);
+            min = n == 0 ? o.min : Math.min(min, o.min);
+            max = n == 0 ? o.max : Math.max(max, o.max);
+            n += o.n;
+            compress();
+        }
+
+        @Override
+        public Summary value() {
+            int r = retained();
+            double[] vals = new double[r];
+            long[] weights = new long[r];
+            Integer[] order = new Integer[r];
+            int i = 0;
+            for (int h = 0; h < levels.length; h++)
+                for (int j = 0; j < sizes[h]; j++, i++) {
+                    vals[i] = levels[h][j];
+                    weights[i] = 1L << h;
+                    order[i] = i;
+                }
+            final double[] v = vals;
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Double.compare(v[a], v[b]);
+                }
+            });
+            double[] sorted = new double[r];
+            long[] cumulative = new long[r];
+            long acc = 0;
+            for (i = 0; i < r; i++) {
+                sorted[i] = vals[order[i]];
+                acc += weights[order[i]];
+                cumulative[i] = acc;
+            }
+            return new Summary(sorted, cumulative, n, min, max);
+        }
+
+        public byte[] toBytes() {
+            int r = retained();
+            ByteBuffer out = ByteBuffer.allocate(1 + 2 + 8 + 16 + 1 + levels.length * 4 + r * 8);
+            out.put(KLL).putShort((short) k).putLong(n).putDouble(min).putDouble(max).put((byte) levels.length);
+            for (int h = 0; h < levels.length; h++) {
+                out.putInt(sizes[h]);
+                for (int j = 0; j < sizes[h]; j++)
+                    out.putDouble(levels[h][j]);
+            }
+            return out.array();
+        }
+
+        public static <T> Quantiles<T> fromBytes(byte[] bytes, ToDoubleFunc1<? super T> value) {
+            try {
+                ByteBuffer in = header(bytes, KLL);
+                int k = in.getShort() & 0xffff;
+                check(k);
+                Quantiles<T> q = new Quantiles<T>(value, k);
+                q.n = in.getLong();
+                q.min = in.getDouble();
+                q.max = in.getDouble();
+                int numLevels = in.get();
+                q.levels = new double[numLevels][];
+                q.sizes = new int[numLevels];
+                for (int h = 0; h < numLevels; h++) {
+                    int size = in.getInt();
+                    q.levels[h] = new double[Math.max(8, size)];
+                    for (int j = 0; j < size; j++)
+                        q.levels[h][j] = in.getDouble();
+                    q.sizes[h] = size;
+                }
+                return q;
+            } catch (BufferUnderflowException | NegativeArraySizeException e) {
+                throw new IllegalArgumentException("malformed Quantiles", e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Quantiles(k=" + k + ", n=" + n + ", " + retained() + " retained)";
+        }
+
+        /** the sketch's weighted sample, sorted, for answering queries */
+        public static final class Summary {
+            private final double[] values;
+            private final long[] cumulative;
+            private final long n;
+            private final double min, max;
+
+            Summary(double[] values, long[] cumulative, long n, double min, double max) {
+                this.values = values;
+                this.cumulative = cumulative;
+                this.n = n;
+                this.min = min;
+                this.max = max;
+            }
+
+            public long count() { return n; }
+            public double min() { return min; }
+            public double max() { return max; }
+
+            /** the value at <tt>q</tt> (0..1) of the way through the sorted stream; NaN if empty */
+            public double quantile(double q) {
+                if (q < 0 || q > 1)
+                    throw new IllegalArgumentException("quantile must be in 0..1");
+                if (n == 0)
+                    return Double.NaN;
+                if (q == 0)
+                    return min;
+                if (q == 1)
+                    return max;
+                long total = cumulative[cumulative.length - 1];
+                long target = (long) Math.ceil(q * total);
+                int i = Arrays.binarySearch(cumulative, target);
+                return values[i >= 0 ? i : -i - 1];
+            }
+
+            /** the fraction of the stream less than or equal to <tt>x</tt> */
+            public double rank(double x) {
+                if (n == 0)
+                    return Double.NaN;
+                long total = cumulative[cumulative.length - 1];
+                int lo = 0, hi = values.length;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (values[mid] <= x)
+                        lo = mid + 1;
+                    else
+                        hi = mid;
+                }
+                return lo == 0 ? 0 : (double) cumulative[lo - 1] / total;
+            }
+
+            @Override
+            public String toString() {
+                return "Summary(n=" + n + ", p50=" + quantile(0.5) + ", p99=" + quantile(0.99) + ")";
+            }
+        }
+    }
+
+    /* Bloom filter */
+
+    /**
+     * A Bloom filter sized for <tt>expectedInsertions</tt> elements at a
+     * false positive rate of about <tt>fpp</tt>.
+     */
+    public static <T> BloomFilter<T> bloomFilter(long expectedInsertions, double fpp) {
+        return bloomFilter(expectedInsertions, fpp, HASH);
+    }
+
+    public static <T> BloomFilter<T> bloomFilter(long expectedInsertions, double fpp, ToLongFunc1<? super T> hash) {
+        if (expectedInsertions < 0 || !(fpp > 0 && fpp < 1))
+            throw new IllegalArgumentException("need expectedInsertions >= 0 and 0 < fpp < 1");
+        double bits = Math.max(512, -expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        if (bits / 64 > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("too large a filter: " + (long) bits + " bits");
+        int blocks = (int) Math.ceil(bits / BloomFilter.BLOCK_BITS);
+        int k = (int) Math.max(1, Math.min(16, Math.round(-Math.log(fpp) / Math.log(2))));
+        return new BloomFilter<T>(new long[blocks * BloomFilter.BLOCK_LONGS], k, hash);
+    }
+
+    /**
+     * Set membership with no false negatives and tunable false positives,
+     * in about <tt>1.44 * log2(1 / fpp)</tt> bits per element.  The filter
+     * is blocked: all of an element's bits fall in one 64-byte block, so a
+     * lookup touches one cache line, for a slightly higher false positive
+     * rate than an unblocked filter of the same size.
+     */
+    public static final class BloomFilter<T> {
+        static final int BLOCK_BITS = 512, BLOCK_LONGS = BLOCK_BITS / 64;
+
+        private final long[] bits;
+        private final int k, blocks;
+        private final ToLongFunc1<? super T> hash;
+
+        BloomFilter(long[] bits, int k, ToLongFunc1<? super T> hash) {
+            this.bits = bits;
+            this.k = k;
+            this.blocks = bits.length / BLOCK_LONGS;
+            this.hash = hash;
+        }
+
+        private int block(long h) {
+            return (int) (((h >>> 32) * blocks) >>> 32) * BLOCK_LONGS;
+        }
+
+        public void put(T e) {
+            long h = hash.call(e);
+            int base = block(h);
+            //the bit positions come from the low half, the block from the high one
+            int a = (int) h, b = (int) mix64(h) | 1;
+            for (int i = 0; i < k; i++) {
+                int pos = (a + i * b) & (BLOCK_BITS - 1);
+                bits[base + (pos >>> 6)] |= 1L << pos;
+            }
+        }
+
+        /** false if <tt>e</tt> was certainly never put; true if it probably was */
+        public boolean mightContain(T e) {
+            long h = hash.call(e);
+            int base = block(h);
+            int a = (int) h, b = (int) mix64(h) | 1;
+            for (int i = 0; i < k; i++) {
+                int pos = (a + i * b) & (BLOCK_BITS - 1);
+                if ((bits[base + (pos >>> 6)] & (1L << pos)) == 0)
+                    return false;
+            }
+            return true;
+        }
+
+        /** adds the elements of a filter of the same shape */
+        public void merge(BloomFilter<T> other) {
+            if (other.bits.length != bits.length || other.k != k)
+                throw new IllegalArgumentException("can't merge Bloom filters of different shapes");
+            for (int i = 0; i < bits.length; i++)
+                bits[i] |= other.bits[i];
+        }
+
+        public byte[] toBytes() {
+            ByteBuffer out = ByteBuffer.allocate(1 + 1 + 4 + bits.length * 8);
+            out.put(BLOOM).put((byte) k).putInt(blocks);
+            for (long w : bits)
+                out.putLong(w);
+            return out.array();
+        }
+
+        public static <T> BloomFilter<T> fromBytes(byte[] bytes) {
+            return fromBytes(bytes, HASH);
+        }
+
+        public static <T> BloomFilter<T> fromBytes(byte[] bytes, ToLongFunc1<? super T> hash) {
+            try {
+                ByteBuffer in = header(bytes, BLOOM);
+                int k = in.get(), blocks = in.getInt();
+                if (k < 1 || blocks < 1 || blocks > (Integer.MAX_VALUE - 8) / BLOCK_LONGS)
+                    throw new IllegalArgumentException("malformed BloomFilter");
+                long[] bits = new long[blocks * BLOCK_LONGS];
+                for (int i = 0; i < bits.length; i++)
+                    bits[i] = in.getLong();
+                return new BloomFilter<T>(bits, k, hash);
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("truncated BloomFilter", e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "BloomFilter(" + (bits.length * 8) + " bytes, " + k + " hashes)";
+        }
+    }
+}
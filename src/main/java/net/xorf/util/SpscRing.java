@@ -0,0 +1,91 @@
+package net.xorf.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded single-producer/single-consumer ring buffer.  Exactly one
+ * thread may call {@link #offer} and exactly one (other) thread
+ * {@link #poll}; with that discipline neither side takes a lock or does a
+ * compare-and-set, each only publishes its own index with an ordered store.
+ * Each side also caches the other's index and only re-reads it when the
+ * cached value says the ring is full (or empty).
+ *
+ * The slots are a power of two, but at most the requested capacity is
+ * ever held, which can't exceed 2^30.  Null can't be stored, since
+ * <tt>poll</tt> returns null for "empty".
+ */
+final class SpscRing<T> {
+    static final int MAX_CAPACITY = 1 << 30;
+
+    private final Object[] slots;
+    private final int mask, capacity;
+
+    //head and tail each sit alone on a cache line, with the cache of the
+    //other's index that their owner keeps, so producer and consumer don't
+    //contend for one
+    private final PaddedIndex head = new PaddedIndex(); //cache: consumer's view of tail
+    private final PaddedIndex tail = new PaddedIndex(); //cache: producer's view of head
+
+    SpscRing(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        if (capacity > MAX_CAPACITY)
+            throw new IllegalArgumentException("capacity cannot be > 2^30: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        slots = new Object[size];
+        mask = size - 1;
+        this.capacity = capacity;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /** producer side; false if the ring is full */
+    boolean offer(T e) {
+        long t = tail.get();
+        if (t - tail.cache >= capacity) {
+            tail.cache = head.get();
+            if (t - tail.cache >= capacity)
+                return false;
+        }
+        slots[(int) t & mask] = e;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /** consumer side; null if the ring is empty */
+    @SuppressWarnings("unchecked")
+    T poll() {
+        long h = head.get();
+        if (h >= head.cache) {
+            head.cache = tail.get();
+            if (h >= head.cache)
+                return null;
+        }
+        int idx = (int) h & mask;
+        T e = (T) slots[idx];
+        slots[idx] = null;
+        head.lazySet(h + 1);
+        return e;
+    }
+
+    /** consumer side */
+    boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    /**
+     * An index and its owner's cache of the other index; the padding fields
+     * keep neighbouring data off their cache line
+     */
+    @SuppressWarnings("unused")
+    static final class PaddedIndex extends AtomicLong {
+        private static final long serialVersionUID = 1L;
+
+        long cache;
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
@@ -0,0 +1,81 @@
+package net.xorf.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Worker threads for the concurrent view stages.  Virtual threads are used
+ * when the running JDK has them (looked up reflectively, so this compiles
+ * and runs on JDKs without them); otherwise daemon platform threads.
+ * Either way an abandoned stage can't keep the JVM alive.
+ */
+final class Threads {
+
+    //static-only utilities
+    private Threads() { }
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+
+    static {
+        Method ofVirtual = null, name = null, factory = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+    }
+
+    private static final AtomicLong SEQ = new AtomicLong();
+
+    static boolean hasVirtualThreads() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * A factory for threads named <tt>name-N</tt>: virtual if asked for
+     * and available, daemon platform threads otherwise.
+     */
+    static ThreadFactory factory(final String name, boolean virtual) {
+        if (virtual && OF_VIRTUAL != null) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name + "-", 0L);
+                return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                //fall through to platform threads
+            }
+        }
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name + "-" + SEQ.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * An executor running at most <tt>threads</tt> tasks at once, whose
+     * idle threads exit on their own - so one left behind by an abandoned
+     * iterator winds down without being shut down.
+     */
+    static ExecutorService boundedExecutor(String name, int threads, boolean virtual) {
+        ThreadPoolExecutor ex = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), factory(name, virtual));
+        ex.allowCoreThreadTimeOut(true);
+        return ex;
+    }
+}
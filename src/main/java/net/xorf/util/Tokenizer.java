@@ -0,0 +1,421 @@
+package net.xorf.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A lazy view of the tokens of a <tt>CharSequence</tt>, split on a delimiter
+ * given in <tt>String.split</tt> regex syntax - and with the same results
+ * as <tt>String.split(delim)</tt>, including the dropping of trailing empty
+ * tokens.
+ *
+ * Tokens are {@link Slice}s over the original character data; no substring
+ * is created unless a caller asks for one with <tt>toString()</tt>.
+ *
+ * Most delimiters in practice are literal strings (<tt>","</tt>,
+ * <tt>"\\|"</tt>, <tt>"::"</tt>) or sets of literal characters
+ * (<tt>"[,\\|]"</tt>).  Those are recognized and matched with plain
+ * character scans; only real regular expressions are compiled, and the
+ * compiled delimiters are cached.
+ */
+public class Tokenizer extends Views.View<CharSequence> {
+    private static final String REGEX_META = ".$|()[]{}^?*+\\";
+    private static final int MAX_CACHED = 256;
+    private static final ConcurrentMap<String, Delimiter> DELIMITERS = new ConcurrentHashMap<String, Delimiter>();
+
+    private final CharSequence input;
+    private final Delimiter delimiter;
+
+    public Tokenizer(CharSequence input, String delim) {
+        this.input = input;
+        this.delimiter = delimiter(delim);
+    }
+
+    @Override
+    public Iterator<CharSequence> iterator() {
+        return this.new TokenIterator();
+    }
+
+    static Delimiter delimiter(String delim) {
+        Delimiter d = DELIMITERS.get(delim);
+        if (d == null) {
+            d = Delimiter.compile(delim);
+            if (DELIMITERS.size() < MAX_CACHED)
+                DELIMITERS.putIfAbsent(delim, d);
+        }
+        return d;
+    }
+
+    /**
+     * A compiled delimiter: a literal string, a set of literal characters,
+     * or a regex.  Immutable and shared; per-iteration state lives in the
+     * {@link Finder}s it creates.
+     */
+    static final class Delimiter {
+        private final String literal;
+        private final char[] charSet;
+        private final Pattern pattern;
+
+        private Delimiter(String literal, char[] charSet, Pattern pattern) {
+            this.literal = literal;
+            this.charSet = charSet;
+            this.pattern = pattern;
+        }
+
+        static Delimiter compile(String delim) {
+            String literal = asLiteral(delim);
+            if (literal != null)
+                return new Delimiter(literal, null, null);
+            char[] set = asCharSet(delim);
+            if (set != null)
+                return new Delimiter(null, set, null);
+            return new Delimiter(null, null, Pattern.compile(delim));
+        }
+
+        /** the literal text matched by <tt>regex</tt>, or null if it isn't a plain literal */
+        private static String asLiteral(String regex) {
+            if (regex.isEmpty())
+                return null;
+            StringBuilder sb = new StringBuilder(regex.length());
+            for (int i = 0; i < regex.length(); i++) {
+                char c = regex.charAt(i);
+                if (c == '\\') {
+                    if (++i == regex.length())
+                        return null;
+                    c = regex.charAt(i);
+                    //escaped letters and digits are classes/back-references
+                    if (Character.isLetterOrDigit(c))
+                        return null;
+                } else if (REGEX_META.indexOf(c) >= 0) {
+                    return null;
+                }
+                sb.append(c);
+            }
+            return sb.toString();
+        }
+
+        /** the characters of a simple class like <tt>[,;\\|]</tt>, or null */
+        private static char[] asCharSet(String regex) {
+            int len = regex.length();
+            if (len < 3 || regex.charAt(0) != '[' || regex.charAt(len - 1) != ']' || regex.charAt(1) == '^')
+                return null;
+            StringBuilder sb = new StringBuilder();
+            for (int i = 1; i < len - 1; i++) {
+                char c = regex.charAt(i);
+                if (c == '\\') {
+                    if (++i == len - 1)
+                        return null;
+                    c = regex.charAt(i);
+                    if (Character.isLetterOrDigit(c))
+                        return null;
+                } else if (c == '[' || c == ']' || c == '-' || c == '&') {
+                    return null;
+                }
+                sb.append(c);
+            }
+            char[] ret = new char[sb.length()];
+            sb.getChars(0, ret.length, ret, 0);
+            return ret;
+        }
+
+        Finder finder(CharSequence input) {
+            if (literal != null)
+                return literal.length() == 1
+                        ? new CharSetFinder(input, new char[] { literal.charAt(0) })
+                        : new LiteralFinder(input, literal);
+            if (charSet != null)
+                return new CharSetFinder(input, charSet);
+            return new RegexFinder(pattern.matcher(input));
+        }
+    }
+
+    /** finds successive delimiter matches; <tt>start</tt>/<tt>end</tt> hold the last one */
+    static abstract class Finder {
+        int start, end;
+
+        abstract boolean next();
+    }
+
+    static final class LiteralFinder extends Finder {
+        private final CharSequence input;
+        private final String literal;
+
+        LiteralFinder(CharSequence input, String literal) {
+            this.input = input;
+            this.literal = literal;
+        }
+
+        @Override
+        boolean next() {
+            int from = end;
+            int last = input.length() - literal.length();
+            char first = literal.charAt(0);
+            outer:
+            for (int i = from; i <= last; i++) {
+                if (input.charAt(i) != first)
+                    continue;
+                for (int j = 1; j < literal.length(); j++)
+                    if (input.charAt(i + j) != literal.charAt(j))
+                        continue outer;
+                start = i;
+                end = i + literal.length();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    static final class CharSetFinder extends Finder {
+        private final CharSequence input;
+        private final char[] set;
+
+        CharSetFinder(CharSequence input, char[] set) {
+            this.input = input;
+            this.set = set;
+        }
+
+        @Override
+        boolean next() {
+            int len = input.length();
+            for (int i = end; i < len; i++) {
+                char c = input.charAt(i);
+                for (char s : set) {
+                    if (c == s) {
+                        start = i;
+                        end = i + 1;
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class RegexFinder extends Finder {
+        private final Matcher matcher;
+
+        RegexFinder(Matcher matcher) {
+            this.matcher = matcher;
+        }
+
+        @Override
+        boolean next() {
+            if (!matcher.find())
+                return false;
+            start = matcher.start();
+            end = matcher.end();
+            return true;
+        }
+    }
+
+    /**
+     * Produces the same token sequence as <tt>String.split</tt>: a leading
+     * empty token for a non-empty match at the start, no token for a
+     * zero-width match there, the whole input if nothing matches at all,
+     * and no trailing empty tokens.  Runs of empty tokens are only counted,
+     * not buffered, until it is known whether a non-empty token follows.
+     */
+    public class TokenIterator implements Iterator<CharSequence> {
+        private final Finder finder = delimiter.finder(input);
+        private int pos = 0;
+        private boolean exhausted = false;
+        private boolean matched = false;
+        private int rawStart, rawEnd;
+
+        private int pendingEmpties = 0;
+        private int emptyPos;
+        private boolean holding = false;
+        private int heldStart, heldEnd;
+
+        private boolean ready = false;
+        private int tokStart, tokEnd;
+
+        private boolean raw() {
+            if (exhausted)
+                return false;
+            while (finder.next()) {
+                if (finder.end == 0)
+                    continue;
+                rawStart = pos;
+                rawEnd = finder.start;
+                pos = finder.end;
+                matched = true;
+                return true;
+            }
+            exhausted = true;
+            rawStart = matched ? pos : 0;
+            rawEnd = input.length();
+            return true;
+        }
+
+        private boolean advance() {
+            if (pendingEmpties > 0) {
+                pendingEmpties--;
+                tokStart = tokEnd = emptyPos;
+                return true;
+            }
+            if (holding) {
+                holding = false;
+                tokStart = heldStart;
+                tokEnd = heldEnd;
+                return true;
+            }
+            if (!raw())
+                return false;
+            if (rawEnd > rawStart || !matched) {
+                tokStart = rawStart;
+                tokEnd = rawEnd;
+                return true;
+            }
+            int empties = 1;
+            emptyPos = rawStart;
+            while (raw()) {
+                if (rawEnd > rawStart) {
+                    holding = true;
+                    heldStart = rawStart;
+                    heldEnd = rawEnd;
+                    pendingEmpties = empties - 1;
+                    tokStart = tokEnd = emptyPos;
+                    return true;
+                }
+                empties++;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!ready)
+                ready = advance();
+            return ready;
+        }
+
+        @Override
+        public CharSequence next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            ready = false;
+            return new Slice(input, tokStart, tokEnd);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * A zero-copy window onto part of another <tt>CharSequence</tt>.
+     * <tt>hashCode</tt> matches <tt>String.hashCode</tt> of the same
+     * characters; <tt>equals</tt> compares content with other slices only,
+     * since <tt>String.equals</tt> can't return true for a slice.
+     */
+    public static final class Slice implements CharSequence {
+        private final CharSequence base;
+        private final int start, end;
+
+        public Slice(CharSequence base, int start, int end) {
+            if (start < 0 || end > base.length() || start > end)
+                throw new IndexOutOfBoundsException("[" + start + ", " + end + ")");
+            this.base = base;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= end - start)
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            return base.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || to > end - start || from > to)
+                throw new IndexOutOfBoundsException("[" + from + ", " + to + ")");
+            return new Slice(base, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return base.subSequence(start, end).toString();
+        }
+
+        @Override
+        public int hashCode() {
+            int h = 0;
+            for (int i = start; i < end; i++)
+                h = 31 * h + base.charAt(i);
+            return h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Slice))
+                return false;
+            Slice other = (Slice) o;
+            if (other.length() != length())
+                return false;
+            for (int i = 0; i < length(); i++)
+                if (charAt(i) != other.charAt(i))
+                    return false;
+            return true;
+        }
+    }
+
+    /*
+     * Number parsing straight from character data, so numeric fields don't
+     * need an intermediate String.
+     */
+
+    public static int parseInt(CharSequence cs) {
+        long v = parseLong(cs);
+        if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE)
+            throw new NumberFormatException("out of int range: \"" + cs + "\"");
+        return (int) v;
+    }
+
+    public static long parseLong(CharSequence cs) {
+        int len = cs.length();
+        if (len == 0)
+            throw new NumberFormatException("empty string");
+        int i = 0;
+        boolean negative = false;
+        char c = cs.charAt(0);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            if (++i == len)
+                throw new NumberFormatException("for input string: \"" + cs + "\"");
+        }
+        //accumulate negatively so Long.MIN_VALUE parses
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multmin = limit / 10;
+        long result = 0;
+        for (; i < len; i++) {
+            int d = cs.charAt(i) - '0';
+            if (d < 0 || d > 9 || result < multmin)
+                throw new NumberFormatException("for input string: \"" + cs + "\"");
+            result *= 10;
+            if (result < limit + d)
+                throw new NumberFormatException("for input string: \"" + cs + "\"");
+            result -= d;
+        }
+        return negative ? result : -result;
+    }
+
+    /** delegates to <tt>Double.parseDouble</tt>, which needs a String */
+    public static double parseDouble(CharSequence cs) {
+        return Double.parseDouble(cs.toString());
+    }
+}
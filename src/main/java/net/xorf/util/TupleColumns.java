@@ -0,0 +1,391 @@
+package net.xorf.util;
+
+import net.xorf.util.Tuples.Tuple;
+import net.xorf.util.Tuples.Tuple2;
+import net.xorf.util.Tuples.Tuple3;
+import net.xorf.util.Tuples.Tuple4;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A batch of 2-, 3- or 4-tuples stored column-wise ("struct of arrays"):
+ * one {@link Columns.Column} per field, with <tt>int</tt>, <tt>long</tt> and
+ * <tt>double</tt> fields held in primitive arrays.  Scans over a single
+ * field run as a tight loop over one array instead of chasing a pointer to
+ * a tuple object per row.
+ *
+ * Filtering doesn't copy any data: it produces a new batch over the same
+ * columns together with a selection vector - the indexes of the rows that
+ * passed.  Further filters, maps and aggregates only visit the selected
+ * rows.
+ *
+ * Fields are numbered from 1, matching the <tt>_1</tt>..<tt>_4</tt> members
+ * of the tuples.
+ *
+ * Example usage:
+ * <pre>
+ * {@code
+ * TupleColumns.Of3<String, Double, Long> batch = TupleColumns.of3(rows);
+ * View<Long> ids = batch.filterDouble(2, new Views.DoublePredicate() {
+ *     public boolean call(double score) { return score > 0.5; }
+ * }).column3();
+ * }
+ * </pre>
+ *
+ * @param <TTuple> the tuple type of a row
+ * @param <TSelf> the concrete batch type, returned from the filter operations
+ */
+public abstract class TupleColumns<TTuple extends Tuple, TSelf extends TupleColumns<TTuple, TSelf>> {
+    protected final Columns.Column<?>[] columns;
+    protected final int[] selection;
+    protected final int count;
+
+    /**
+     * @param selection row indexes to include, or null for every row
+     * @param count number of rows, or of valid entries in <tt>selection</tt>
+     */
+    protected TupleColumns(Columns.Column<?>[] columns, int[] selection, int count) {
+        this.columns = columns;
+        this.selection = selection;
+        this.count = count;
+    }
+
+    /** a batch of the same arity over the same columns, restricted to <tt>selection</tt> */
+    protected abstract TSelf select(int[] selection, int count);
+
+    /** builds the tuple for physical row <tt>row</tt> */
+    protected abstract TTuple tupleAt(int row);
+
+    public static <T1, T2> Of2<T1, T2> of2(Iterable<? extends Tuple2<T1, T2>> tups) {
+        Columns.ColumnBuilder<T1> c1 = new Columns.ColumnBuilder<T1>();
+        Columns.ColumnBuilder<T2> c2 = new Columns.ColumnBuilder<T2>();
+        int n = 0;
+        for (Tuple2<T1, T2> t : tups) {
+            c1.add(t._1);
+            c2.add(t._2);
+            n++;
+        }
+        return new Of2<T1, T2>(new Columns.Column<?>[] { c1.build(), c2.build() }, null, n);
+    }
+
+    public static <T1, T2, T3> Of3<T1, T2, T3> of3(Iterable<? extends Tuple3<T1, T2, T3>> tups) {
+        Columns.ColumnBuilder<T1> c1 = new Columns.ColumnBuilder<T1>();
+        Columns.ColumnBuilder<T2> c2 = new Columns.ColumnBuilder<T2>();
+        Columns.ColumnBuilder<T3> c3 = new Columns.ColumnBuilder<T3>();
+        int n = 0;
+        for (Tuple3<T1, T2, T3> t : tups) {
+            c1.add(t._1);
+            c2.add(t._2);
+            c3.add(t._3);
+            n++;
+        }
+        return new Of3<T1, T2, T3>(new Columns.Column<?>[] { c1.build(), c2.build(), c3.build() }, null, n);
+    }
+
+    public static <T1, T2, T3, T4> Of4<T1, T2, T3, T4> of4(Iterable<? extends Tuple4<T1, T2, T3, T4>> tups) {
+        Columns.ColumnBuilder<T1> c1 = new Columns.ColumnBuilder<T1>();
+        Columns.ColumnBuilder<T2> c2 = new Columns.ColumnBuilder<T2>();
+        Columns.ColumnBuilder<T3> c3 = new Columns.ColumnBuilder<T3>();
+        Columns.ColumnBuilder<T4> c4 = new Columns.ColumnBuilder<T4>();
+        int n = 0;
+        for (Tuple4<T1, T2, T3, T4> t : tups) {
+            c1.add(t._1);
+            c2.add(t._2);
+            c3.add(t._3);
+            c4.add(t._4);
+            n++;
+        }
+        return new Of4<T1, T2, T3, T4>(
+                new Columns.Column<?>[] { c1.build(), c2.build(), c3.build(), c4.build() }, null, n);
+    }
+
+    /** number of (selected) rows */
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    protected Columns.Column<?> col(int field) {
+        if (field < 1 || field > columns.length)
+            throw new IndexOutOfBoundsException("no field " + field + " in a " + columns.length + "-tuple");
+        return columns[field - 1];
+    }
+
+    private IllegalArgumentException notA(String kind, int field) {
+        return new IllegalArgumentException("field " + field + " is not " + kind + " column");
+    }
+
+    /** the rows as a view of tuples; each row is materialized as it is pulled */
+    public Views.View<TTuple> asView() {
+        return new Views.View<TTuple>() {
+            @Override
+            public Iterator<TTuple> iterator() {
+                return new Iterator<TTuple>() {
+                    private int idx = 0;
+
+                    @Override public boolean hasNext() { return idx < count; }
+
+                    @Override public TTuple next() {
+                        if (idx >= count)
+                            throw new NoSuchElementException();
+                        int row = selection == null ? idx : selection[idx];
+                        idx++;
+                        return tupleAt(row);
+                    }
+
+                    @Override public void remove() { throw new UnsupportedOperationException(); }
+                };
+            }
+        };
+    }
+
+    /**
+     * The selected values of one field.  Primitive fields come back as the
+     * matching primitive view.
+     */
+    @SuppressWarnings("unchecked")
+    public <TCol> Views.View<TCol> column(int field) {
+        Columns.Column<TCol> c = (Columns.Column<TCol>) col(field);
+        return selection == null ? c.view() : c.view(selection, count);
+    }
+
+    public <TCol, R> Views.View<R> map(int field, Views.Func1<TCol, R> mapFunc) {
+        return Views.map(this.<TCol>column(field), mapFunc);
+    }
+
+    public <TCol, TAgg> TAgg aggregate(int field, Views.Aggregate<TAgg, TCol> agg) {
+        return Views.aggregate(this.<TCol>column(field), agg);
+    }
+
+    /*
+     * Filters.  Each one writes the index of every visited row into the next
+     * slot of the output selection vector and only advances the slot when
+     * the row passes, so the loop body has no data-dependent branch.
+     */
+
+    public TSelf filterInt(int field, Views.IntPredicate pred) {
+        Columns.Column<?> c = col(field);
+        if (!(c instanceof Columns.IntColumn))
+            throw notA("an int", field);
+        final int[] data = ((Columns.IntColumn) c).array();
+        final int[] out = new int[count];
+        int n = 0;
+        if (selection == null) {
+            for (int i = 0; i < count; i++) {
+                out[n] = i;
+                n += pred.call(data[i]) ? 1 : 0;
+            }
+        } else {
+            for (int k = 0; k < count; k++) {
+                int i = selection[k];
+                out[n] = i;
+                n += pred.call(data[i]) ? 1 : 0;
+            }
+        }
+        return select(out, n);
+    }
+
+    public TSelf filterLong(int field, Views.LongPredicate pred) {
+        Columns.Column<?> c = col(field);
+        if (!(c instanceof Columns.LongColumn))
+            throw notA("a long", field);
+        final long[] data = ((Columns.LongColumn) c).array();
+        final int[] out = new int[count];
+        int n = 0;
+        if (selection == null) {
+            for (int i = 0; i < count; i++) {
+                out[n] = i;
+                n += pred.call(data[i]) ? 1 : 0;
+            }
+        } else {
+            for (int k = 0; k < count; k++) {
+                int i = selection[k];
+                out[n] = i;
+                n += pred.call(data[i]) ? 1 : 0;
+            }
+        }
+        return select(out, n);
+    }
+
+    public TSelf filterDouble(int field, Views.DoublePredicate pred) {
+        Columns.Column<?> c = col(field);
+        if (!(c instanceof Columns.DoubleColumn))
+            throw notA("a double", field);
+        final double[] data = ((Columns.DoubleColumn) c).array();
+        final int[] out = new int[count];
+        int n = 0;
+        if (selection == null) {
+            for (int i = 0; i < count; i++) {
+                out[n] = i;
+                n += pred.call(data[i]) ? 1 : 0;
+            }
+        } else {
+            for (int k = 0; k < count; k++) {
+                int i = selection[k];
+                out[n] = i;
+                n += pred.call(data[i]) ? 1 : 0;
+            }
+        }
+        return select(out, n);
+    }
+
+    /**
+     * Keeps rows whose numeric field lies in <tt>[lo, hi)</tt>.  No functor
+     * is involved, so the scan is a plain compare loop over the column array
+     * (run through {@link ArrayKernels} for an unfiltered double column).
+     */
+    public TSelf filterRange(int field, double lo, double hi) {
+        Columns.Column<?> c = col(field);
+        final int[] out = new int[count];
+        int n = 0;
+        if (c instanceof Columns.DoubleColumn && selection == null) {
+            n = ArrayKernels.selectRange(((Columns.DoubleColumn) c).array(), 0, count, lo, hi, out);
+        } else if (c instanceof Columns.DoubleColumn) {
+            final double[] data = ((Columns.DoubleColumn) c).array();
+            for (int k = 0; k < count; k++) {
+                int i = selection == null ? k : selection[k];
+                out[n] = i;
+                n += (data[i] >= lo & data[i] < hi) ? 1 : 0;
+            }
+        } else if (c instanceof Columns.LongColumn) {
+            final long[] data = ((Columns.LongColumn) c).array();
+            for (int k = 0; k < count; k++) {
+                int i = selection == null ? k : selection[k];
+                out[n] = i;
+                n += (data[i] >= lo & data[i] < hi) ? 1 : 0;
+            }
+        } else if (c instanceof Columns.IntColumn) {
+            final int[] data = ((Columns.IntColumn) c).array();
+            for (int k = 0; k < count; k++) {
+                int i = selection == null ? k : selection[k];
+                out[n] = i;
+                n += (data[i] >= lo & data[i] < hi) ? 1 : 0;
+            }
+        } else {
+            throw notA("a numeric", field);
+        }
+        return select(out, n);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <TCol> TSelf filter(int field, Views.BooleanPredicate<? super TCol> pred) {
+        Columns.Column<TCol> c = (Columns.Column<TCol>) col(field);
+        final int[] out = new int[count];
+        int n = 0;
+        for (int k = 0; k < count; k++) {
+            int i = selection == null ? k : selection[k];
+            out[n] = i;
+            n += pred.test(c.get(i)) ? 1 : 0;
+        }
+        return select(out, n);
+    }
+
+    /** sum of an <tt>int</tt> or <tt>long</tt> field over the selected rows */
+    public long sumLong(int field) {
+        Columns.Column<?> c = col(field);
+        long sum = 0;
+        if (c instanceof Columns.LongColumn) {
+            final long[] data = ((Columns.LongColumn) c).array();
+            if (selection == null)
+                for (int i = 0; i < count; i++) sum += data[i];
+            else
+                for (int k = 0; k < count; k++) sum += data[selection[k]];
+        } else if (c instanceof Columns.IntColumn) {
+            final int[] data = ((Columns.IntColumn) c).array();
+            if (selection == null)
+                for (int i = 0; i < count; i++) sum += data[i];
+            else
+                for (int k = 0; k < count; k++) sum += data[selection[k]];
+        } else {
+            throw notA("an integral", field);
+        }
+        return sum;
+    }
+
+    /** sum of any numeric field over the selected rows */
+    public double sumDouble(int field) {
+        Columns.Column<?> c = col(field);
+        if (!(c instanceof Columns.DoubleColumn))
+            return sumLong(field);
+        final double[] data = ((Columns.DoubleColumn) c).array();
+        double sum = 0;
+        if (selection == null)
+            for (int i = 0; i < count; i++) sum += data[i];
+        else
+            for (int k = 0; k < count; k++) sum += data[selection[k]];
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return asView().toString();
+    }
+
+    public static final class Of2<T1, T2> extends TupleColumns<Tuple2<T1, T2>, Of2<T1, T2>> {
+        Of2(Columns.Column<?>[] columns, int[] selection, int count) {
+            super(columns, selection, count);
+        }
+
+        @Override
+        protected Of2<T1, T2> select(int[] selection, int count) {
+            return new Of2<T1, T2>(columns, selection, count);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected Tuple2<T1, T2> tupleAt(int row) {
+            return Tuples.tuple((T1) columns[0].get(row), (T2) columns[1].get(row));
+        }
+
+        public Views.View<T1> column1() { return column(1); }
+        public Views.View<T2> column2() { return column(2); }
+    }
+
+    public static final class Of3<T1, T2, T3> extends TupleColumns<Tuple3<T1, T2, T3>, Of3<T1, T2, T3>> {
+        Of3(Columns.Column<?>[] columns, int[] selection, int count) {
+            super(columns, selection, count);
+        }
+
+        @Override
+        protected Of3<T1, T2, T3> select(int[] selection, int count) {
+            return new Of3<T1, T2, T3>(columns, selection, count);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected Tuple3<T1, T2, T3> tupleAt(int row) {
+            return Tuples.tuple((T1) columns[0].get(row), (T2) columns[1].get(row), (T3) columns[2].get(row));
+        }
+
+        public Views.View<T1> column1() { return column(1); }
+        public Views.View<T2> column2() { return column(2); }
+        public Views.View<T3> column3() { return column(3); }
+    }
+
+    public static final class Of4<T1, T2, T3, T4> extends TupleColumns<Tuple4<T1, T2, T3, T4>, Of4<T1, T2, T3, T4>> {
+        Of4(Columns.Column<?>[] columns, int[] selection, int count) {
+            super(columns, selection, count);
+        }
+
+        @Override
+        protected Of4<T1, T2, T3, T4> select(int[] selection, int count) {
+            return new Of4<T1, T2, T3, T4>(columns, selection, count);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected Tuple4<T1, T2, T3, T4> tupleAt(int row) {
+            return Tuples.tuple((T1) columns[0].get(row), (T2) columns[1].get(row),
+                    (T3) columns[2].get(row), (T4) columns[3].get(row));
+        }
+
+        public Views.View<T1> column1() { return column(1); }
+        public Views.View<T2> column2() { return column(2); }
+        public Views.View<T3> column3() { return column(3); }
+        public Views.View<T4> column4() { return column(4); }
+    }
+}
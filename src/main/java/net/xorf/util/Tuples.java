@@ -1,8 +1,13 @@
 package net.xorf.util;
 
+import net.xorf.util.Views.CloseableIterator;
 
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 
 /**
  * Classes within implement a pidgin implementation of tuples for Java.  These
@@ -73,6 +78,95 @@ public class Tuples {
 		}
 	}
 
+	/*
+	 * Primitive-specialized pairs.  These hold their primitive members unboxed,
+	 * so a pair of numbers costs one object instead of three.  They are not
+	 * part of the Tuple1..Tuple4 hierarchy (their members can't be generic),
+	 * but keep the same _1/_2 naming.  Use the overloaded {@link #ptuple}
+	 * factories to create them.
+	 */
+
+	public static class IntIntTuple2 extends Tuple0 {
+		public final int _1;
+		public final int _2;
+		public IntIntTuple2(int p1, int p2) { _1 = p1; _2 = p2; }
+		@Override public String toString() {
+			return "(" + _1 + ", " + _2 + ")";
+		}
+	}
+
+	public static class IntLongTuple2 extends Tuple0 {
+		public final int _1;
+		public final long _2;
+		public IntLongTuple2(int p1, long p2) { _1 = p1; _2 = p2; }
+		@Override public String toString() {
+			return "(" + _1 + ", " + _2 + ")";
+		}
+	}
+
+	public static class IntDoubleTuple2 extends Tuple0 {
+		public final int _1;
+		public final double _2;
+		public IntDoubleTuple2(int p1, double p2) { _1 = p1; _2 = p2; }
+		@Override public String toString() {
+			return "(" + _1 + ", " + _2 + ")";
+		}
+	}
+
+	public static class LongLongTuple2 extends Tuple0 {
+		public final long _1;
+		public final long _2;
+		public LongLongTuple2(long p1, long p2) { _1 = p1; _2 = p2; }
+		@Override public String toString() {
+			return "(" + _1 + ", " + _2 + ")";
+		}
+	}
+
+	public static class LongDoubleTuple2 extends Tuple0 {
+		public final long _1;
+		public final double _2;
+		public LongDoubleTuple2(long p1, double p2) { _1 = p1; _2 = p2; }
+		@Override public String toString() {
+			return "(" + _1 + ", " + _2 + ")";
+		}
+	}
+
+	public static class DoubleDoubleTuple2 extends Tuple0 {
+		public final double _1;
+		public final double _2;
+		public DoubleDoubleTuple2(double p1, double p2) { _1 = p1; _2 = p2; }
+		@Override public String toString() {
+			return "(" + _1 + ", " + _2 + ")";
+		}
+	}
+
+	public static class ObjIntTuple2<T1> extends Tuple0 {
+		public final T1 _1;
+		public final int _2;
+		public ObjIntTuple2(T1 p1, int p2) { _1 = p1; _2 = p2; }
+		@Override public String toString() {
+			return "(" + _1 + ", " + _2 + ")";
+		}
+	}
+
+	public static class ObjLongTuple2<T1> extends Tuple0 {
+		public final T1 _1;
+		public final long _2;
+		public ObjLongTuple2(T1 p1, long p2) { _1 = p1; _2 = p2; }
+		@Override public String toString() {
+			return "(" + _1 + ", " + _2 + ")";
+		}
+	}
+
+	public static class ObjDoubleTuple2<T1> extends Tuple0 {
+		public final T1 _1;
+		public final double _2;
+		public ObjDoubleTuple2(T1 p1, double p2) { _1 = p1; _2 = p2; }
+		@Override public String toString() {
+			return "(" + _1 + ", " + _2 + ")";
+		}
+	}
+
 	public static Tuple0 tuple() {
 		return new Tuple0();
 	}
@@ -104,6 +198,191 @@ public class Tuples {
         }
     }
 
+    public static IntIntTuple2 ptuple(int v1, int v2) {
+        return new IntIntTuple2(v1, v2);
+    }
+
+    public static IntLongTuple2 ptuple(int v1, long v2) {
+        return new IntLongTuple2(v1, v2);
+    }
+
+    public static IntDoubleTuple2 ptuple(int v1, double v2) {
+        return new IntDoubleTuple2(v1, v2);
+    }
+
+    public static LongLongTuple2 ptuple(long v1, long v2) {
+        return new LongLongTuple2(v1, v2);
+    }
+
+    public static LongDoubleTuple2 ptuple(long v1, double v2) {
+        return new LongDoubleTuple2(v1, v2);
+    }
+
+    public static DoubleDoubleTuple2 ptuple(double v1, double v2) {
+        return new DoubleDoubleTuple2(v1, v2);
+    }
+
+    public static <T1> ObjIntTuple2<T1> ptuple(T1 v1, int v2) {
+        return new ObjIntTuple2<T1>(v1, v2);
+    }
+
+    public static <T1> ObjLongTuple2<T1> ptuple(T1 v1, long v2) {
+        return new ObjLongTuple2<T1>(v1, v2);
+    }
+
+    public static <T1> ObjDoubleTuple2<T1> ptuple(T1 v1, double v2) {
+        return new ObjDoubleTuple2<T1>(v1, v2);
+    }
+
+    /**
+     * How a zip treats sources of different lengths:
+     * <ul>
+     * <li><tt>SHORTEST</tt> - stop as soon as any source is exhausted</li>
+     * <li><tt>LONGEST</tt> - continue until every source is exhausted,
+     *     substituting a pad value for the missing elements</li>
+     * <li><tt>STRICT</tt> - the sources must be the same length; an
+     *     <tt>IllegalStateException</tt> is thrown when they turn out not to be</li>
+     * </ul>
+     */
+    public enum ZipPolicy {
+        SHORTEST,
+        LONGEST,
+        STRICT
+    }
+
+    /**
+     * Lazy zip over any number of sources.  Every call to <tt>iterator()</tt>
+     * gets fresh iterators from all the sources, so a zipped view can be
+     * iterated repeatedly, and by several threads at once when the sources
+     * allow it.  Subclasses build one result element per row from the
+     * <tt>ZipIterator</tt>'s {@link ZipIterator#pull(int)}.
+     */
+    private static abstract class Zipper<R> extends Views.View<R> {
+        private final Iterable<?>[] sources;
+        private final ZipPolicy policy;
+        private final Object[] pads;
+
+        protected Zipper(ZipPolicy policy, Object[] pads, Iterable<?>... sources) {
+            if (policy == ZipPolicy.LONGEST && (pads == null || pads.length != sources.length))
+                throw new IllegalArgumentException("LONGEST zip needs one pad value per source");
+            this.sources = sources;
+            this.policy = policy;
+            this.pads = pads;
+        }
+
+        protected abstract R make(ZipIterator row);
+
+        @Override
+        public Iterator<R> iterator() {
+            return this.new ZipIterator();
+        }
+
+        public class ZipIterator implements CloseableIterator<R> {
+            private final Iterator<?>[] itrs = new Iterator<?>[sources.length];
+
+            private ZipIterator() {
+                for (int i = 0; i < itrs.length; i++)
+                    itrs[i] = sources[i].iterator();
+            }
+
+            @Override
+            public boolean hasNext() {
+                switch (policy) {
+                    case LONGEST:
+                        for (Iterator<?> i : itrs)
+                            if (i.hasNext()) return true;
+                        return false;
+                    case STRICT:
+                        int live = 0;
+                        for (Iterator<?> i : itrs)
+                            if (i.hasNext()) live++;
+                        if (live != 0 && live != itrs.length)
+                            throw new IllegalStateException("zipped iterables have different lengths");
+                        return live != 0;
+                    default:
+                        for (Iterator<?> i : itrs)
+                            if (!i.hasNext()) return false;
+                        return true;
+                }
+            }
+
+            @Override
+            public R next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return make(this);
+            }
+
+            /** the next element of source <tt>idx</tt>, or its pad once it has run out */
+            Object pull(int idx) {
+                if (policy == ZipPolicy.LONGEST && !itrs[idx].hasNext())
+                    return pads[idx];
+                return itrs[idx].next();
+            }
+
+            @Override
+            public void close() {
+                for (Iterator<?> i : itrs)
+                    Views.close(i);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+
+    private static final class Zip2<T1, T2> extends Zipper<Tuple2<T1, T2>> {
+        Zip2(ZipPolicy policy, Object[] pads, Iterable<T1> i1, Iterable<T2> i2) {
+            super(policy, pads, i1, i2);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override protected Tuple2<T1, T2> make(ZipIterator row) {
+            return tuple((T1) row.pull(0), (T2) row.pull(1));
+        }
+    }
+
+    private static final class Zip3<T1, T2, T3> extends Zipper<Tuple3<T1, T2, T3>> {
+        Zip3(ZipPolicy policy, Object[] pads, Iterable<T1> i1, Iterable<T2> i2, Iterable<T3> i3) {
+            super(policy, pads, i1, i2, i3);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override protected Tuple3<T1, T2, T3> make(ZipIterator row) {
+            return tuple((T1) row.pull(0), (T2) row.pull(1), (T3) row.pull(2));
+        }
+    }
+
+    private static final class Zip4<T1, T2, T3, T4> extends Zipper<Tuple4<T1, T2, T3, T4>> {
+        Zip4(ZipPolicy policy, Object[] pads, Iterable<T1> i1, Iterable<T2> i2, Iterable<T3> i3, Iterable<T4> i4) {
+            super(policy, pads, i1, i2, i3, i4);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override protected Tuple4<T1, T2, T3, T4> make(ZipIterator row) {
+            return tuple((T1) row.pull(0), (T2) row.pull(1), (T3) row.pull(2), (T4) row.pull(3));
+        }
+    }
+
+    private static final class ZipN<T> extends Zipper<List<T>> {
+        private final int width;
+
+        ZipN(ZipPolicy policy, Object[] pads, Iterable<?>[] sources) {
+            super(policy, pads, sources);
+            this.width = sources.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override protected List<T> make(ZipIterator row) {
+            Object[] ret = new Object[width];
+            for (int i = 0; i < width; i++)
+                ret[i] = row.pull(i);
+            return (List<T>) Arrays.asList(ret);
+        }
+    }
+
     public static <T> Iterable<Tuple1<T>> zip(Iterable<T> itr) {
         return Views.map(itr, new Views.Func1<T, Tuple1<T>>() {
             @Override
@@ -113,27 +392,95 @@ public class Tuples {
         });
     }
 
+    /**
+     * Zips two iterables, stopping at the end of the shorter one.  The
+     * returned view may be iterated any number of times.
+     */
     public static <T1, T2> Iterable<Tuple2<T1, T2>> zip(Iterable<T1> i1, Iterable<T2> i2) {
-        final Iterator<T2> itr2 = i2.iterator();
-
-        return Views.map(i1, new Views.Func1<T1, Tuple2<T1, T2>>() {
-            @Override
-            public Tuple2<T1, T2> call(T1 arg) {
-                return tuple(arg, itr2.next());
-            }
-        });
+        return new Zip2<T1, T2>(ZipPolicy.SHORTEST, null, i1, i2);
     }
 
     public static <T1, T2, T3> Iterable<Tuple3<T1, T2, T3>> zip(Iterable<T1> i1, Iterable<T2> i2, Iterable<T3> i3) {
-        final Iterator<T2> itr2 = i2.iterator();
-        final Iterator<T3> itr3 = i3.iterator();
+        return new Zip3<T1, T2, T3>(ZipPolicy.SHORTEST, null, i1, i2, i3);
+    }
+
+    public static <T1, T2, T3, T4> Iterable<Tuple4<T1, T2, T3, T4>>
+        zip(Iterable<T1> i1, Iterable<T2> i2, Iterable<T3> i3, Iterable<T4> i4) {
+        return new Zip4<T1, T2, T3, T4>(ZipPolicy.SHORTEST, null, i1, i2, i3, i4);
+    }
+
+    public static <T1, T2> Views.View<Tuple2<T1, T2>> zipStrict(Iterable<T1> i1, Iterable<T2> i2) {
+        return new Zip2<T1, T2>(ZipPolicy.STRICT, null, i1, i2);
+    }
+
+    public static <T1, T2, T3> Views.View<Tuple3<T1, T2, T3>>
+        zipStrict(Iterable<T1> i1, Iterable<T2> i2, Iterable<T3> i3) {
+        return new Zip3<T1, T2, T3>(ZipPolicy.STRICT, null, i1, i2, i3);
+    }
 
-        return Views.map(i1, new Views.Func1<T1, Tuple3<T1, T2, T3>>() {
+    public static <T1, T2, T3, T4> Views.View<Tuple4<T1, T2, T3, T4>>
+        zipStrict(Iterable<T1> i1, Iterable<T2> i2, Iterable<T3> i3, Iterable<T4> i4) {
+        return new Zip4<T1, T2, T3, T4>(ZipPolicy.STRICT, null, i1, i2, i3, i4);
+    }
+
+    public static <T1, T2> Views.View<Tuple2<T1, T2>>
+        zipLongest(Iterable<T1> i1, Iterable<T2> i2, T1 pad1, T2 pad2) {
+        return new Zip2<T1, T2>(ZipPolicy.LONGEST, new Object[] { pad1, pad2 }, i1, i2);
+    }
+
+    public static <T1, T2, T3> Views.View<Tuple3<T1, T2, T3>>
+        zipLongest(Iterable<T1> i1, Iterable<T2> i2, Iterable<T3> i3, T1 pad1, T2 pad2, T3 pad3) {
+        return new Zip3<T1, T2, T3>(ZipPolicy.LONGEST, new Object[] { pad1, pad2, pad3 }, i1, i2, i3);
+    }
+
+    public static <T1, T2, T3, T4> Views.View<Tuple4<T1, T2, T3, T4>>
+        zipLongest(Iterable<T1> i1, Iterable<T2> i2, Iterable<T3> i3, Iterable<T4> i4,
+                   T1 pad1, T2 pad2, T3 pad3, T4 pad4) {
+        return new Zip4<T1, T2, T3, T4>(ZipPolicy.LONGEST, new Object[] { pad1, pad2, pad3, pad4 }, i1, i2, i3, i4);
+    }
+
+    /**
+     * Zips any number of same-typed sources into rows, each row a fixed-size
+     * list holding one element from every source.  <tt>pad</tt> is only used
+     * under {@link ZipPolicy#LONGEST}.
+     */
+    @SafeVarargs
+    public static <T> Views.View<List<T>> zipAll(ZipPolicy policy, T pad, Iterable<? extends T>... sources) {
+        Object[] pads = new Object[sources.length];
+        Arrays.fill(pads, pad);
+        //copied so the varargs array itself never escapes
+        Iterable<?>[] srcs = new Iterable<?>[sources.length];
+        for (int i = 0; i < srcs.length; i++)
+            srcs[i] = sources[i];
+        return new ZipN<T>(policy, pads, srcs);
+    }
+
+    /**
+     * Pairs each element with its zero-based position.  The index is kept as
+     * a primitive counter in the iterator and stored unboxed in the result;
+     * it is a long, since mapped files and generators can run past 2^31
+     * elements.
+     */
+    public static <T> Views.View<ObjLongTuple2<T>> zipWithIndex(final Iterable<T> itr) {
+        return new Views.View<ObjLongTuple2<T>>() {
             @Override
-            public Tuple3<T1, T2, T3> call(T1 arg) {
-                return tuple(arg, itr2.next(), itr3.next());
+            public Iterator<ObjLongTuple2<T>> iterator() {
+                final Iterator<T> sourceItr = itr.iterator();
+                return new CloseableIterator<ObjLongTuple2<T>>() {
+                    private long idx = 0;
+
+                    @Override public boolean hasNext() { return sourceItr.hasNext(); }
+
+                    @Override public ObjLongTuple2<T> next() {
+                        return new ObjLongTuple2<T>(sourceItr.next(), idx++);
+                    }
+
+                    @Override public void close() { Views.close(sourceItr); }
+
+                    @Override public void remove() { throw new UnsupportedOperationException(); }
+                };
             }
-        });
+        };
     }
 
     public static <T> Tuple1<Iterable<T>> unzip1(Iterable<Tuple1<T>> tups) {
@@ -175,6 +522,309 @@ public class Tuples {
         return tuple(i._1, i._2, i3);
     }
 
+    /**
+     * Eager, single-pass counterpart of {@link #unzip2}: <tt>tups</tt> is
+     * iterated exactly once and each field is scattered into its own column
+     * buffer.  Fields holding <tt>Integer</tt>, <tt>Long</tt> or
+     * <tt>Double</tt> values are stored in primitive columns, and the views
+     * returned for them are the matching primitive views.
+     */
+    public static <T1, T2> Tuple2<Views.View<T1>, Views.View<T2>>
+        eagerUnzip2(Iterable<? extends Tuple2<T1, T2>> tups) {
+        Columns.ColumnBuilder<T1> c1 = new Columns.ColumnBuilder<T1>();
+        Columns.ColumnBuilder<T2> c2 = new Columns.ColumnBuilder<T2>();
+        for (Tuple2<T1, T2> t : tups) {
+            c1.add(t._1);
+            c2.add(t._2);
+        }
+        return tuple(c1.build().view(), c2.build().view());
+    }
+
+    public static <T1, T2, T3> Tuple3<Views.View<T1>, Views.View<T2>, Views.View<T3>>
+        eagerUnzip3(Iterable<? extends Tuple3<T1, T2, T3>> tups) {
+        Columns.ColumnBuilder<T1> c1 = new Columns.ColumnBuilder<T1>();
+        Columns.ColumnBuilder<T2> c2 = new Columns.ColumnBuilder<T2>();
+        Columns.ColumnBuilder<T3> c3 = new Columns.ColumnBuilder<T3>();
+        for (Tuple3<T1, T2, T3> t : tups) {
+            c1.add(t._1);
+            c2.add(t._2);
+            c3.add(t._3);
+        }
+        return tuple(c1.build().view(), c2.build().view(), c3.build().view());
+    }
+
+    public static <T1, T2, T3, T4> Tuple4<Views.View<T1>, Views.View<T2>, Views.View<T3>, Views.View<T4>>
+        eagerUnzip4(Iterable<? extends Tuple4<T1, T2, T3, T4>> tups) {
+        Columns.ColumnBuilder<T1> c1 = new Columns.ColumnBuilder<T1>();
+        Columns.ColumnBuilder<T2> c2 = new Columns.ColumnBuilder<T2>();
+        Columns.ColumnBuilder<T3> c3 = new Columns.ColumnBuilder<T3>();
+        Columns.ColumnBuilder<T4> c4 = new Columns.ColumnBuilder<T4>();
+        for (Tuple4<T1, T2, T3, T4> t : tups) {
+            c1.add(t._1);
+            c2.add(t._2);
+            c3.add(t._3);
+            c4.add(t._4);
+        }
+        return tuple(c1.build().view(), c2.build().view(), c3.build().view(), c4.build().view());
+    }
+
+    /**
+     * Base for the primitive zips - the pair of source iterators is created
+     * per <tt>iterator()</tt> call and elements are pulled unboxed.  Iteration
+     * stops when either source is exhausted.
+     */
+    private static abstract class PrimitiveZipIterator<I1 extends Iterator<?>, I2 extends Iterator<?>, R>
+            implements CloseableIterator<R> {
+        protected final I1 itr1;
+        protected final I2 itr2;
+
+        protected PrimitiveZipIterator(I1 itr1, I2 itr2) {
+            this.itr1 = itr1;
+            this.itr2 = itr2;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return itr1.hasNext() && itr2.hasNext();
+        }
+
+        @Override
+        public R next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return make();
+        }
+
+        protected abstract R make();
+
+        @Override
+        public void close() {
+            Views.close(itr1);
+            Views.close(itr2);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public static Views.View<IntIntTuple2> zipPrimitive(final Views.IntView i1, final Views.IntView i2) {
+        return new Views.View<IntIntTuple2>() {
+            @Override
+            public Iterator<IntIntTuple2> iterator() {
+                return new PrimitiveZipIterator<PrimitiveIterator.OfInt, PrimitiveIterator.OfInt, IntIntTuple2>(
+                        i1.iterator(), i2.iterator()) {
+                    @Override protected IntIntTuple2 make() {
+                        return new IntIntTuple2(itr1.nextInt(), itr2.nextInt());
+                    }
+                };
+            }
+        };
+    }
+
+    public static Views.View<IntLongTuple2> zipPrimitive(final Views.IntView i1, final Views.LongView i2) {
+        return new Views.View<IntLongTuple2>() {
+            @Override
+            public Iterator<IntLongTuple2> iterator() {
+                return new PrimitiveZipIterator<PrimitiveIterator.OfInt, PrimitiveIterator.OfLong, IntLongTuple2>(
+                        i1.iterator(), i2.iterator()) {
+                    @Override protected IntLongTuple2 make() {
+                        return new IntLongTuple2(itr1.nextInt(), itr2.nextLong());
+                    }
+                };
+            }
+        };
+    }
+
+    public static Views.View<IntDoubleTuple2> zipPrimitive(final Views.IntView i1, final Views.DoubleView i2) {
+        return new Views.View<IntDoubleTuple2>() {
+            @Override
+            public Iterator<IntDoubleTuple2> iterator() {
+                return new PrimitiveZipIterator<PrimitiveIterator.OfInt, PrimitiveIterator.OfDouble, IntDoubleTuple2>(
+                        i1.iterator(), i2.iterator()) {
+                    @Override protected IntDoubleTuple2 make() {
+                        return new IntDoubleTuple2(itr1.nextInt(), itr2.nextDouble());
+                    }
+                };
+            }
+        };
+    }
+
+    public static Views.View<LongLongTuple2> zipPrimitive(final Views.LongView i1, final Views.LongView i2) {
+        return new Views.View<LongLongTuple2>() {
+            @Override
+            public Iterator<LongLongTuple2> iterator() {
+                return new PrimitiveZipIterator<PrimitiveIterator.OfLong, PrimitiveIterator.OfLong, LongLongTuple2>(
+                        i1.iterator(), i2.iterator()) {
+                    @Override protected LongLongTuple2 make() {
+                        return new LongLongTuple2(itr1.nextLong(), itr2.nextLong());
+                    }
+                };
+            }
+        };
+    }
+
+    public static Views.View<LongDoubleTuple2> zipPrimitive(final Views.LongView i1, final Views.DoubleView i2) {
+        return new Views.View<LongDoubleTuple2>() {
+            @Override
+            public Iterator<LongDoubleTuple2> iterator() {
+                return new PrimitiveZipIterator<PrimitiveIterator.OfLong, PrimitiveIterator.OfDouble, LongDoubleTuple2>(
+                        i1.iterator(), i2.iterator()) {
+                    @Override protected LongDoubleTuple2 make() {
+                        return new LongDoubleTuple2(itr1.nextLong(), itr2.nextDouble());
+                    }
+                };
+            }
+        };
+    }
+
+    public static Views.View<DoubleDoubleTuple2> zipPrimitive(final Views.DoubleView i1, final Views.DoubleView i2) {
+        return new Views.View<DoubleDoubleTuple2>() {
+            @Override
+            public Iterator<DoubleDoubleTuple2> iterator() {
+                return new PrimitiveZipIterator<PrimitiveIterator.OfDouble, PrimitiveIterator.OfDouble, DoubleDoubleTuple2>(
+                        i1.iterator(), i2.iterator()) {
+                    @Override protected DoubleDoubleTuple2 make() {
+                        return new DoubleDoubleTuple2(itr1.nextDouble(), itr2.nextDouble());
+                    }
+                };
+            }
+        };
+    }
+
+    public static <T1> Views.View<ObjIntTuple2<T1>> zipPrimitive(final Iterable<T1> i1, final Views.IntView i2) {
+        return new Views.View<ObjIntTuple2<T1>>() {
+            @Override
+            public Iterator<ObjIntTuple2<T1>> iterator() {
+                return new PrimitiveZipIterator<Iterator<T1>, PrimitiveIterator.OfInt, ObjIntTuple2<T1>>(
+                        i1.iterator(), i2.iterator()) {
+                    @Override protected ObjIntTuple2<T1> make() {
+                        return new ObjIntTuple2<T1>(itr1.next(), itr2.nextInt());
+                    }
+                };
+            }
+        };
+    }
+
+    public static <T1> Views.View<ObjLongTuple2<T1>> zipPrimitive(final Iterable<T1> i1, final Views.LongView i2) {
+        return new Views.View<ObjLongTuple2<T1>>() {
+            @Override
+            public Iterator<ObjLongTuple2<T1>> iterator() {
+                return new PrimitiveZipIterator<Iterator<T1>, PrimitiveIterator.OfLong, ObjLongTuple2<T1>>(
+                        i1.iterator(), i2.iterator()) {
+                    @Override protected ObjLongTuple2<T1> make() {
+                        return new ObjLongTuple2<T1>(itr1.next(), itr2.nextLong());
+                    }
+                };
+            }
+        };
+    }
+
+    public static <T1> Views.View<ObjDoubleTuple2<T1>> zipPrimitive(final Iterable<T1> i1, final Views.DoubleView i2) {
+        return new Views.View<ObjDoubleTuple2<T1>>() {
+            @Override
+            public Iterator<ObjDoubleTuple2<T1>> iterator() {
+                return new PrimitiveZipIterator<Iterator<T1>, PrimitiveIterator.OfDouble, ObjDoubleTuple2<T1>>(
+                        i1.iterator(), i2.iterator()) {
+                    @Override protected ObjDoubleTuple2<T1> make() {
+                        return new ObjDoubleTuple2<T1>(itr1.next(), itr2.nextDouble());
+                    }
+                };
+            }
+        };
+    }
+
+    public static Tuple2<Views.IntView, Views.IntView> unzipIntInt(Iterable<IntIntTuple2> tups) {
+        return tuple(
+            Views.mapToInt(tups, new Views.ToIntFunc1<IntIntTuple2>() {
+                @Override public int call(IntIntTuple2 arg) { return arg._1; }
+            }),
+            Views.mapToInt(tups, new Views.ToIntFunc1<IntIntTuple2>() {
+                @Override public int call(IntIntTuple2 arg) { return arg._2; }
+            }));
+    }
+
+    public static Tuple2<Views.IntView, Views.LongView> unzipIntLong(Iterable<IntLongTuple2> tups) {
+        return tuple(
+            Views.mapToInt(tups, new Views.ToIntFunc1<IntLongTuple2>() {
+                @Override public int call(IntLongTuple2 arg) { return arg._1; }
+            }),
+            Views.mapToLong(tups, new Views.ToLongFunc1<IntLongTuple2>() {
+                @Override public long call(IntLongTuple2 arg) { return arg._2; }
+            }));
+    }
+
+    public static Tuple2<Views.IntView, Views.DoubleView> unzipIntDouble(Iterable<IntDoubleTuple2> tups) {
+        return tuple(
+            Views.mapToInt(tups, new Views.ToIntFunc1<IntDoubleTuple2>() {
+                @Override public int call(IntDoubleTuple2 arg) { return arg._1; }
+            }),
+            Views.mapToDouble(tups, new Views.ToDoubleFunc1<IntDoubleTuple2>() {
+                @Override public double call(IntDoubleTuple2 arg) { return arg._2; }
+            }));
+    }
+
+    public static Tuple2<Views.LongView, Views.LongView> unzipLongLong(Iterable<LongLongTuple2> tups) {
+        return tuple(
+            Views.mapToLong(tups, new Views.ToLongFunc1<LongLongTuple2>() {
+                @Override public long call(LongLongTuple2 arg) { return arg._1; }
+            }),
+            Views.mapToLong(tups, new Views.ToLongFunc1<LongLongTuple2>() {
+                @Override public long call(LongLongTuple2 arg) { return arg._2; }
+            }));
+    }
+
+    public static Tuple2<Views.LongView, Views.DoubleView> unzipLongDouble(Iterable<LongDoubleTuple2> tups) {
+        return tuple(
+            Views.mapToLong(tups, new Views.ToLongFunc1<LongDoubleTuple2>() {
+                @Override public long call(LongDoubleTuple2 arg) { return arg._1; }
+            }),
+            Views.mapToDouble(tups, new Views.ToDoubleFunc1<LongDoubleTuple2>() {
+                @Override public double call(LongDoubleTuple2 arg) { return arg._2; }
+            }));
+    }
+
+    public static Tuple2<Views.DoubleView, Views.DoubleView> unzipDoubleDouble(Iterable<DoubleDoubleTuple2> tups) {
+        return tuple(
+            Views.mapToDouble(tups, new Views.ToDoubleFunc1<DoubleDoubleTuple2>() {
+                @Override public double call(DoubleDoubleTuple2 arg) { return arg._1; }
+            }),
+            Views.mapToDouble(tups, new Views.ToDoubleFunc1<DoubleDoubleTuple2>() {
+                @Override public double call(DoubleDoubleTuple2 arg) { return arg._2; }
+            }));
+    }
+
+    public static <T1> Tuple2<Views.View<T1>, Views.IntView> unzipObjInt(Iterable<ObjIntTuple2<T1>> tups) {
+        return tuple(
+            Views.map(tups, new Views.Func1<ObjIntTuple2<T1>, T1>() {
+                @Override public T1 call(ObjIntTuple2<T1> arg) { return arg._1; }
+            }),
+            Views.mapToInt(tups, new Views.ToIntFunc1<ObjIntTuple2<T1>>() {
+                @Override public int call(ObjIntTuple2<T1> arg) { return arg._2; }
+            }));
+    }
+
+    public static <T1> Tuple2<Views.View<T1>, Views.LongView> unzipObjLong(Iterable<ObjLongTuple2<T1>> tups) {
+        return tuple(
+            Views.map(tups, new Views.Func1<ObjLongTuple2<T1>, T1>() {
+                @Override public T1 call(ObjLongTuple2<T1> arg) { return arg._1; }
+            }),
+            Views.mapToLong(tups, new Views.ToLongFunc1<ObjLongTuple2<T1>>() {
+                @Override public long call(ObjLongTuple2<T1> arg) { return arg._2; }
+            }));
+    }
+
+    public static <T1> Tuple2<Views.View<T1>, Views.DoubleView> unzipObjDouble(Iterable<ObjDoubleTuple2<T1>> tups) {
+        return tuple(
+            Views.map(tups, new Views.Func1<ObjDoubleTuple2<T1>, T1>() {
+                @Override public T1 call(ObjDoubleTuple2<T1> arg) { return arg._1; }
+            }),
+            Views.mapToDouble(tups, new Views.ToDoubleFunc1<ObjDoubleTuple2<T1>>() {
+                @Override public double call(ObjDoubleTuple2<T1> arg) { return arg._2; }
+            }));
+    }
+
     public static <K, V> Map<K, V> toMap(Iterable<Tuple2<K, V>> tuples) {
         final NewCollection.MapBuilder<K, V> m = NewCollection.map();
         for (Tuples.Tuple2<K, V> e : tuples)
@@ -0,0 +1,260 @@
+package net.xorf.util;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link ArrayKernels} implemented with the <tt>jdk.incubator.vector</tt>
+ * API.  Only ever loaded reflectively by <tt>ArrayKernels</tt> once it has
+ * checked that the module is present, so nothing else may refer to this
+ * class directly.
+ *
+ * Each kernel runs whole vectors of the preferred species up to
+ * <tt>loopBound</tt> and finishes the tail with a scalar loop.
+ */
+final class VectorKernels extends ArrayKernels.Impl {
+    private static final VectorSpecies<Integer> IS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DS = DoubleVector.SPECIES_PREFERRED;
+
+    VectorKernels() {
+        //selection masks are read back through VectorMask.toLong()
+        if (IS.length() > 64 || IS.vectorBitSize() != LS.vectorBitSize())
+            throw new UnsupportedOperationException("unsupported vector shape");
+    }
+
+    @Override long sum(int[] a, int from, int to) {
+        //widen to long lanes so large sums don't overflow
+        LongVector acc0 = LongVector.zero(LS), acc1 = LongVector.zero(LS);
+        int i = from, upper = from + IS.loopBound(to - from);
+        for (; i < upper; i += IS.length()) {
+            IntVector v = IntVector.fromArray(IS, a, i);
+            acc0 = acc0.add((LongVector) v.convertShape(VectorOperators.I2L, LS, 0));
+            acc1 = acc1.add((LongVector) v.convertShape(VectorOperators.I2L, LS, 1));
+        }
+        long s = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) s += a[i];
+        return s;
+    }
+
+    @Override long sum(long[] a, int from, int to) {
+        LongVector acc = LongVector.zero(LS);
+        int i = from, upper = from + LS.loopBound(to - from);
+        for (; i < upper; i += LS.length())
+            acc = acc.add(LongVector.fromArray(LS, a, i));
+        long s = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) s += a[i];
+        return s;
+    }
+
+    @Override float sum(float[] a, int from, int to) {
+        FloatVector acc = FloatVector.zero(FS);
+        int i = from, upper = from + FS.loopBound(to - from);
+        for (; i < upper; i += FS.length())
+            acc = acc.add(FloatVector.fromArray(FS, a, i));
+        float s = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) s += a[i];
+        return s;
+    }
+
+    @Override double sum(double[] a, int from, int to) {
+        DoubleVector acc = DoubleVector.zero(DS);
+        int i = from, upper = from + DS.loopBound(to - from);
+        for (; i < upper; i += DS.length())
+            acc = acc.add(DoubleVector.fromArray(DS, a, i));
+        double s = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) s += a[i];
+        return s;
+    }
+
+    @Override int min(int[] a, int from, int to) {
+        IntVector acc = IntVector.broadcast(IS, Integer.MAX_VALUE);
+        int i = from, upper = from + IS.loopBound(to - from);
+        for (; i < upper; i += IS.length())
+            acc = acc.min(IntVector.fromArray(IS, a, i));
+        int m = acc.reduceLanes(VectorOperators.MIN);
+        for (; i < to; i++) m = Math.min(m, a[i]);
+        return m;
+    }
+
+    @Override long min(long[] a, int from, int to) {
+        LongVector acc = LongVector.broadcast(LS, Long.MAX_VALUE);
+        int i = from, upper = from + LS.loopBound(to - from);
+        for (; i < upper; i += LS.length())
+            acc = acc.min(LongVector.fromArray(LS, a, i));
+        long m = acc.reduceLanes(VectorOperators.MIN);
+        for (; i < to; i++) m = Math.min(m, a[i]);
+        return m;
+    }
+
+    @Override float min(float[] a, int from, int to) {
+        FloatVector acc = FloatVector.broadcast(FS, Float.POSITIVE_INFINITY);
+        int i = from, upper = from + FS.loopBound(to - from);
+        for (; i < upper; i += FS.length())
+            acc = acc.min(FloatVector.fromArray(FS, a, i));
+        float m = acc.reduceLanes(VectorOperators.MIN);
+        for (; i < to; i++) m = Math.min(m, a[i]);
+        return m;
+    }
+
+    @Override double min(double[] a, int from, int to) {
+        DoubleVector acc = DoubleVector.broadcast(DS, Double.POSITIVE_INFINITY);
+        int i = from, upper = from + DS.loopBound(to - from);
+        for (; i < upper; i += DS.length())
+            acc = acc.min(DoubleVector.fromArray(DS, a, i));
+        double m = acc.reduceLanes(VectorOperators.MIN);
+        for (; i < to; i++) m = Math.min(m, a[i]);
+        return m;
+    }
+
+    @Override int max(int[] a, int from, int to) {
+        IntVector acc = IntVector.broadcast(IS, Integer.MIN_VALUE);
+        int i = from, upper = from + IS.loopBound(to - from);
+        for (; i < upper; i += IS.length())
+            acc = acc.max(IntVector.fromArray(IS, a, i));
+        int m = acc.reduceLanes(VectorOperators.MAX);
+        for (; i < to; i++) m = Math.max(m, a[i]);
+        return m;
+    }
+
+    @Override long max(long[] a, int from, int to) {
+        LongVector acc = LongVector.broadcast(LS, Long.MIN_VALUE);
+        int i = from, upper = from + LS.loopBound(to - from);
+        for (; i < upper; i += LS.length())
+            acc = acc.max(LongVector.fromArray(LS, a, i));
+        long m = acc.reduceLanes(VectorOperators.MAX);
+        for (; i < to; i++) m = Math.max(m, a[i]);
+        return m;
+    }
+
+    @Override float max(float[] a, int from, int to) {
+        FloatVector acc = FloatVector.broadcast(FS, Float.NEGATIVE_INFINITY);
+        int i = from, upper = from + FS.loopBound(to - from);
+        for (; i < upper; i += FS.length())
+            acc = acc.max(FloatVector.fromArray(FS, a, i));
+        float m = acc.reduceLanes(VectorOperators.MAX);
+        for (; i < to; i++) m = Math.max(m, a[i]);
+        return m;
+    }
+
+    @Override double max(double[] a, int from, int to) {
+        DoubleVector acc = DoubleVector.broadcast(DS, Double.NEGATIVE_INFINITY);
+        int i = from, upper = from + DS.loopBound(to - from);
+        for (; i < upper; i += DS.length())
+            acc = acc.max(DoubleVector.fromArray(DS, a, i));
+        double m = acc.reduceLanes(VectorOperators.MAX);
+        for (; i < to; i++) m = Math.max(m, a[i]);
+        return m;
+    }
+
+    @Override int countInRange(int[] a, int from, int to, int lo, int hi) {
+        int n = 0;
+        int i = from, upper = from + IS.loopBound(to - from);
+        for (; i < upper; i += IS.length()) {
+            IntVector v = IntVector.fromArray(IS, a, i);
+            n += v.compare(VectorOperators.GE, lo).and(v.compare(VectorOperators.LT, hi)).trueCount();
+        }
+        for (; i < to; i++) n += (a[i] >= lo & a[i] < hi) ? 1 : 0;
+        return n;
+    }
+
+    @Override int countInRange(long[] a, int from, int to, long lo, long hi) {
+        int n = 0;
+        int i = from, upper = from + LS.loopBound(to - from);
+        for (; i < upper; i += LS.length()) {
+            LongVector v = LongVector.fromArray(LS, a, i);
+            n += v.compare(VectorOperators.GE, lo).and(v.compare(VectorOperators.LT, hi)).trueCount();
+        }
+        for (; i < to; i++) n += (a[i] >= lo & a[i] < hi) ? 1 : 0;
+        return n;
+    }
+
+    @Override int countInRange(double[] a, int from, int to, double lo, double hi) {
+        int n = 0;
+        int i = from, upper = from + DS.loopBound(to - from);
+        for (; i < upper; i += DS.length()) {
+            DoubleVector v = DoubleVector.fromArray(DS, a, i);
+            n += v.compare(VectorOperators.GE, lo).and(v.compare(VectorOperators.LT, hi)).trueCount();
+        }
+        for (; i < to; i++) n += (a[i] >= lo & a[i] < hi) ? 1 : 0;
+        return n;
+    }
+
+    /** appends <tt>base</tt> + the index of every set lane of <tt>m</tt> to <tt>out</tt> */
+    private static int scatterLanes(VectorMask<?> m, int base, int[] out, int n) {
+        long bits = m.toLong();
+        while (bits != 0) {
+            out[n++] = base + Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+        }
+        return n;
+    }
+
+    @Override int selectRange(int[] a, int from, int to, int lo, int hi, int[] out) {
+        int n = 0;
+        int i = from, upper = from + IS.loopBound(to - from);
+        for (; i < upper; i += IS.length()) {
+            IntVector v = IntVector.fromArray(IS, a, i);
+            n = scatterLanes(v.compare(VectorOperators.GE, lo).and(v.compare(VectorOperators.LT, hi)), i, out, n);
+        }
+        for (; i < to; i++) {
+            out[n] = i;
+            n += (a[i] >= lo & a[i] < hi) ? 1 : 0;
+        }
+        return n;
+    }
+
+    @Override int selectRange(long[] a, int from, int to, long lo, long hi, int[] out) {
+        int n = 0;
+        int i = from, upper = from + LS.loopBound(to - from);
+        for (; i < upper; i += LS.length()) {
+            LongVector v = LongVector.fromArray(LS, a, i);
+            n = scatterLanes(v.compare(VectorOperators.GE, lo).and(v.compare(VectorOperators.LT, hi)), i, out, n);
+        }
+        for (; i < to; i++) {
+            out[n] = i;
+            n += (a[i] >= lo & a[i] < hi) ? 1 : 0;
+        }
+        return n;
+    }
+
+    @Override int selectRange(double[] a, int from, int to, double lo, double hi, int[] out) {
+        int n = 0;
+        int i = from, upper = from + DS.loopBound(to - from);
+        for (; i < upper; i += DS.length()) {
+            DoubleVector v = DoubleVector.fromArray(DS, a, i);
+            n = scatterLanes(v.compare(VectorOperators.GE, lo).and(v.compare(VectorOperators.LT, hi)), i, out, n);
+        }
+        for (; i < to; i++) {
+            out[n] = i;
+            n += (a[i] >= lo & a[i] < hi) ? 1 : 0;
+        }
+        return n;
+    }
+
+    @Override float dot(float[] a, float[] b, int from, int to) {
+        FloatVector acc = FloatVector.zero(FS);
+        int i = from, upper = from + FS.loopBound(to - from);
+        for (; i < upper; i += FS.length())
+            acc = FloatVector.fromArray(FS, a, i).fma(FloatVector.fromArray(FS, b, i), acc);
+        float s = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) s += a[i] * b[i];
+        return s;
+    }
+
+    @Override double dot(double[] a, double[] b, int from, int to) {
+        DoubleVector acc = DoubleVector.zero(DS);
+        int i = from, upper = from + DS.loopBound(to - from);
+        for (; i < upper; i += DS.length())
+            acc = DoubleVector.fromArray(DS, a, i).fma(DoubleVector.fromArray(DS, b, i), acc);
+        double s = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) s += a[i] * b[i];
+        return s;
+    }
+}
@@ -0,0 +1,537 @@
+package net.xorf.util;
+
+import net.xorf.util.Views.CloseableIterator;
+import net.xorf.util.Views.ToLongFunc1;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A memory budget shared by memoized views (see {@link #cache}).
+ *
+ * A cached view records its source's elements as iterators first pull
+ * them, so partial consumption only computes what was read, and replays
+ * them to later iterators.  Every recorded element is charged to the
+ * budget by a weigher - by default 1, making the budget a count of
+ * elements.  When the budget is exceeded, whole views are evicted, least
+ * recently iterated first; an evicted view recomputes from its source the
+ * next time it is iterated.  Iterators already running on an evicted view
+ * carry on with what it had recorded, then read on from the source without
+ * recording, so a view larger than the whole budget is never held in full.
+ *
+ * With a spill directory, an evicted view whose source had been read to the
+ * end is written to a file there (if its elements are
+ * <tt>Serializable</tt>) and replayed from the file instead of being
+ * recomputed; until the file is written it is still replayed from memory.
+ * The spilled files have a budget of their own, in bytes: past it the
+ * least recently iterated spilled views are dropped and their files
+ * deleted.  Files are also deleted by {@link #clear}, when their view is
+ * collected, or when the JVM exits.
+ *
+ * The cache holds its resident and spilled views strongly, so views that
+ * are no longer used stay in memory (or on disk) until the budgets push
+ * them out.
+ */
+public final class ViewCache {
+    private static final Cleaner CLEANER = Cleaner.create(Threads.factory("xorf-cache-cleaner", false));
+
+    private static final ToLongFunc1<Object> UNIT = new ToLongFunc1<Object>() {
+        @Override public long call(Object arg) { return 1; }
+    };
+
+    /** shared by <tt>View.cache()</tt>; its budget is the <tt>xorf.cache.maxElements</tt> property */
+    private static final ViewCache DEFAULT = new ViewCache(Long.getLong("xorf.cache.maxElements", 1 << 20));
+
+    /** the spill budget when none is given: the <tt>xorf.cache.maxSpillBytes</tt> property, 1GB by default */
+    private static final long DEFAULT_MAX_SPILL_BYTES = Long.getLong("xorf.cache.maxSpillBytes", 1L << 30);
+
+    private final long maxWeight, maxSpillBytes;
+    private final ToLongFunc1<Object> weigher;
+    private final Path spillDir;
+    /** resident views and the weight charged for each, in access order */
+    private final LinkedHashMap<CachedView<?>, Long> resident = new LinkedHashMap<CachedView<?>, Long>(16, 0.75f, true);
+    /** spilled views and their files, in access order */
+    private final LinkedHashMap<CachedView<?>, Spilled> spilled = new LinkedHashMap<CachedView<?>, Spilled>(16, 0.75f, true);
+    private long weight = 0, spilledBytes = 0, evictions = 0, spills = 0;
+
+    public ViewCache(long maxWeight) {
+        this(maxWeight, UNIT, null);
+    }
+
+    /**
+     * @param weigher the weight of an element, e.g. an estimate of its size
+     *                in bytes
+     * @param spillDir where evicted views are written, or null to just drop
+     *                 them
+     */
+    public ViewCache(long maxWeight, ToLongFunc1<Object> weigher, Path spillDir) {
+        this(maxWeight, weigher, spillDir, DEFAULT_MAX_SPILL_BYTES);
+    }
+
+    /** @param maxSpillBytes the most the spilled files may take up together */
+    public ViewCache(long maxWeight, ToLongFunc1<Object> weigher, Path spillDir, long maxSpillBytes) {
+        if (maxWeight < 0)
+            throw new IllegalArgumentException("maxWeight cannot be < 0");
+        if (maxSpillBytes < 0)
+            throw new IllegalArgumentException("maxSpillBytes cannot be < 0");
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.spillDir = spillDir;
+        this.maxSpillBytes = maxSpillBytes;
+    }
+
+    public static ViewCache defaultCache() {
+        return DEFAULT;
+    }
+
+    public <T> Views.View<T> cache(Iterable<T> source) {
+        return new CachedView<T>(source, this);
+    }
+
+    public synchronized long weight() { return weight; }
+    public synchronized long evictions() { return evictions; }
+    public synchronized long spills() { return spills; }
+    public synchronized int residentViews() { return resident.size(); }
+    public synchronized int spilledViews() { return spilled.size(); }
+    public synchronized long spilledBytes() { return spilledBytes; }
+
+    /** drops every view, resident or spilled, without spilling any, and deletes the spilled files */
+    public void clear() {
+        List<Spilled> dropped;
+        synchronized (this) {
+            for (CachedView<?> v : new ArrayList<CachedView<?>>(resident.keySet()))
+                evict(v, false);
+            dropped = new ArrayList<Spilled>(spilled.values());
+            for (CachedView<?> v : new ArrayList<CachedView<?>>(spilled.keySet()))
+                unspill(v);
+        }
+        for (Spilled s : dropped)
+            s.delete();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ViewCache(" + resident.size() + " views, weight " + weight + "/" + maxWeight
+                + ", " + spilled.size() + " spilled, " + spilledBytes + "/" + maxSpillBytes + " bytes, "
+                + evictions + " evictions, " + spills + " spills)";
+    }
+
+    synchronized void touch(CachedView<?> v) {
+        if (resident.get(v) == null)
+            spilled.get(v);
+    }
+
+    /** charges <tt>w</tt> to <tt>v</tt> if <tt>g</tt> is still its recording, then enforces the budget */
+    void charge(CachedView<?> v, Generation<?> g, long w) {
+        List<CachedView<?>> toSpill;
+        synchronized (this) {
+            if (v.state != g)
+                return;
+            Long prev = resident.get(v);
+            resident.put(v, prev == null ? w : prev + w);
+            weight += w;
+            if (weight <= maxWeight)
+                return;
+            //evict others first; the growing view goes last, when it alone is over budget
+            List<CachedView<?>> victims = new ArrayList<CachedView<?>>();
+            long excess = weight - maxWeight;
+            for (Map.Entry<CachedView<?>, Long> e : resident.entrySet()) {
+                if (excess <= 0)
+                    break;
+                if (e.getKey() != v) {
+                    victims.add(e.getKey());
+                    excess -= e.getValue();
+                }
+            }
+            toSpill = new ArrayList<CachedView<?>>();
+            for (CachedView<?> victim : victims)
+                if (evict(victim, true))
+                    toSpill.add(victim);
+            if (weight > maxWeight && evict(v, true))
+                toSpill.add(v);
+        }
+        spill(toSpill);
+    }
+
+    /**
+     * Drops <tt>v</tt> from the budget.  A recording still in progress is
+     * detached, so its iterators stop adding to it.
+     *
+     * @return true if <tt>v</tt> is left replaying a complete recording,
+     *         to be spilled outside the lock
+     */
+    private boolean evict(CachedView<?> v, boolean spill) {
+        Long w = resident.remove(v);
+        if (w != null)
+            weight -= w;
+        evictions++;
+        Object state = v.state;
+        if (state instanceof Generation) {
+            Generation<?> g = (Generation<?>) state;
+            if (spill && spillDir != null && g.isComplete())
+                return true;
+            g.detach();
+        }
+        v.state = null;
+        return false;
+    }
+
+    /** drops <tt>v</tt> from the disk tier; the caller deletes the file */
+    private void unspill(CachedView<?> v) {
+        Spilled s = spilled.remove(v);
+        if (s == null)
+            return;
+        spilledBytes -= s.bytes;
+        if (v.state == s)
+            v.state = null;
+    }
+
+    /**
+     * Writes out views <tt>evict</tt> left replaying from memory, then
+     * drops the least recently used spilled views past the spill budget.
+     */
+    private void spill(List<CachedView<?>> views) {
+        List<Spilled> dropped = new ArrayList<Spilled>();
+        for (CachedView<?> v : views) {
+            //a complete recording no longer changes, and v isn't resident to be evicted again
+            Spilled s = Spilled.write(spillDir, ((Generation<?>) v.state).snapshot());
+            synchronized (this) {
+                v.state = s;
+                if (s == null)
+                    continue;
+                s.register(v);
+                spilled.put(v, s);
+                spilledBytes += s.bytes;
+                spills++;
+                Iterator<Map.Entry<CachedView<?>, Spilled>> lru = spilled.entrySet().iterator();
+                while (spilledBytes > maxSpillBytes && lru.hasNext()) {
+                    Map.Entry<CachedView<?>, Spilled> e = lru.next();
+                    lru.remove();
+                    spilledBytes -= e.getValue().bytes;
+                    if (e.getKey().state == e.getValue())
+                        e.getKey().state = null;
+                    dropped.add(e.getValue());
+                }
+            }
+        }
+        for (Spilled s : dropped)
+            s.delete();
+    }
+
+    /** a spilled file that couldn't be read is dropped, so the view recomputes */
+    synchronized void dropSpilled(CachedView<?> v, Spilled s) {
+        if (spilled.get(v) == s)
+            unspill(v);
+        else if (v.state == s)
+            v.state = null;
+    }
+
+    static final class CachedView<T> extends Views.View<T> {
+        private final Iterable<T> source;
+        private final ViewCache cache;
+        /** a Generation, a Spilled file, or null when nothing is cached */
+        volatile Object state;
+
+        CachedView(Iterable<T> source, ViewCache cache) {
+            this.source = source;
+            this.cache = cache;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Iterator<T> iterator() {
+            while (true) {
+                Object s;
+                synchronized (this) {
+                    s = state;
+                    if (s == null)
+                        state = s = new Generation<T>(source);
+                }
+                cache.touch(this);
+                if (!(s instanceof Spilled))
+                    return new ReplayIterator((Generation<T>) s);
+                Iterator<T> itr = ((Spilled) s).iterator();
+                if (itr != null)
+                    return itr;
+                //deleted under us, or unreadable: recompute
+                Spilled gone = (Spilled) s;
+                cache.dropSpilled(this, gone);
+                gone.delete();
+            }
+        }
+
+        /** a source that failed mid-recording is recomputed next time */
+        void dropBroken(Generation<T> g) {
+            synchronized (cache) {
+                if (state == g)
+                    cache.evict(this, false);
+            }
+        }
+
+        class ReplayIterator implements CloseableIterator<T> {
+            private Generation<T> gen;
+            /** the source, once <tt>gen</tt> was detached before this caught up with it */
+            private Iterator<T> direct;
+            private int idx = 0;
+
+            ReplayIterator(Generation<T> gen) {
+                this.gen = gen;
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (direct != null) {
+                    if (direct.hasNext())
+                        return true;
+                    close();
+                    return false;
+                }
+                long w;
+                try {
+                    w = gen.fetch(idx, cache.weigher);
+                } catch (RuntimeException e) {
+                    dropBroken(gen);
+                    throw e;
+                }
+                if (w < 0) {
+                    readDirect();
+                    return hasNext();
+                }
+                if (w > 0)
+                    cache.charge(CachedView.this, gen, w);
+                return idx < gen.size();
+            }
+
+            /** carries on from element <tt>idx</tt> straight from the source */
+            private void readDirect() {
+                direct = gen.takeSource();
+                gen = null;
+                if (direct == null) {
+                    //another iterator took the recording's; skip what was replayed
+                    direct = source.iterator();
+                    for (int i = 0; i < idx && direct.hasNext(); i++)
+                        direct.next();
+                }
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                if (direct != null)
+                    return direct.next();
+                return gen.get(idx++);
+            }
+
+            @Override
+            public void close() {
+                if (direct != null) {
+                    Views.close(direct);
+                    direct = Collections.<T>emptyIterator();
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+
+    /**
+     * One recording of a source: the elements pulled so far, and the source
+     * iterator to pull more from.  Shared by all the iterators replaying it.
+     */
+    static final class Generation<T> {
+        private final Iterable<T> source;
+        private final List<T> items = new ArrayList<T>();
+        private Iterator<T> sourceItr;
+        private volatile boolean complete = false;
+        private boolean detached = false;
+
+        Generation(Iterable<T> source) {
+            this.source = source;
+        }
+
+        /**
+         * makes sure element <tt>idx</tt> is recorded if the source has it
+         *
+         * @return the weight of any newly recorded element, or -1 if the
+         *         recording was detached before reaching <tt>idx</tt>
+         */
+        synchronized long fetch(int idx, ToLongFunc1<Object> weigher) {
+            if (idx < items.size() || complete)
+                return 0;
+            if (detached)
+                return -1;
+            if (sourceItr == null)
+                sourceItr = source.iterator();
+            if (!sourceItr.hasNext()) {
+                complete = true;
+                Views.close(sourceItr);
+                sourceItr = null;
+                return 0;
+            }
+            T e = sourceItr.next();
+            items.add(e);
+            return weigher.call(e);
+        }
+
+        /** stops recording, once evicted */
+        synchronized void detach() { detached = true; }
+
+        /**
+         * hands the source iterator, positioned after the recorded elements,
+         * to the first detached iterator to catch up; null for the rest
+         */
+        synchronized Iterator<T> takeSource() {
+            Iterator<T> itr = sourceItr;
+            sourceItr = null;
+            return itr;
+        }
+
+        synchronized int size() { return items.size(); }
+        synchronized T get(int idx) { return items.get(idx); }
+        boolean isComplete() { return complete; }
+
+        /** only called once complete, when the items no longer change */
+        List<T> snapshot() { return items; }
+    }
+
+    /** a complete recording written to a file */
+    static final class Spilled {
+        private final Path file;
+        private final int count;
+        final long bytes;
+        /** deletes the file, at the latest once the view is collected */
+        private Cleaner.Cleanable cleanable;
+
+        private Spilled(Path file, int count, long bytes) {
+            this.file = file;
+            this.count = count;
+            this.bytes = bytes;
+        }
+
+        /** @return null if the elements couldn't be written */
+        static Spilled write(Path dir, List<?> items) {
+            Path file = null;
+            try {
+                file = Files.createTempFile(dir, "xorf-cache-", ".bin");
+                file.toFile().deleteOnExit();
+                try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                    for (Object o : items) {
+                        out.writeObject(o);
+                        out.reset(); //don't let the stream keep every written object
+                    }
+                }
+                return new Spilled(file, items.size(), Files.size(file));
+            } catch (IOException e) {
+                //not serializable, or no room - recompute instead
+                deleteQuietly(file);
+                return null;
+            }
+        }
+
+        /** called under the cache's lock, before the file can be dropped */
+        void register(CachedView<?> v) {
+            final Path f = file;
+            cleanable = CLEANER.register(v, new Runnable() {
+                @Override public void run() { deleteQuietly(f); }
+            });
+        }
+
+        /** deletes the file now, once it is out of the cache */
+        void delete() {
+            if (cleanable != null)
+                cleanable.clean();
+            else
+                deleteQuietly(file);
+        }
+
+        private static void deleteQuietly(Path file) {
+            if (file == null)
+                return;
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                //left for deleteOnExit
+            }
+        }
+
+        /**
+         * The file is opened up front, so an iterator can read on after the
+         * file is dropped from the cache.
+         *
+         * @return null if the file can't be opened
+         */
+        <T> Iterator<T> iterator() {
+            final ObjectInputStream opened;
+            try {
+                opened = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)));
+            } catch (IOException e) {
+                return null;
+            }
+            return new CloseableIterator<T>() {
+                private ObjectInputStream in = opened;
+                private int read = 0;
+
+                @Override
+                public boolean hasNext() {
+                    if (read < count)
+                        return true;
+                    close();
+                    return false;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public T next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    try {
+                        read++;
+                        return (T) in.readObject();
+                    } catch (IOException e) {
+                        close();
+                        throw new UncheckedIOException(e);
+                    } catch (ClassNotFoundException e) {
+                        close();
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+                @Override
+                public void close() {
+                    read = count;
+                    if (in != null) {
+                        try {
+                            in.close();
+                        } catch (IOException e) {
+                            //nothing to do
+                        }
+                        in = null;
+                    }
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
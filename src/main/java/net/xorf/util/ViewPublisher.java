@@ -0,0 +1,148 @@
+package net.xorf.util;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the elements of an <tt>Iterable</tt> as a
+ * <tt>java.util.concurrent.Flow.Publisher</tt>.  Every subscriber gets its
+ * own iterator, created and pulled on <tt>executor</tt>, and only ever as
+ * many elements as it has requested - nothing is read ahead or buffered.
+ *
+ * All signals to a subscriber, <tt>onSubscribe</tt> included, are delivered
+ * one at a time from a drain loop run on the executor.  Null elements end
+ * the stream with a <tt>NullPointerException</tt>, as Flow doesn't allow
+ * them.  Cancelling closes the iterator if it is a
+ * {@link Views.CloseableIterator}.
+ */
+public class ViewPublisher<T> implements Flow.Publisher<T> {
+    protected final Iterable<T> source;
+    protected final Executor executor;
+
+    public ViewPublisher(Iterable<T> source, Executor executor) {
+        this.source = source;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (subscriber == null)
+            throw new NullPointerException("subscriber");
+        new ViewSubscription(subscriber).schedule();
+    }
+
+    final class ViewSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        /** pending drain requests; the drain loop runs while this is non-zero */
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile Throwable badRequest;
+        //only touched by the drain loop
+        private boolean subscribed = false, done = false;
+        private Iterator<T> itr;
+
+        ViewSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                badRequest = new IllegalArgumentException("non-positive request: " + n);
+            } else {
+                long r, u;
+                do {
+                    r = requested.get();
+                    u = r + n < 0 ? Long.MAX_VALUE : r + n; //saturate
+                } while (!requested.compareAndSet(r, u));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        void schedule() {
+            if (wip.getAndIncrement() != 0)
+                return;
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                //nothing can run the drain loop, so signal from here
+                done = true;
+                if (!subscribed)
+                    subscriber.onSubscribe(this);
+                subscriber.onError(e);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (!subscribed) {
+                subscribed = true;
+                subscriber.onSubscribe(this);
+            }
+            if (done)
+                return;
+            if (cancelled) {
+                finish();
+                return;
+            }
+            if (badRequest != null) {
+                finish();
+                subscriber.onError(badRequest);
+                return;
+            }
+            long r = requested.get();
+            long emitted = 0;
+            try {
+                if (itr == null)
+                    itr = source.iterator();
+                while (emitted != r) {
+                    if (cancelled) {
+                        finish();
+                        return;
+                    }
+                    if (!itr.hasNext()) {
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    T e = itr.next();
+                    if (e == null)
+                        throw new NullPointerException("null element at position " + emitted);
+                    subscriber.onNext(e);
+                    emitted++;
+                }
+            } catch (Throwable t) {
+                finish();
+                subscriber.onError(t);
+                return;
+            }
+            if (r != Long.MAX_VALUE)
+                requested.addAndGet(-emitted);
+        }
+
+        private void finish() {
+            done = true;
+            if (itr != null)
+                Views.close(itr);
+        }
+    }
+}
@@ -3,8 +3,16 @@ package net.xorf.util;
 import net.xorf.util.Tuples.Tuple;
 import net.xorf.util.Tuples.Tuple2;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.reflect.Array;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A collection of utilities for simplifying code that manipulates
@@ -26,8 +34,32 @@ public class Views {
 	public interface Func2<TP1, TP2, TRet> { TRet call(TP1 arg1, TP2 arg2); }
     public interface Func3<TP1, TP2, TP3, TRet> { TRet call(TP1 arg1, TP2 arg2, TP3 arg3); }
 
+    //primitive-returning functors - used by the primitive views to avoid
+    //boxing every element on its way out of a mapper
+    public interface ToIntFunc1<TP1> { int call(TP1 arg); }
+    public interface ToLongFunc1<TP1> { long call(TP1 arg); }
+    public interface ToDoubleFunc1<TP1> { double call(TP1 arg); }
+    public interface IntPredicate { boolean call(int arg); }
+    public interface LongPredicate { boolean call(long arg); }
+    public interface DoublePredicate { boolean call(double arg); }
+    //and their counterparts for object arguments, named test so that
+    //Predicate and Equality can extend them alongside their boxed call
+    public interface BooleanPredicate<TP1> { boolean test(TP1 arg); }
+    public interface BooleanEquality<TP1, TP2> { boolean test(TP1 arg1, TP2 arg2); }
+
 	public interface Aggregate<TAgg, TElem> extends VFunc1<TElem> { TAgg value(); }
-	public interface Predicate<T> extends Func1<T, Boolean> { }
+
+	/**
+	 * An aggregate whose partial results can be combined: <tt>merge</tt>
+	 * folds in an aggregate of the same kind over elements that came after
+	 * this one's.  Built-in ones are in {@link Aggregates}.
+	 */
+	public interface CombinableAggregate<TAgg, TElem> extends Aggregate<TAgg, TElem> {
+	    void merge(CombinableAggregate<TAgg, TElem> other);
+	}
+	public interface Predicate<T> extends Func1<T, Boolean>, BooleanPredicate<T> {
+	    @Override default boolean test(T arg) { return call(arg); }
+	}
 
 	//alias for UnaryPredicate - clearer base class name for
 	//code clarity when creating custom filters.
@@ -40,7 +72,65 @@ public class Views {
 	//to keep class declarations and method signatures sane
 	public interface ToMapMapper<TSource, TKey, TValue> extends Mapper<TSource, Tuple2<TKey, TValue>> { }
 
+	//primitive-map counterparts of ToMapMapper: key and value are pulled
+	//separately so no intermediate pair is built per element
+	public interface ToLongLongMapper<TSource> { long key(TSource arg); long value(TSource arg); }
+	public interface ToLongDoubleMapper<TSource> { long key(TSource arg); double value(TSource arg); }
+	public interface ToObjLongMapper<TSource, TKey> { TKey key(TSource arg); long value(TSource arg); }
+	public interface ToObjDoubleMapper<TSource, TKey> { TKey key(TSource arg); double value(TSource arg); }
+
 	public interface DynaFunctor<TArgs extends Tuple, TRet> { TRet call(TArgs args); }
+
+	/**
+	 * A source that can be cut into independent parts which together yield
+	 * its elements in order, so that one source can be scanned by several
+	 * threads.  A source may return fewer parts than asked for.
+	 */
+	public interface Splittable<T> { List<? extends Iterable<T>> split(int parts); }
+
+	/**
+	 * An iterator holding resources - worker threads, buffers, files - that
+	 * should be released as soon as the consumer is done with it rather
+	 * than when it is collected.  The library's own iterators forward
+	 * <tt>close</tt> to their source, and {@link Limit} closes its source
+	 * once the limit is reached, so e.g. <tt>first(n)</tt> over a
+	 * concurrent stage stops that stage's work.  Closing twice is harmless.
+	 */
+	public interface CloseableIterator<T> extends Iterator<T>, AutoCloseable {
+	    @Override void close();
+	}
+
+	/** closes <tt>itr</tt> if it is a {@link CloseableIterator} */
+	static void close(Iterator<?> itr) {
+	    if (itr instanceof CloseableIterator)
+	        ((CloseableIterator<?>) itr).close();
+	}
+
+	/** the views <tt>view</tt> reads from, as far as known; for pipeline reports */
+	static List<Iterable<?>> upstreams(Iterable<?> view) {
+	    Iterable<?> src = null;
+	    if (view instanceof Instrumentation.InstrumentedView)
+	        src = ((Instrumentation.InstrumentedView<?>) view).view;
+	    else if (view instanceof Transform)
+	        src = ((Transform<?, ?>) view).source;
+	    else if (view instanceof FilteredView)
+	        src = ((FilteredView<?>) view).source;
+	    else if (view instanceof UniqueView)
+	        src = ((UniqueView<?>) view).source;
+	    else if (view instanceof SortedView)
+	        src = ((SortedView<?>) view).source;
+	    else if (view instanceof Limit)
+	        src = ((Limit<?>) view).source;
+	    else if (view instanceof TailLimit)
+	        src = ((TailLimit<?>) view).source;
+	    else if (view instanceof Passthrough)
+	        src = ((Passthrough<?>) view).source;
+	    else if (view instanceof Concatenation)
+	        return Arrays.<Iterable<?>>asList(((Concatenation<?>) view).first, ((Concatenation<?>) view).next);
+	    else if (view instanceof Joins.JoinView)
+	        return Arrays.<Iterable<?>>asList(((Joins.JoinView<?, ?>) view).left, ((Joins.JoinView<?, ?>) view).right);
+	    return src == null ? Collections.<Iterable<?>>emptyList() : Collections.<Iterable<?>>singletonList(src);
+	}
 	
 	/**
 	 * This class is to be used externally only in a static manner.
@@ -51,7 +141,8 @@ public class Views {
 	/** static methods for transforming/filtering/aggregating iterables **/ 
     
     public static <T> View<T> viewOf(Iterable<T> src) {
-        return new Passthrough<T>(src);
+        View<T> v = new Passthrough<T>(src);
+        return Instrumentation.ENABLED ? Instrumentation.stage("viewOf", v) : v;
     }
 
     public static <T> View<T> viewOf(T[] arr) {
@@ -66,20 +157,33 @@ public class Views {
         return new ArrayView<Short>(ArrayBoxer.box(arr));
     }
 
-    public static View<Integer> viewOf(int[] arr) {
-        return new ArrayView<Integer>(ArrayBoxer.box(arr));
+    /*
+     * Unlike the overloads above, which box a copy, the int, long, float
+     * and double overloads wrap arr itself: later writes to it show through
+     * the view, so pass arr.clone() for a snapshot.  They used to return
+     * View<Integer> (and so on); the narrower types are still Views, so
+     * source that assigns them to the boxed types compiles unchanged, but
+     * callers compiled against the old signatures must be recompiled.
+     */
+
+    /** wraps <tt>arr</tt> without copying it */
+    public static IntArrayView viewOf(int[] arr) {
+        return new IntArrayView(arr);
     }
 
-    public static View<Long> viewOf(long[] arr) {
-        return new ArrayView<Long>(ArrayBoxer.box(arr));
+    /** wraps <tt>arr</tt> without copying it */
+    public static LongArrayView viewOf(long[] arr) {
+        return new LongArrayView(arr);
     }
 
-    public static View<Float> viewOf(float[] arr) {
-        return new ArrayView<Float>(ArrayBoxer.box(arr));
+    /** wraps <tt>arr</tt> without copying it */
+    public static FloatArrayView viewOf(float[] arr) {
+        return new FloatArrayView(arr);
     }
 
-    public static View<Double> viewOf(double[] arr) {
-        return new ArrayView<Double>(ArrayBoxer.box(arr));
+    /** wraps <tt>arr</tt> without copying it */
+    public static DoubleArrayView viewOf(double[] arr) {
+        return new DoubleArrayView(arr);
     }
 
     public static View<Boolean> viewOf(boolean[] arr) {
@@ -98,8 +202,19 @@ public class Views {
         @Override public T call(T arg) { return arg; }
     }
 
-    public static <V> View<V> fromString(String str, String delim, Func1<String, V> builder) {
-        return Views.map(Arrays.asList(str.split(delim)), builder);
+    /** default delimiter for <tt>fromString</tt>/<tt>fromChars</tt>: a comma or a pipe */
+    public static final String DEFAULT_DELIMITER = "[,\\|]";
+
+    /**
+     * Splits <tt>str</tt> lazily on <tt>delim</tt> (in <tt>String.split</tt>
+     * regex syntax, with the same results) and maps each token through
+     * <tt>builder</tt>.  See {@link Tokenizer} - literal and character-set
+     * delimiters are matched without regex.
+     */
+    public static <V> View<V> fromString(String str, String delim, final Func1<String, V> builder) {
+        return Views.map(tokenize(str, delim), new Func1<CharSequence, V>() {
+            @Override public V call(CharSequence arg) { return builder.call(arg.toString()); }
+        });
     }
     
     public static View<String> fromString(String str, String delim) {
@@ -107,51 +222,210 @@ public class Views {
     }
     
     public static <V> View<V> fromString(String str, Func1<String, V> builder) {
-        return fromString(str, "[,\\|]", builder);
+        return fromString(str, DEFAULT_DELIMITER, builder);
     }
     
     public static View<String> fromString(String str) {
         return fromString(str, new NoOp<String>());
     }
 
+    /**
+     * Like {@link #fromString(String, String, Func1)}, but <tt>builder</tt>
+     * receives each token as a zero-copy slice of <tt>str</tt>, so e.g.
+     * {@link Tokenizer#parseLong(CharSequence)} can parse it without an
+     * intermediate String.
+     */
+    public static <V> View<V> fromChars(CharSequence str, String delim, Func1<CharSequence, V> builder) {
+        return Views.map(tokenize(str, delim), builder);
+    }
+
+    public static <V> View<V> fromChars(CharSequence str, Func1<CharSequence, V> builder) {
+        return fromChars(str, DEFAULT_DELIMITER, builder);
+    }
+
+    public static View<CharSequence> tokenize(CharSequence str, String delim) {
+        return new Tokenizer(str, delim);
+    }
+
+    public static View<CharSequence> tokenize(CharSequence str) {
+        return tokenize(str, DEFAULT_DELIMITER);
+    }
+
+    /**
+     * The lines of a file, read lazily through memory-mapped windows, as
+     * zero-copy character slices where the charset allows (see
+     * {@link MappedLines}).  <tt>split</tt> on the result cuts the file at
+     * line boundaries for parallel scans.
+     */
+    public static MappedLines lines(Path path, Charset charset) {
+        return new MappedLines(path, charset);
+    }
+
+    public static MappedLines lines(Path path) {
+        return lines(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The fixed-width binary records of a file, memory-mapped and decoded
+     * on demand as described by <tt>schema</tt> (see {@link Records}).
+     */
+    public static Records records(Path path, RecordSchema schema) {
+        return new Records(path, schema);
+    }
+
     public static <T extends Comparable<T>> OrderableView<T> orderableViewOf(Iterable<T> src) {
         return new OrderableView<T>(src);
     }
     
+	/**
+	 * Lists, arrays and sorted sets answer directly; a sorted view finds
+	 * its least element without sorting, and a map is applied to its
+	 * source's first element only.
+	 * @throws NoSuchElementException if <tt>i</tt> is empty
+	 */
+	@SuppressWarnings("unchecked")
 	public static <T> T first(Iterable<T> i) {
-		return i.iterator().next();
+	    Iterable<T> src = (Iterable<T>) unwrap(i);
+	    if (src instanceof List && src instanceof RandomAccess) {
+	        List<T> l = (List<T>) src;
+	        if (l.isEmpty())
+	            throw new NoSuchElementException();
+	        return l.get(0);
+	    }
+	    if (src instanceof SortedSet)
+	        return ((SortedSet<T>) src).first();
+	    if (src instanceof ArrayView) {
+	        T[] arr = ((ArrayView<T>) src).arr;
+	        if (arr.length == 0)
+	            throw new NoSuchElementException();
+	        return arr[0];
+	    }
+	    if (src instanceof SortedView) {
+	        SortedView<T> sv = (SortedView<T>) src;
+	        if (sv.limit != 0 && sv.limit != 1)
+	            src = new SortedView<T>(sv.source, sv.comparator, 1);
+	    } else if (src instanceof Transform) {
+	        return firstMapped((Transform<?, T>) src);
+	    }
+	    Iterator<T> itr = src.iterator();
+	    try {
+	        return itr.next();
+	    } finally {
+	        close(itr);
+	    }
+	}
+
+	private static <TSource, TDest> TDest firstMapped(Transform<TSource, TDest> t) {
+	    return t.mapFunc.call(first(t.source));
+	}
+
+	/**
+	 * <tt>itr</tt> without the passthrough wrappers, which change nothing
+	 * about it but its type.
+	 */
+	static Iterable<?> unwrap(Iterable<?> itr) {
+	    while (true) {
+	        if (itr instanceof Passthrough)
+	            itr = ((Passthrough<?>) itr).source;
+	        else if (itr instanceof ReadOnlyPassthrough)
+	            itr = ((ReadOnlyPassthrough<?>) itr).source;
+	        else
+	            return itr;
+	    }
 	}
 
 	public static <T, TComp>
-    boolean contains(Iterable<T> itr, TComp comp, Equality<T, TComp> equality) {
+    boolean contains(Iterable<T> itr, TComp comp, BooleanEquality<? super T, ? super TComp> equality) {
 	    for (T e : itr) {
-	        if (equality.call(e, comp))
+	        if (equality.test(e, comp))
 	            return true;
 	    }
 	    return false;
 	}
 
+    /**
+     * Hash sets are asked directly, as are sorted sets in natural order
+     * when <tt>comp</tt> is of a type whose ordering agrees with
+     * <tt>equals</tt>.  Lists and arrays are scanned without an iterator.
+     */
+    @SuppressWarnings("unchecked")
     public static <T> boolean contains(Iterable<T> itr, T comp) {
-        return contains(itr, comp, new DefaultEquality<T>());
+        //membership isn't changed by passthroughs, sorting or an unlimited unique
+        Iterable<?> src = itr;
+        while (true) {
+            src = unwrap(src);
+            if (src instanceof UniqueView && ((UniqueView<?>) src).limit < 0)
+                src = ((UniqueView<?>) src).source;
+            else if (src instanceof SortedView && ((SortedView<?>) src).limit < 0)
+                src = ((SortedView<?>) src).source;
+            else if (src instanceof SourceSet)
+                src = ((SourceSet<?>) src).source;
+            else
+                break;
+        }
+        //equals-based sets only: a TreeSet's idea of membership is its comparator's
+        if (src instanceof HashSet || src instanceof EnumSet
+                || src instanceof java.util.concurrent.ConcurrentHashMap.KeySetView)
+            return ((Set<?>) src).contains(comp);
+        if (src instanceof SortedSet && ((SortedSet<?>) src).comparator() == null && orderedLikeEquals(comp)) {
+            try {
+                return ((SortedSet<?>) src).contains(comp);
+            } catch (ClassCastException e) {
+                return false; //elements of another type, so none equal to comp
+            }
+        }
+        if (src instanceof List && src instanceof RandomAccess) {
+            List<T> l = (List<T>) src;
+            for (int i = 0, n = l.size(); i < n; i++)
+                if (nullSafeEquals(l.get(i), comp))
+                    return true;
+            return false;
+        }
+        if (src instanceof ArrayView) {
+            for (T e : ((ArrayView<T>) src).arr)
+                if (nullSafeEquals(e, comp))
+                    return true;
+            return false;
+        }
+        for (T e : itr)
+            if (nullSafeEquals(e, comp))
+                return true;
+        return false;
+    }
+
+    /** {@link DefaultEquality} without the boxing */
+    private static boolean nullSafeEquals(Object e, Object comp) {
+        return e == null ? comp == null : e.equals(comp);
+    }
+
+    /** whether <tt>o</tt>'s natural ordering is consistent with equals */
+    private static boolean orderedLikeEquals(Object o) {
+        return o instanceof String || o instanceof Integer || o instanceof Long || o instanceof Short
+                || o instanceof Byte || o instanceof Character || o instanceof Double || o instanceof Float
+                || o instanceof Boolean || o instanceof Enum || o instanceof UUID
+                || o instanceof java.math.BigInteger;
     }
 
-    public static <T> boolean contains(Iterable<T> itr, Predicate<T> pred) {
+    public static <T> boolean contains(Iterable<T> itr, BooleanPredicate<? super T> pred) {
         for (T e : itr) {
-            if (pred.call(e))
+            if (pred.test(e))
                 return true;
         }
         return false;
     }
 
 
-    public interface Equality<T1, T2> extends Func2<T1, T2, Boolean> { }
+    public interface Equality<T1, T2> extends Func2<T1, T2, Boolean>, BooleanEquality<T1, T2> {
+        @Override default boolean test(T1 arg1, T2 arg2) { return call(arg1, arg2); }
+    }
 
     public static abstract class NullSafeEquality<T1, T2> implements Equality<T1, T2> {
         @Override public Boolean call(T1 arg1, T2 arg2) {
-            return arg1 == null && arg2 == null
-                || (arg1 == null
-                    ? false
-                    : nullSafeEquals(arg1, arg2));
+            return test(arg1, arg2);
+        }
+
+        @Override public boolean test(T1 arg1, T2 arg2) {
+            return arg1 == null ? arg2 == null : nullSafeEquals(arg1, arg2);
         }
         
         public abstract Boolean nullSafeEquals(T1 arg1, T2 arg2);
@@ -163,12 +437,53 @@ public class Views {
         }
     }
     
+    /*
+     * The factories below rewrite the chain they are given rather than
+     * always stacking another node on it: limits and offsets are merged,
+     * adjacent filters fused, a limit over orderBy becomes a top-k sort and
+     * a limit over unique stops reading once it has enough.  The views are
+     * lazy, so this is the same as optimizing before the first iterator().
+     * Stages wrapped by Instrumentation aren't looked through, so
+     * instrumented chains run as written.
+     */
+
 	public static <T> View<T> first(Iterable<T> itr, int limit) {
-	    return new Limit<T>(itr, limit);
+	    //checked here as well as in Limit, since the rewrites below bypass it
+	    if (limit < 0)
+	        throw new IllegalArgumentException("limit cannot be < 0");
+	    View<T> v;
+	    if (itr instanceof Limit) {
+	        Limit<T> l = (Limit<T>) itr;
+	        v = new Limit<T>(l.source, Math.min(l.limit, limit));
+	    } else if (itr instanceof SortedView) {
+	        SortedView<T> sv = (SortedView<T>) itr;
+	        v = new SortedView<T>(sv.source, sv.comparator, sv.limit < 0 ? limit : Math.min(sv.limit, limit));
+	    } else if (itr instanceof UniqueView) {
+	        UniqueView<T> u = (UniqueView<T>) itr;
+	        v = new UniqueView<T>(u.source, u.limit < 0 ? limit : Math.min(u.limit, limit));
+	    } else {
+	        v = new Limit<T>(itr, limit);
+	    }
+	    return Instrumentation.ENABLED ? Instrumentation.stage("first", v) : v;
 	}
 
     public static <T> View<T> from(Iterable<T> itr, int limit) {
-        return new TailLimit<T>(itr, limit);
+        if (limit < 0)
+            throw new IllegalArgumentException("limit cannot be < 0");
+        if (itr instanceof Limit) {
+            //skipping into a limited view: skip the source, limit what's left
+            Limit<T> l = (Limit<T>) itr;
+            return first(from(l.source, limit), Math.max(0, l.limit - limit));
+        }
+        View<T> v;
+        if (itr instanceof TailLimit) {
+            TailLimit<T> t = (TailLimit<T>) itr;
+            long skip = (long) t.limit + limit;
+            v = new TailLimit<T>(t.source, (int) Math.min(Integer.MAX_VALUE, skip));
+        } else {
+            v = new TailLimit<T>(itr, limit);
+        }
+        return Instrumentation.ENABLED ? Instrumentation.stage("from", v) : v;
     }
 
     public static <T> View<T> slice(Iterable<T> itr, int start, int end) {
@@ -179,23 +494,116 @@ public class Views {
         return new Expand<T>(itr, size, sub);
     }  
 
+	/**
+	 * Any {@link Filter} will do; a {@link BooleanPredicate} implemented
+	 * directly avoids the <tt>Boolean</tt> round trip per element.
+	 */
 	public static <T> View<T>
-			filter(Iterable<T> itr, Filter<T> filter, VFunc1<T> shunt) {
-		return new FilteredView<T>(itr, filter, shunt);
+			filter(Iterable<T> itr, BooleanPredicate<? super T> filter, VFunc1<T> shunt) {
+		View<T> v;
+		if (shunt == null && itr instanceof FilteredView && ((FilteredView<T>) itr).shunt == null) {
+		    FilteredView<T> f = (FilteredView<T>) itr;
+		    v = new FilteredView<T>(f.source, both(f.condition, filter), null);
+		} else {
+		    v = new FilteredView<T>(itr, filter, shunt);
+		}
+		return Instrumentation.ENABLED ? Instrumentation.stage("filter", v) : v;
 	}
 
     public static <T> View<T>
-    filter(Iterable<T> itr, Filter<T> filter) {
-        return new FilteredView<T>(itr, filter, null);
+    filter(Iterable<T> itr, BooleanPredicate<? super T> filter) {
+        return filter(itr, filter, null);
     }
 
+	/** a predicate true where <tt>first</tt> and then <tt>second</tt> are */
+	private static <T> BooleanPredicate<T> both(final BooleanPredicate<? super T> first,
+	                                            final BooleanPredicate<? super T> second) {
+	    return new BooleanPredicate<T>() {
+	        @Override
+	        public boolean test(T arg) {
+	            return first.test(arg) && second.test(arg);
+	        }
+	    };
+	}
+
 	public static <T> View<T> unique(Iterable<T> src) {
-	    return new UniqueView<T>(src);
+	    View<T> v = new UniqueView<T>(src, -1);
+	    return Instrumentation.ENABLED ? Instrumentation.stage("unique", v) : v;
 	}
     
     public static <T> View<T> union(Iterable<T> first, Iterable<T> next) {
         return concatenate(first, next).unique();
     }
+
+    /*
+     * The set operations and joins below read their right side into a
+     * compact hash set as each iterator is created and stream the left
+     * side past it, so like other views they see their sources' changes.  Like union, intersect and except give
+     * distinct elements; the joins keep every matching left element.
+     */
+
+    /** the distinct elements of <tt>left</tt> also in <tt>right</tt>, in <tt>left</tt>'s order */
+    public static <T> View<T> intersect(Iterable<T> left, Iterable<? extends T> right) {
+        View<T> v = new Joins.JoinView<T, T>(left, right, null, null, false, true, Double.NaN);
+        return Instrumentation.ENABLED ? Instrumentation.stage("intersect", v) : v;
+    }
+
+    /** the distinct elements of <tt>left</tt> not in <tt>right</tt>, in <tt>left</tt>'s order */
+    public static <T> View<T> except(Iterable<T> left, Iterable<?> right) {
+        View<T> v = new Joins.JoinView<T, Object>(left, right, null, null, true, true, Double.NaN);
+        return Instrumentation.ENABLED ? Instrumentation.stage("except", v) : v;
+    }
+
+    /** the elements of <tt>left</tt> whose key matches that of some element of <tt>right</tt> */
+    public static <TLeft, TRight, TKey> View<TLeft>
+            semiJoin(Iterable<TLeft> left, Iterable<TRight> right,
+                     Func1<? super TLeft, ? extends TKey> leftKey, Func1<? super TRight, ? extends TKey> rightKey) {
+        return join(left, right, leftKey, rightKey, false, Double.NaN);
+    }
+
+    /**
+     * A semi-join that checks a Bloom filter of <tt>right</tt>'s keys,
+     * built with false positive rate <tt>fpp</tt>, before the hash set.
+     * Worth it when the hash set is much bigger than the CPU's caches and
+     * most left keys don't match: those are turned away by one lookup in
+     * the smaller filter.
+     */
+    public static <TLeft, TRight, TKey> View<TLeft>
+            semiJoin(Iterable<TLeft> left, Iterable<TRight> right,
+                     Func1<? super TLeft, ? extends TKey> leftKey, Func1<? super TRight, ? extends TKey> rightKey,
+                     double fpp) {
+        return join(left, right, leftKey, rightKey, false, checkFpp(fpp));
+    }
+
+    /** the elements of <tt>left</tt> whose key matches that of no element of <tt>right</tt> */
+    public static <TLeft, TRight, TKey> View<TLeft>
+            antiJoin(Iterable<TLeft> left, Iterable<TRight> right,
+                     Func1<? super TLeft, ? extends TKey> leftKey, Func1<? super TRight, ? extends TKey> rightKey) {
+        return join(left, right, leftKey, rightKey, true, Double.NaN);
+    }
+
+    /** an anti-join with a Bloom filter pre-check, as for {@link #semiJoin(Iterable, Iterable, Func1, Func1, double)} */
+    public static <TLeft, TRight, TKey> View<TLeft>
+            antiJoin(Iterable<TLeft> left, Iterable<TRight> right,
+                     Func1<? super TLeft, ? extends TKey> leftKey, Func1<? super TRight, ? extends TKey> rightKey,
+                     double fpp) {
+        return join(left, right, leftKey, rightKey, true, checkFpp(fpp));
+    }
+
+    private static <TLeft, TRight> View<TLeft> join(Iterable<TLeft> left, Iterable<TRight> right,
+                                                    Func1<? super TLeft, ?> leftKey, Func1<? super TRight, ?> rightKey,
+                                                    boolean anti, double fpp) {
+        if (leftKey == null || rightKey == null)
+            throw new IllegalArgumentException("key functions cannot be null");
+        View<TLeft> v = new Joins.JoinView<TLeft, TRight>(left, right, leftKey, rightKey, anti, false, fpp);
+        return Instrumentation.ENABLED ? Instrumentation.stage(anti ? "antiJoin" : "semiJoin", v) : v;
+    }
+
+    private static double checkFpp(double fpp) {
+        if (!(fpp > 0 && fpp < 1))
+            throw new IllegalArgumentException("fpp must be between 0 and 1");
+        return fpp;
+    }
 	
 	public static <T> void foreach(Iterable<T> src, VFunc1<T> func) {
 	    for (T elem : src) func.call(elem);
@@ -203,9 +611,177 @@ public class Views {
 	
 	public static <TDest, TSource> View<TDest>
 			map(Iterable<TSource> source, Func1<TSource, TDest> mapFunc) {
-		return new Transform<TSource, TDest>(source, mapFunc);
+		View<TDest> v = new Transform<TSource, TDest>(source, mapFunc);
+		return Instrumentation.ENABLED ? Instrumentation.stage("map", v) : v;
 	}
 
+    /**
+     * Like {@link #map}, but runs <tt>mapFunc</tt> on worker threads with up
+     * to <tt>maxConcurrency</tt> calls in flight, keeping source order (see
+     * {@link AsyncTransform}).
+     */
+    public static <TDest, TSource> View<TDest>
+            mapAsync(Iterable<TSource> source, Func1<TSource, TDest> mapFunc, int maxConcurrency) {
+        return new AsyncTransform<TSource, TDest>(source, mapFunc, maxConcurrency, true);
+    }
+
+    /** {@link #mapAsync}, with results in completion order */
+    public static <TDest, TSource> View<TDest>
+            mapAsyncUnordered(Iterable<TSource> source, Func1<TSource, TDest> mapFunc, int maxConcurrency) {
+        return new AsyncTransform<TSource, TDest>(source, mapFunc, maxConcurrency, false);
+    }
+
+    /**
+     * Maps the source <tt>batchSize</tt> elements at a time with a single
+     * call to <tt>mapFunc</tt> per batch, flattening the results (see
+     * {@link BatchTransform}).
+     */
+    public static <TDest, TSource> View<TDest>
+            mapBatch(Iterable<TSource> source, int batchSize, Func1<List<TSource>, List<TDest>> mapFunc) {
+        return new BatchTransform<TSource, TDest>(source, batchSize, mapFunc);
+    }
+
+    /**
+     * {@link #mapBatch}, also flushing a partial batch once its first
+     * element has waited <tt>maxLatency</tt>
+     */
+    public static <TDest, TSource> View<TDest>
+            mapBatch(Iterable<TSource> source, int batchSize, long maxLatency, TimeUnit unit,
+                     Func1<List<TSource>, List<TDest>> mapFunc) {
+        return new BatchTransform<TSource, TDest>(source, batchSize, maxLatency, unit, mapFunc);
+    }
+
+    /**
+     * Iterates <tt>source</tt> on a background thread, up to
+     * <tt>capacity</tt> elements ahead of the consumer (see {@link Prefetch}).
+     * <tt>capacity</tt> is held to exactly, and can be at most 2^30.
+     */
+    public static <T> View<T> prefetch(Iterable<T> source, int capacity) {
+        return new Prefetch<T>(source, capacity, false);
+    }
+
+    /** {@link #prefetch}, on a virtual thread if <tt>virtualThread</tt> and the JDK has them */
+    public static <T> View<T> prefetch(Iterable<T> source, int capacity, boolean virtualThread) {
+        return new Prefetch<T>(source, capacity, virtualThread);
+    }
+
+    /**
+     * <tt>source</tt> as a <tt>Flow.Publisher</tt> pulling elements on
+     * <tt>executor</tt> strictly on demand (see {@link ViewPublisher}).
+     */
+    public static <T> Flow.Publisher<T> toPublisher(Iterable<T> source, Executor executor) {
+        return new ViewPublisher<T>(source, executor);
+    }
+
+    /**
+     * A blocking view of <tt>publisher</tt> holding at most
+     * <tt>bufferSize</tt> unconsumed elements (see {@link PublisherView}).
+     */
+    public static <T> View<T> fromPublisher(Flow.Publisher<T> publisher, int bufferSize) {
+        return new PublisherView<T>(publisher, bufferSize);
+    }
+
+    /**
+     * A view that records <tt>source</tt>'s elements as they are first
+     * pulled and replays them to later iterators, within the default
+     * {@link ViewCache}'s memory budget.
+     */
+    public static <T> View<T> cache(Iterable<T> source) {
+        return ViewCache.defaultCache().cache(source);
+    }
+
+    public static <T> View<T> cache(Iterable<T> source, ViewCache cache) {
+        return cache.cache(source);
+    }
+
+    /**
+     * <tt>func</tt> with its results cached for up to <tt>maxEntries</tt>
+     * distinct arguments (see {@link Memoizer}).  Safe to share between
+     * threads.
+     */
+    public static <T, R> Memoizer<T, R> memoize(Func1<T, R> func, long maxEntries) {
+        return new Memoizer<T, R>(func, maxEntries);
+    }
+
+    /** as {@link #memoize(Func1, long)}, bounded by total weight rather than entries */
+    public static <T, R> Memoizer<T, R> memoize(Func1<T, R> func, long maxWeight, Memoizer.Weigher<? super T, ? super R> weigher) {
+        return new Memoizer<T, R>(func, maxWeight, weigher);
+    }
+
+    /**
+     * As {@link #memoize(Func1, long)} for a filter.  Named apart so that
+     * a lambda passed to <tt>memoize</tt> isn't taken for a filter.
+     */
+    public static <T> Memoizer.MemoizedFilter<T> memoizeFilter(Filter<T> filter, long maxEntries) {
+        return new Memoizer.MemoizedFilter<T>(filter, maxEntries);
+    }
+
+    /**
+     * Windows of <tt>size</tt> elements, moving <tt>step</tt> at a time;
+     * only full windows are produced, each as an unmodifiable list of its
+     * own.
+     */
+    public static <T> View<List<T>> sliding(Iterable<T> source, int size, int step) {
+        return new Windows.WindowView<T, List<T>>(source, size, step, false, null, false);
+    }
+
+    /** consecutive, non-overlapping windows; the last may be partial */
+    public static <T> View<List<T>> tumbling(Iterable<T> source, int size) {
+        return new Windows.WindowView<T, List<T>>(source, size, size, true, null, false);
+    }
+
+    /**
+     * {@link #sliding(Iterable, int, int)} without the copying: every
+     * window is the same list, a view of the ring buffer valid only until
+     * the iterator moves on (see {@link Windows}).  Not for collecting the
+     * windows - <tt>asList</tt>, <tt>cache</tt> or <tt>groupBy</tt> would
+     * see the last window repeated.
+     */
+    public static <T> View<List<T>> slidingInPlace(Iterable<T> source, int size, int step) {
+        return new Windows.WindowView<T, List<T>>(source, size, step, false, null, true);
+    }
+
+    public static <T> View<List<T>> tumblingInPlace(Iterable<T> source, int size) {
+        return new Windows.WindowView<T, List<T>>(source, size, size, true, null, true);
+    }
+
+    /**
+     * The value of <tt>aggregate</tt> for each sliding window, maintained
+     * incrementally as elements enter and leave it
+     */
+    public static <T, R> View<R> sliding(Iterable<T> source, int size, int step,
+                                         Func0<? extends Windows.WindowAggregate<R, ? super T>> aggregate) {
+        return new Windows.WindowView<T, R>(source, size, step, false, aggregate, false);
+    }
+
+    public static <T, R> View<R> tumbling(Iterable<T> source, int size,
+                                          Func0<? extends Windows.WindowAggregate<R, ? super T>> aggregate) {
+        return new Windows.WindowView<T, R>(source, size, size, true, aggregate, false);
+    }
+
+    /** {@link #sliding(Iterable, int, int, Func0)} for numeric series, unboxed for the primitive views */
+    public static DoubleView slidingDoubles(Iterable<? extends Number> source, int size, int step,
+                                            Func0<? extends Windows.DoubleWindowAggregate> aggregate) {
+        return new Windows.DoubleWindowView(source, size, step, false, aggregate);
+    }
+
+    public static DoubleView tumblingDoubles(Iterable<? extends Number> source, int size,
+                                             Func0<? extends Windows.DoubleWindowAggregate> aggregate) {
+        return new Windows.DoubleWindowView(source, size, size, true, aggregate);
+    }
+
+    public static <TSource> IntView mapToInt(Iterable<TSource> source, ToIntFunc1<TSource> mapFunc) {
+        return new IntTransform<TSource>(source, mapFunc);
+    }
+
+    public static <TSource> LongView mapToLong(Iterable<TSource> source, ToLongFunc1<TSource> mapFunc) {
+        return new LongTransform<TSource>(source, mapFunc);
+    }
+
+    public static <TSource> DoubleView mapToDouble(Iterable<TSource> source, ToDoubleFunc1<TSource> mapFunc) {
+        return new DoubleTransform<TSource>(source, mapFunc);
+    }
+
     public static <TDestKey, TDestVal, TSource> Map<TDestKey, TDestVal>
         asMap(Iterable<TSource> source, ToMapMapper<TSource, TDestKey, TDestVal> mapFunc, MapOrder mapOrder) {
         final Map<TDestKey, TDestVal> map = mapOrder == MapOrder.PRESERVED
@@ -230,6 +806,66 @@ public class Views {
         return asMap(source, MapOrder.UNDEFINED);
     }
 
+    public static <TSource> PrimitiveMaps.LongLongMap
+    asLongLongMap(Iterable<TSource> source, ToLongLongMapper<TSource> mapFunc) {
+        final PrimitiveMaps.LongLongMap map = new PrimitiveMaps.LongLongMap();
+        for (TSource e : source)
+            map.put(mapFunc.key(e), mapFunc.value(e));
+        return map;
+    }
+
+    public static PrimitiveMaps.LongLongMap asLongLongMap(Iterable<Tuples.LongLongTuple2> source) {
+        final PrimitiveMaps.LongLongMap map = new PrimitiveMaps.LongLongMap();
+        for (Tuples.LongLongTuple2 e : source)
+            map.put(e._1, e._2);
+        return map;
+    }
+
+    public static <TSource> PrimitiveMaps.LongDoubleMap
+    asLongDoubleMap(Iterable<TSource> source, ToLongDoubleMapper<TSource> mapFunc) {
+        final PrimitiveMaps.LongDoubleMap map = new PrimitiveMaps.LongDoubleMap();
+        for (TSource e : source)
+            map.put(mapFunc.key(e), mapFunc.value(e));
+        return map;
+    }
+
+    public static PrimitiveMaps.LongDoubleMap asLongDoubleMap(Iterable<Tuples.LongDoubleTuple2> source) {
+        final PrimitiveMaps.LongDoubleMap map = new PrimitiveMaps.LongDoubleMap();
+        for (Tuples.LongDoubleTuple2 e : source)
+            map.put(e._1, e._2);
+        return map;
+    }
+
+    public static <TSource, TKey> PrimitiveMaps.ObjLongMap<TKey>
+    asObjLongMap(Iterable<TSource> source, ToObjLongMapper<TSource, TKey> mapFunc) {
+        final PrimitiveMaps.ObjLongMap<TKey> map = new PrimitiveMaps.ObjLongMap<TKey>();
+        for (TSource e : source)
+            map.put(mapFunc.key(e), mapFunc.value(e));
+        return map;
+    }
+
+    public static <TKey> PrimitiveMaps.ObjLongMap<TKey> asObjLongMap(Iterable<Tuples.ObjLongTuple2<TKey>> source) {
+        final PrimitiveMaps.ObjLongMap<TKey> map = new PrimitiveMaps.ObjLongMap<TKey>();
+        for (Tuples.ObjLongTuple2<TKey> e : source)
+            map.put(e._1, e._2);
+        return map;
+    }
+
+    public static <TSource, TKey> PrimitiveMaps.ObjDoubleMap<TKey>
+    asObjDoubleMap(Iterable<TSource> source, ToObjDoubleMapper<TSource, TKey> mapFunc) {
+        final PrimitiveMaps.ObjDoubleMap<TKey> map = new PrimitiveMaps.ObjDoubleMap<TKey>();
+        for (TSource e : source)
+            map.put(mapFunc.key(e), mapFunc.value(e));
+        return map;
+    }
+
+    public static <TKey> PrimitiveMaps.ObjDoubleMap<TKey> asObjDoubleMap(Iterable<Tuples.ObjDoubleTuple2<TKey>> source) {
+        final PrimitiveMaps.ObjDoubleMap<TKey> map = new PrimitiveMaps.ObjDoubleMap<TKey>();
+        for (Tuples.ObjDoubleTuple2<TKey> e : source)
+            map.put(e._1, e._2);
+        return map;
+    }
+
     public enum MapOrder {
         PRESERVED,
         UNDEFINED
@@ -260,7 +896,8 @@ public class Views {
     }
 
 	public static <T> View<T> concatenate(Iterable<T> first, Iterable<T> next) {
-	    return new Concatenation<T>(first, next);
+	    View<T> v = new Concatenation<T>(first, next);
+	    return Instrumentation.ENABLED ? Instrumentation.stage("concatenate", v) : v;
 	}
 	
 	public static <T> View<String>
@@ -272,21 +909,164 @@ public class Views {
 
 	public static <T> String
 			toString(Iterable<T> itr, String start, String sep, String end) {
-		return aggregate(itr, new StringMaker<T>(start, sep, end));
+		try {
+			return appendTo(new StringBuilder(), itr, start, sep, end).toString();
+		} catch (IOException e) {
+			throw new AssertionError(e); //StringBuilder doesn't throw
+		}
 	}
 	
 	public static <T> String
 	        toString(Iterable<T> itr) {
-	    return aggregate(itr, new StringMaker<T>("[", ",", "]"));
+	    return toString(itr, "[", ",", "]");
 	}
 	
 	public static <T> String stringFormat(Iterable<T> itr, String fmt, String elemFmt) {
-	    return aggregate(itr, new FormattedStringMaker<T>(fmt, elemFmt));
+		try {
+			return stringFormat(new StringBuilder(), itr, fmt, elemFmt).toString();
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
 	}
 	
 	public static <T> String delimit(Iterable<T> itr, String delimiter) {
 		return toString(itr, "", delimiter, "");
 	}
+
+	/*
+	 * Streaming forms of the above: elements are written to <tt>out</tt> as
+	 * they are iterated, so nothing the size of the whole result is built.
+	 * Elements of the primitive views are written without being boxed, and
+	 * CharSequence elements (e.g. tokenizer slices) without being copied
+	 * into Strings first, where <tt>out</tt> allows it.
+	 */
+
+	public static <T, A extends Appendable> A
+			appendTo(A out, Iterable<T> itr, String start, String sep, String end) throws IOException {
+		out.append(start);
+		appendElements(out, itr, sep);
+		out.append(end);
+		return out;
+	}
+
+	public static <T, A extends Appendable> A appendTo(A out, Iterable<T> itr) throws IOException {
+		return appendTo(out, itr, "[", ",", "]");
+	}
+
+	public static <T, A extends Appendable> A delimit(A out, Iterable<T> itr, String delimiter) throws IOException {
+		return appendTo(out, itr, "", delimiter, "");
+	}
+
+	/**
+	 * Writes <tt>String.format(fmt, body)</tt> to <tt>out</tt>, where
+	 * <tt>body</tt> is the concatenation of <tt>String.format(elemFmt, e)</tt>
+	 * for every element.  Both formats are parsed once (see
+	 * {@link FormatTemplate}); when <tt>fmt</tt> holds a single plain
+	 * <tt>%s</tt> the body is streamed into place rather than built first.
+	 */
+	public static <T, A extends Appendable> A
+			stringFormat(A out, Iterable<T> itr, String fmt, String elemFmt) throws IOException {
+		FormatTemplate outer = FormatTemplate.compile(fmt);
+		FormatTemplate elem = FormatTemplate.compile(elemFmt);
+		//direct element formats can't fail, so an unused body needn't be rendered -
+		//but the source is still read, for whatever its stages do
+		if (outer.ignoresArgument() && elem.isDirect()) {
+			Iterator<T> i = itr.iterator();
+			try {
+				while (i.hasNext())
+					i.next();
+			} finally {
+				close(i);
+			}
+			return outer.format(out, "");
+		}
+		if (outer.canWrap()) {
+			outer.appendPrefix(out);
+			formatElements(out, itr, elem);
+			return outer.appendSuffix(out);
+		}
+		return outer.format(out, formatElements(new StringBuilder(), itr, elem));
+	}
+
+	private static void appendElements(Appendable out, Iterable<?> itr, String sep) throws IOException {
+		boolean first = true;
+		if (itr instanceof IntView || itr instanceof LongView || itr instanceof DoubleView) {
+			char[] digits = new char[20];
+			Iterator<?> i = itr.iterator();
+			while (i.hasNext()) {
+				if (!first) out.append(sep);
+				else first = false;
+				if (i instanceof PrimitiveIterator.OfInt)
+					appendLong(out, ((PrimitiveIterator.OfInt) i).nextInt(), digits);
+				else if (i instanceof PrimitiveIterator.OfLong)
+					appendLong(out, ((PrimitiveIterator.OfLong) i).nextLong(), digits);
+				else
+					appendDouble(out, ((PrimitiveIterator.OfDouble) i).nextDouble());
+			}
+			return;
+		}
+		for (Object next : itr) {
+			if (!first) out.append(sep);
+			else first = false;
+			if (next instanceof CharSequence)
+				out.append((CharSequence) next);
+			else
+				out.append(String.valueOf(next));
+		}
+	}
+
+	private static <A extends Appendable> A
+			formatElements(A out, Iterable<?> itr, FormatTemplate elem) throws IOException {
+		if (itr instanceof IntView || itr instanceof LongView || itr instanceof DoubleView) {
+			//each value is rendered into the same scratch buffer
+			StringBuilder scratch = new StringBuilder(24);
+			Iterator<?> i = itr.iterator();
+			while (i.hasNext()) {
+				scratch.setLength(0);
+				if (i instanceof PrimitiveIterator.OfInt)
+					scratch.append(((PrimitiveIterator.OfInt) i).nextInt());
+				else if (i instanceof PrimitiveIterator.OfLong)
+					scratch.append(((PrimitiveIterator.OfLong) i).nextLong());
+				else
+					scratch.append(((PrimitiveIterator.OfDouble) i).nextDouble());
+				elem.format(out, scratch);
+			}
+			return out;
+		}
+		for (Object next : itr)
+			elem.format(out, next instanceof CharSequence ? (CharSequence) next : String.valueOf(next));
+		return out;
+	}
+
+	/** writes the decimal digits of <tt>v</tt>, using <tt>buf</tt> as scratch space */
+	private static void appendLong(Appendable out, long v, char[] buf) throws IOException {
+		if (out instanceof StringBuilder) {
+			((StringBuilder) out).append(v);
+			return;
+		}
+		int pos = buf.length;
+		//work with the negative value so Long.MIN_VALUE needs no special case
+		long n = v < 0 ? v : -v;
+		do {
+			buf[--pos] = (char) ('0' - (n % 10));
+			n /= 10;
+		} while (n != 0);
+		if (v < 0)
+			buf[--pos] = '-';
+		if (out instanceof Writer) {
+			((Writer) out).write(buf, pos, buf.length - pos);
+		} else {
+			for (; pos < buf.length; pos++)
+				out.append(buf[pos]);
+		}
+	}
+
+	private static void appendDouble(Appendable out, double v) throws IOException {
+		if (out instanceof StringBuilder)
+			((StringBuilder) out).append(v);
+		else
+			out.append(Double.toString(v)); //no char[] form of the shortest-repr algorithm
+	}
     
     public static <T> List<T> asList(Iterable<T> itr) {
     	return new ListBuilder<T>(itr).list();
@@ -301,10 +1081,40 @@ public class Views {
         return (T[]) Views.asList(itr).toArray();
     }
     
+    /**
+     * Copies <tt>itr</tt> into a new array of <tt>elemType</tt>.  When the
+     * size of <tt>itr</tt> is known up front the result is allocated once
+     * and filled directly; otherwise the elements are collected first and
+     * copied once into an exactly-sized array.
+     */
     @SuppressWarnings("unchecked")
 	public static <T> T[] toArray(Class<T> elemType, Iterable<T> itr) {
-    	return (T[]) Views.asList(itr).toArray(
-    	        (T[])Array.newInstance(elemType, 0));
+        int size = sizeIfKnown(itr);
+        if (size < 0)
+            return Views.asList(itr).toArray((T[]) Array.newInstance(elemType, 0));
+        if (itr instanceof Collection)
+            return ((Collection<T>) itr).toArray((T[]) Array.newInstance(elemType, size));
+
+        T[] ret = (T[]) Array.newInstance(elemType, size);
+        int i = 0;
+        for (T e : itr) {
+            if (i == ret.length)
+                ret = Arrays.copyOf(ret, Math.max(8, i << 1));
+            ret[i++] = e;
+        }
+        return i == ret.length ? ret : Arrays.copyOf(ret, i);
+    }
+
+    /**
+     * The number of elements in <tt>itr</tt> if it can be had without
+     * iterating, else -1.
+     */
+    static int sizeIfKnown(Iterable<?> itr) {
+        if (itr instanceof Collection)
+            return ((Collection<?>) itr).size();
+        if (itr instanceof View)
+            return ((View<?>) itr).knownSize();
+        return -1;
     }
 
     /**
@@ -313,42 +1123,126 @@ public class Views {
      */
     @Deprecated
     public static <T> int length(Iterable<T> itr) {
-        return Views.aggregate(itr, new Aggregate<Integer, T>() {
-            int cnt = 0;
-
-            /** @param arg deliberately not used  */
-            @Override
-            public void call(T arg) {
-                ++cnt;
-            }
-
-            @Override
-            public Integer value() {
-                return cnt;
-            }
-        });
+        int cnt = 0;
+        for (Iterator<T> i = itr.iterator(); i.hasNext(); i.next())
+            ++cnt;
+        return cnt;
     }
 
     /**
      * Replacement for <tt>length</tt> call.  Want to rename the
      * call - the word <tt>count</tt> is a better representation
      * of the meaning of the call.
+     *
+     * Mapping doesn't change the number of elements, so maps are skipped
+     * and their functions not called; a source of known size isn't
+     * iterated at all.
      */
     public static <T> int count(Iterable<T> itr) {
-        return length(itr);
+        Iterable<?> src = itr;
+        int limit = Integer.MAX_VALUE;
+        //nor does sorting, so sorts are skipped too
+        while (true) {
+            src = unwrap(src);
+            if (src instanceof Transform) {
+                src = ((Transform<?, ?>) src).source;
+            } else if (src instanceof SortedView) {
+                SortedView<?> sv = (SortedView<?>) src;
+                if (sv.limit >= 0)
+                    limit = Math.min(limit, sv.limit);
+                src = sv.source;
+            } else if (src instanceof SourceSet) {
+                src = ((SourceSet<?>) src).source;
+            } else {
+                break;
+            }
+        }
+        int size = sizeIfKnown(src);
+        if (size < 0) {
+            @SuppressWarnings("unchecked")
+            Iterable<Object> any = (Iterable<Object>) src;
+            size = length(limit == Integer.MAX_VALUE ? any : new Limit<Object>(any, limit));
+        }
+        return Math.min(size, limit);
     }
-    
+
+    /**
+     * The number of elements of <tt>itr</tt> for which <tt>pred</tt> holds:
+     * <tt>filter(itr, pred).count()</tt> without the view, and for lists
+     * and arrays without an iterator either.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> int count(Iterable<T> itr, BooleanPredicate<? super T> pred) {
+        Iterable<T> src = (Iterable<T>) unwrap(itr);
+        int n = 0;
+        if (src instanceof List && src instanceof RandomAccess) {
+            List<T> l = (List<T>) src;
+            for (int i = 0, size = l.size(); i < size; i++)
+                if (pred.test(l.get(i)))
+                    n++;
+        } else if (src instanceof ArrayView) {
+            for (T e : ((ArrayView<T>) src).arr)
+                if (pred.test(e))
+                    n++;
+        } else {
+            for (T e : src)
+                if (pred.test(e))
+                    n++;
+        }
+        return n;
+    }
+
+    /**
+     * Lists and arrays are indexed directly, and so are the results of
+     * <tt>first</tt>, <tt>from</tt> and <tt>orderBy</tt> over them; a map
+     * is applied to the one element fetched from its source.
+     */
+    @SuppressWarnings("unchecked")
     public static <T> T get(Iterable<T> itr, int index) {
-        Iterator<T> i = itr.iterator();
-        int idx = 0;
-        while (true) {
-           if (! i.hasNext()) 
-               break;
-            if (idx == index)
-                return i.next();
-            idx++; i.next();
+        Iterable<T> src = (Iterable<T>) unwrap(itr);
+        if (src instanceof List && src instanceof RandomAccess) {
+            List<T> l = (List<T>) src;
+            if (index < 0 || index >= l.size())
+                throw new IndexOutOfBoundsException(String.valueOf(l.size()));
+            return l.get(index);
+        }
+        if (src instanceof ArrayView) {
+            T[] arr = ((ArrayView<T>) src).arr;
+            if (index < 0 || index >= arr.length)
+                throw new IndexOutOfBoundsException(String.valueOf(arr.length));
+            return arr[index];
+        }
+        if (src instanceof SortedView)
+            return get(((SortedView<T>) src).sorted(), index);
+        if (src instanceof Transform)
+            return getMapped((Transform<?, T>) src, index);
+        if (src instanceof Limit && index >= 0 && index < ((Limit<T>) src).limit)
+            return get(((Limit<T>) src).source, index);
+        if (src instanceof TailLimit) {
+            TailLimit<T> t = (TailLimit<T>) src;
+            int size = t.knownSize();
+            if (index >= 0 && index < size)
+                return get(t.source, index + t.limit);
+        }
+
+        Iterator<T> i = src.iterator();
+        try {
+            int idx = 0;
+            while (true) {
+                if (!i.hasNext())
+                    break;
+                if (idx == index)
+                    return i.next();
+                idx++; i.next();
+            }
+            throw new IndexOutOfBoundsException(String.valueOf(idx));
+        } finally {
+            close(i);
         }
-        throw new IndexOutOfBoundsException(String.valueOf(idx));
+    }
+
+    private static <TSource, TDest> TDest getMapped(Transform<TSource, TDest> t, int index) {
+        return t.mapFunc.call(get(t.source, index));
     }
     
     public static <T, TOrder extends Comparable<TOrder>> View<T>
@@ -362,9 +1256,8 @@ public class Views {
 			}
     	};
     	
-    	List<T> sortList = asList(itr);
-    	Collections.sort(sortList, comp);
-    	return new Passthrough<T>(sortList);
+    	View<T> v = new SortedView<T>(itr, comp, -1);
+    	return Instrumentation.ENABLED ? Instrumentation.stage("orderBy", v) : v;
     }
     
     public static <T extends Comparable<T>> OrderableView<T> naturalOrder(final Iterable<T> in) {
@@ -421,10 +1314,112 @@ public class Views {
 		for (TElem t : src) func.call(t);
 		return func.value();
 	}
-	
-	public static <T> boolean isEmpty(Iterable<T> ibl) {
-        return ibl == null || !ibl.iterator().hasNext();
-    }
+
+	/** aggregates <tt>src</tt> into a fresh aggregate from <tt>identity</tt> */
+	public static <TAgg, TElem> TAgg
+			aggregate(Iterable<TElem> src, Func0<? extends CombinableAggregate<TAgg, TElem>> identity) {
+		return aggregate(src, identity.call());
+	}
+
+	/**
+	 * Aggregates parts of <tt>src</tt> on up to <tt>parallelism</tt>
+	 * threads and merges the results in order.  Sources are split if they
+	 * are {@link Splittable} or random-access lists (seen through
+	 * <tt>viewOf</tt>), or maps and filters of those, which then run on
+	 * each part; anything else is aggregated on the calling thread.  The
+	 * parts are fork/join tasks, run in the caller's pool if it is a
+	 * fork/join worker and otherwise the common pool.
+	 */
+	public static <TAgg, TElem> TAgg
+			aggregate(Iterable<TElem> src, Func0<? extends CombinableAggregate<TAgg, TElem>> identity, int parallelism) {
+		return Aggregates.aggregate(src, identity, parallelism);
+	}
+
+	/** <tt>src</tt> cut into about <tt>parts</tt> ranges if it can be, else just <tt>src</tt> */
+	@SuppressWarnings("unchecked")
+	static <T> List<? extends Iterable<T>> split(Iterable<T> src, int parts) {
+	    List<? extends Iterable<?>> ranges = parts < 2 ? null : splitRanges(src, parts);
+	    if (ranges == null)
+	        return Collections.singletonList(src);
+	    return (List<? extends Iterable<T>>) ranges;
+	}
+
+	/**
+	 * Maps and filters (without a shunt) are split by splitting their
+	 * sources and re-applying them to each range; null if <tt>src</tt>
+	 * can't be split.
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<Iterable<?>> splitRanges(Iterable<?> src, int parts) {
+	    Iterable<?> s = unwrap(src);
+	    if (s != null && s.getClass() == Transform.class) {
+	        Transform<Object, Object> t = (Transform<Object, Object>) s;
+	        List<Iterable<?>> ranges = splitRanges(t.source, parts);
+	        if (ranges != null)
+	            for (int i = 0; i < ranges.size(); i++)
+	                ranges.set(i, new Transform<Object, Object>((Iterable<Object>) ranges.get(i), t.mapFunc));
+	        return ranges;
+	    }
+	    if (s != null && s.getClass() == FilteredView.class && ((FilteredView<?>) s).shunt == null) {
+	        FilteredView<Object> f = (FilteredView<Object>) s;
+	        List<Iterable<?>> ranges = splitRanges(f.source, parts);
+	        if (ranges != null)
+	            for (int i = 0; i < ranges.size(); i++)
+	                ranges.set(i, new FilteredView<Object>((Iterable<Object>) ranges.get(i), f.condition, null));
+	        return ranges;
+	    }
+	    if (s instanceof Splittable) {
+	        List<? extends Iterable<?>> split = ((Splittable<?>) s).split(parts);
+	        return split.size() < 2 ? null : new ArrayList<Iterable<?>>(split);
+	    }
+	    List<?> list = null;
+	    if (s instanceof List && s instanceof RandomAccess)
+	        list = (List<?>) s;
+	    else if (s instanceof ArrayView)
+	        list = Arrays.asList(((ArrayView<?>) s).arr);
+	    if (list == null || list.size() < 2)
+	        return null;
+	    int n = Math.min(parts, list.size());
+	    List<Iterable<?>> ranges = new ArrayList<Iterable<?>>(n);
+	    for (int i = 0; i < n; i++)
+	        ranges.add(list.subList((int) ((long) list.size() * i / n), (int) ((long) list.size() * (i + 1) / n)));
+	    return ranges;
+	}
+	
+	/**
+	 * Collections and views of known size aren't iterated; maps, sorts
+	 * and uniques are empty exactly when their sources are, so those are
+	 * asked instead.
+	 */
+	public static <T> boolean isEmpty(Iterable<T> ibl) {
+	    Iterable<?> src = ibl;
+	    while (true) {
+	        src = unwrap(src);
+	        if (src == null)
+	            return true;
+	        if (src instanceof Collection)
+	            return ((Collection<?>) src).isEmpty();
+	        if (src instanceof Transform)
+	            src = ((Transform<?, ?>) src).source;
+	        else if (src instanceof SortedView && ((SortedView<?>) src).limit != 0)
+	            src = ((SortedView<?>) src).source;
+	        else if (src instanceof UniqueView && ((UniqueView<?>) src).limit != 0)
+	            src = ((UniqueView<?>) src).source;
+	        else if (src instanceof Limit && ((Limit<?>) src).limit != 0)
+	            src = ((Limit<?>) src).source;
+	        else if (src instanceof SourceSet)
+	            src = ((SourceSet<?>) src).source;
+	        else
+	            break;
+	    }
+	    int size = sizeIfKnown(src);
+	    if (size >= 0)
+	        return size == 0;
+	    Iterator<?> itr = src.iterator();
+	    boolean empty = !itr.hasNext();
+	    close(itr);
+	    return empty;
+    }
 
 	/** 
 	 * base View class - returned from transform operations and contains
@@ -440,6 +1435,14 @@ public class Views {
         private List<Class<?>> getGenericTypes() {
             return GenericReflectionUtils.getTypeArguments(View.class, getClass());
         }
+
+        /**
+         * Number of elements, if this view knows it without iterating, else
+         * -1.  Views that wrap a source of known size override this.
+         */
+        protected int knownSize() {
+            return -1;
+        }
         
         public void foreach(VFunc1<T> func) {
             Views.foreach(this, func);
@@ -452,12 +1455,81 @@ public class Views {
         public <TDest> View<TDest> map(Mapper<T, TDest> transformer) {
             return Views.map(this, transformer);
         }
+
+        public <TDest> View<TDest> mapAsync(Func1<T, TDest> mapFunc, int maxConcurrency) {
+            return Views.mapAsync(this, mapFunc, maxConcurrency);
+        }
+
+        public <TDest> View<TDest> mapAsyncUnordered(Func1<T, TDest> mapFunc, int maxConcurrency) {
+            return Views.mapAsyncUnordered(this, mapFunc, maxConcurrency);
+        }
+
+        public Flow.Publisher<T> toPublisher(Executor executor) {
+            return Views.toPublisher(this, executor);
+        }
+
+        public View<T> cache() {
+            return Views.cache(this);
+        }
+
+        public View<List<T>> sliding(int size, int step) {
+            return Views.sliding(this, size, step);
+        }
+
+        public View<List<T>> tumbling(int size) {
+            return Views.tumbling(this, size);
+        }
+
+        public View<List<T>> slidingInPlace(int size, int step) {
+            return Views.slidingInPlace(this, size, step);
+        }
+
+        public View<List<T>> tumblingInPlace(int size) {
+            return Views.tumblingInPlace(this, size);
+        }
+
+        public <R> View<R> sliding(int size, int step, Func0<? extends Windows.WindowAggregate<R, ? super T>> aggregate) {
+            return Views.sliding(this, size, step, aggregate);
+        }
+
+        public <R> View<R> tumbling(int size, Func0<? extends Windows.WindowAggregate<R, ? super T>> aggregate) {
+            return Views.tumbling(this, size, aggregate);
+        }
+
+        /**
+         * counts the elements this view produces and the time spent
+         * producing them, under <tt>name</tt> (see {@link Instrumentation})
+         */
+        public View<T> instrument(String name) {
+            return Instrumentation.instrument(name, this);
+        }
+
+        public View<T> cache(ViewCache cache) {
+            return Views.cache(this, cache);
+        }
+
+        public View<T> prefetch(int capacity) {
+            return Views.prefetch(this, capacity);
+        }
+
+        public View<T> prefetch(int capacity, boolean virtualThread) {
+            return Views.prefetch(this, capacity, virtualThread);
+        }
+
+        public <TDest> View<TDest> mapBatch(int batchSize, Func1<List<T>, List<TDest>> mapFunc) {
+            return Views.mapBatch(this, batchSize, mapFunc);
+        }
+
+        public <TDest> View<TDest>
+                mapBatch(int batchSize, long maxLatency, TimeUnit unit, Func1<List<T>, List<TDest>> mapFunc) {
+            return Views.mapBatch(this, batchSize, maxLatency, unit, mapFunc);
+        }
         
-        public View<T> filter(Filter<T> filter, VFunc1<T> shunt) {
+        public View<T> filter(BooleanPredicate<? super T> filter, VFunc1<T> shunt) {
             return Views.filter(this, filter, shunt);
         }
         
-        public View<T> filter(Filter<T> filter) {
+        public View<T> filter(BooleanPredicate<? super T> filter) {
         	return Views.filter(this, filter);
         }
         
@@ -485,7 +1557,7 @@ public class Views {
             return Views.contains(this, comp);
         }
 
-        public boolean contains(Predicate<T> pred) {
+        public boolean contains(BooleanPredicate<? super T> pred) {
             return Views.contains(this, pred);
         }
 
@@ -493,6 +1565,10 @@ public class Views {
             return Views.expand(this, size, sub);
         }
 
+        public View<Tuples.ObjLongTuple2<T>> zipWithIndex() {
+            return Tuples.zipWithIndex(this);
+        }
+
         /**
          * Use <tt>count</tt> instead
          * @return
@@ -506,6 +1582,10 @@ public class Views {
             return Views.count(this);
         }
 
+        public int count(BooleanPredicate<? super T> pred) {
+            return Views.count(this, pred);
+        }
+
         public boolean isEmpty() {
             return Views.isEmpty(this);
         }
@@ -517,6 +1597,34 @@ public class Views {
         public View<T> union(Iterable<T> next) {
             return Views.union(this, next);
         }
+
+        public View<T> intersect(Iterable<? extends T> right) {
+            return Views.intersect(this, right);
+        }
+
+        public View<T> except(Iterable<?> right) {
+            return Views.except(this, right);
+        }
+
+        public <TRight, TKey> View<T> semiJoin(Iterable<TRight> right, Func1<? super T, ? extends TKey> leftKey,
+                                               Func1<? super TRight, ? extends TKey> rightKey) {
+            return Views.semiJoin(this, right, leftKey, rightKey);
+        }
+
+        public <TRight, TKey> View<T> semiJoin(Iterable<TRight> right, Func1<? super T, ? extends TKey> leftKey,
+                                               Func1<? super TRight, ? extends TKey> rightKey, double fpp) {
+            return Views.semiJoin(this, right, leftKey, rightKey, fpp);
+        }
+
+        public <TRight, TKey> View<T> antiJoin(Iterable<TRight> right, Func1<? super T, ? extends TKey> leftKey,
+                                               Func1<? super TRight, ? extends TKey> rightKey) {
+            return Views.antiJoin(this, right, leftKey, rightKey);
+        }
+
+        public <TRight, TKey> View<T> antiJoin(Iterable<TRight> right, Func1<? super T, ? extends TKey> leftKey,
+                                               Func1<? super TRight, ? extends TKey> rightKey, double fpp) {
+            return Views.antiJoin(this, right, leftKey, rightKey, fpp);
+        }
         
         public View<T> concatenate(Iterable<T> next) {
             return Views.concatenate(this, next);
@@ -525,65 +1633,534 @@ public class Views {
         public T aggregate(Func2<T, T, T> func) {
         	return Views.aggregate(this, func);
         }
-        
-        public <TAgg> TAgg aggregate(TAgg initial, Func2<TAgg, T, TAgg> func) {
-        	return Views.aggregate(this, initial, func);
+        
+        public <TAgg> TAgg aggregate(TAgg initial, Func2<TAgg, T, TAgg> func) {
+        	return Views.aggregate(this, initial, func);
+        }
+
+        public <TAgg> TAgg aggregate(Func0<? extends CombinableAggregate<TAgg, T>> identity) {
+            return Views.aggregate(this, identity);
+        }
+
+        public <TAgg> TAgg aggregate(Func0<? extends CombinableAggregate<TAgg, T>> identity, int parallelism) {
+            return Views.aggregate(this, identity, parallelism);
+        }
+
+        public List<T> asList() {
+        	return Views.asList(this);
+        }
+        
+        public Set<T> asSet() {
+            return Views.asSet(this);
+        }
+        
+        /**
+         * Copies the view into an array of its element type.  The element
+         * type comes from the view class's type argument (resolved once per
+         * class), so it must be a concrete class - for views whose element
+         * type is still a type variable use {@link Views#toArray(Class, Iterable)}.
+         */
+        @SuppressWarnings("unchecked")
+        public T[] asArray() {
+            Class<T> elemType = (Class<T>) getGenericTypes().get(0);
+            if (elemType == null)
+                throw new IllegalStateException("element type of " + getClass().getName()
+                        + " can't be resolved; use Views.toArray(Class, Iterable)");
+        	return Views.toArray(elemType, this);
+        }
+        
+        public <TDestKey, TDestVal> Map<TDestKey, TDestVal>
+        asMap(ToMapMapper<T, TDestKey, TDestVal> mapFunc) {
+            return Views.asMap(this, mapFunc);
+        }
+
+        public <TOrder extends Comparable<TOrder>> View<T> orderBy(Func1<T, TOrder> func) {
+        	return Views.orderBy(this, func);
+        }
+
+        public View<String> toStrings() {
+        	return Views.toStrings(this);
+        }
+        
+        public String toString(String start, String sep, String end) {
+        	return Views.toString(this, start, sep, end);
+        }
+        
+        @Override
+        public String toString() {
+            return Views.toString(this);
+        }
+        
+        public String stringFormat(String fmt, String elemFmt) {
+            return Views.stringFormat(this, fmt, elemFmt);
+        }
+        
+        public String delimit(String delimiter) {
+        	return Views.delimit(this, delimiter);
+        }
+
+        public <A extends Appendable> A appendTo(A out) throws IOException {
+            return Views.appendTo(out, this);
+        }
+
+        public <A extends Appendable> A appendTo(A out, String start, String sep, String end) throws IOException {
+            return Views.appendTo(out, this, start, sep, end);
+        }
+
+        public <A extends Appendable> A stringFormat(A out, String fmt, String elemFmt) throws IOException {
+            return Views.stringFormat(out, this, fmt, elemFmt);
+        }
+
+        public <A extends Appendable> A delimit(A out, String delimiter) throws IOException {
+            return Views.delimit(out, this, delimiter);
+        }
+    }
+
+    public static class ArrayView<T> extends View<T> {
+        protected final T[] arr;
+
+        public ArrayView(T[] arr) { this.arr = arr; }
+
+        @Override
+        protected int knownSize() {
+            return arr.length;
+        }
+
+        @Override
+        public T[] asArray() {
+            return arr.clone();
+        }
+
+        @Override public Iterator<T> iterator() {
+            return new ArrayIterator();
+        }
+
+        public class ArrayIterator implements Iterator<T> {
+            private int idx = 0;
+
+            @Override public boolean hasNext() {
+                return idx < arr.length;
+            }
+
+            @Override
+            public T next() {
+                return arr[idx++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+
+    public static class OrderableView<T extends Comparable<T>> extends View<T> {
+        private final Iterable<T> source;
+        
+        public OrderableView(Iterable<T> source) {
+            this.source = source;
+        }
+        
+        @Override
+        public Iterator<T> iterator() {
+            return source.iterator();
+        }
+
+        public OrderableView<T> naturalOrder() {
+            return Views.naturalOrder(this);
+        }
+        
+        public T max() {
+            return Views.max(this);
+        }
+        
+        public T min() {
+            return Views.min(this);
+        }
+    }
+
+    /**
+     * Views over primitive values.  These are still <tt>View</tt>s of the
+     * boxed type, so they chain with every other view operation, but their
+     * iterators are <tt>PrimitiveIterator</tt>s: callers that know they have
+     * a primitive view can pull unboxed values with <tt>nextInt</tt>,
+     * <tt>nextLong</tt> or <tt>nextDouble</tt>.
+     */
+    public static abstract class IntView extends View<Integer> {
+        @Override
+        public abstract PrimitiveIterator.OfInt iterator();
+
+        public DoubleView slidingDoubles(int size, int step, Func0<? extends Windows.DoubleWindowAggregate> aggregate) {
+            return Views.slidingDoubles(this, size, step, aggregate);
+        }
+
+        public DoubleView tumblingDoubles(int size, Func0<? extends Windows.DoubleWindowAggregate> aggregate) {
+            return Views.tumblingDoubles(this, size, aggregate);
+        }
+
+        public int[] toIntArray() {
+            int[] ret = new int[16];
+            int size = 0;
+            for (PrimitiveIterator.OfInt i = iterator(); i.hasNext(); ) {
+                if (size == ret.length)
+                    ret = Arrays.copyOf(ret, size << 1);
+                ret[size++] = i.nextInt();
+            }
+            return Arrays.copyOf(ret, size);
+        }
+
+        public long sum() {
+            long sum = 0;
+            for (PrimitiveIterator.OfInt i = iterator(); i.hasNext(); )
+                sum += i.nextInt();
+            return sum;
+        }
+
+        /** @throws NoSuchElementException if the view is empty */
+        public int min() {
+            PrimitiveIterator.OfInt i = iterator();
+            int m = i.nextInt();
+            while (i.hasNext())
+                m = Math.min(m, i.nextInt());
+            return m;
+        }
+
+        /** @throws NoSuchElementException if the view is empty */
+        public int max() {
+            PrimitiveIterator.OfInt i = iterator();
+            int m = i.nextInt();
+            while (i.hasNext())
+                m = Math.max(m, i.nextInt());
+            return m;
+        }
+    }
+
+    public static abstract class LongView extends View<Long> {
+        @Override
+        public abstract PrimitiveIterator.OfLong iterator();
+
+        public DoubleView slidingDoubles(int size, int step, Func0<? extends Windows.DoubleWindowAggregate> aggregate) {
+            return Views.slidingDoubles(this, size, step, aggregate);
+        }
+
+        public DoubleView tumblingDoubles(int size, Func0<? extends Windows.DoubleWindowAggregate> aggregate) {
+            return Views.tumblingDoubles(this, size, aggregate);
+        }
+
+        public long[] toLongArray() {
+            long[] ret = new long[16];
+            int size = 0;
+            for (PrimitiveIterator.OfLong i = iterator(); i.hasNext(); ) {
+                if (size == ret.length)
+                    ret = Arrays.copyOf(ret, size << 1);
+                ret[size++] = i.nextLong();
+            }
+            return Arrays.copyOf(ret, size);
+        }
+
+        public long sum() {
+            long sum = 0;
+            for (PrimitiveIterator.OfLong i = iterator(); i.hasNext(); )
+                sum += i.nextLong();
+            return sum;
+        }
+
+        /** @throws NoSuchElementException if the view is empty */
+        public long min() {
+            PrimitiveIterator.OfLong i = iterator();
+            long m = i.nextLong();
+            while (i.hasNext())
+                m = Math.min(m, i.nextLong());
+            return m;
+        }
+
+        /** @throws NoSuchElementException if the view is empty */
+        public long max() {
+            PrimitiveIterator.OfLong i = iterator();
+            long m = i.nextLong();
+            while (i.hasNext())
+                m = Math.max(m, i.nextLong());
+            return m;
+        }
+    }
+
+    public static abstract class DoubleView extends View<Double> {
+        @Override
+        public abstract PrimitiveIterator.OfDouble iterator();
+
+        public DoubleView slidingDoubles(int size, int step, Func0<? extends Windows.DoubleWindowAggregate> aggregate) {
+            return Views.slidingDoubles(this, size, step, aggregate);
+        }
+
+        public DoubleView tumblingDoubles(int size, Func0<? extends Windows.DoubleWindowAggregate> aggregate) {
+            return Views.tumblingDoubles(this, size, aggregate);
+        }
+
+        public double[] toDoubleArray() {
+            double[] ret = new double[16];
+            int size = 0;
+            for (PrimitiveIterator.OfDouble i = iterator(); i.hasNext(); ) {
+                if (size == ret.length)
+                    ret = Arrays.copyOf(ret, size << 1);
+                ret[size++] = i.nextDouble();
+            }
+            return Arrays.copyOf(ret, size);
+        }
+
+        public double sum() {
+            double sum = 0;
+            for (PrimitiveIterator.OfDouble i = iterator(); i.hasNext(); )
+                sum += i.nextDouble();
+            return sum;
+        }
+
+        /** @throws NoSuchElementException if the view is empty */
+        public double min() {
+            PrimitiveIterator.OfDouble i = iterator();
+            double m = i.nextDouble();
+            while (i.hasNext())
+                m = Math.min(m, i.nextDouble());
+            return m;
+        }
+
+        /** @throws NoSuchElementException if the view is empty */
+        public double max() {
+            PrimitiveIterator.OfDouble i = iterator();
+            double m = i.nextDouble();
+            while (i.hasNext())
+                m = Math.max(m, i.nextDouble());
+            return m;
+        }
+    }
+
+    public static class IntArrayView extends IntView {
+        protected final int[] arr;
+
+        public IntArrayView(int[] arr) { this.arr = arr; }
+
+        @Override
+        protected int knownSize() {
+            return arr.length;
+        }
+
+        @Override public PrimitiveIterator.OfInt iterator() {
+            return new IntArrayIterator();
+        }
+
+        @Override
+        public long sum() {
+            return ArrayKernels.sum(arr, 0, arr.length);
+        }
+
+        @Override
+        public int min() {
+            return ArrayKernels.min(arr, 0, arr.length);
+        }
+
+        @Override
+        public int max() {
+            return ArrayKernels.max(arr, 0, arr.length);
+        }
+
+        /** number of elements in <tt>[lo, hi)</tt> */
+        public int countInRange(int lo, int hi) {
+            return ArrayKernels.countInRange(arr, 0, arr.length, lo, hi);
+        }
+
+        /** indexes of the elements in <tt>[lo, hi)</tt>, ascending */
+        public int[] selectRange(int lo, int hi) {
+            int[] sel = new int[arr.length];
+            return Arrays.copyOf(sel, ArrayKernels.selectRange(arr, 0, arr.length, lo, hi, sel));
+        }
+
+        public class IntArrayIterator implements PrimitiveIterator.OfInt {
+            private int idx = 0;
+
+            @Override public boolean hasNext() {
+                return idx < arr.length;
+            }
+
+            @Override
+            public int nextInt() {
+                if (idx >= arr.length)
+                    throw new NoSuchElementException();
+                return arr[idx++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+
+    public static class LongArrayView extends LongView {
+        protected final long[] arr;
+
+        public LongArrayView(long[] arr) { this.arr = arr; }
+
+        @Override
+        protected int knownSize() {
+            return arr.length;
+        }
+
+        @Override public PrimitiveIterator.OfLong iterator() {
+            return new LongArrayIterator();
+        }
+
+        @Override
+        public long sum() {
+            return ArrayKernels.sum(arr, 0, arr.length);
+        }
+
+        @Override
+        public long min() {
+            return ArrayKernels.min(arr, 0, arr.length);
+        }
+
+        @Override
+        public long max() {
+            return ArrayKernels.max(arr, 0, arr.length);
+        }
+
+        /** number of elements in <tt>[lo, hi)</tt> */
+        public int countInRange(long lo, long hi) {
+            return ArrayKernels.countInRange(arr, 0, arr.length, lo, hi);
+        }
+
+        /** indexes of the elements in <tt>[lo, hi)</tt>, ascending */
+        public int[] selectRange(long lo, long hi) {
+            int[] sel = new int[arr.length];
+            return Arrays.copyOf(sel, ArrayKernels.selectRange(arr, 0, arr.length, lo, hi, sel));
+        }
+
+        public class LongArrayIterator implements PrimitiveIterator.OfLong {
+            private int idx = 0;
+
+            @Override public boolean hasNext() {
+                return idx < arr.length;
+            }
+
+            @Override
+            public long nextLong() {
+                if (idx >= arr.length)
+                    throw new NoSuchElementException();
+                return arr[idx++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+
+    public static class DoubleArrayView extends DoubleView {
+        protected final double[] arr;
+
+        public DoubleArrayView(double[] arr) { this.arr = arr; }
+
+        @Override
+        protected int knownSize() {
+            return arr.length;
+        }
+
+        @Override public PrimitiveIterator.OfDouble iterator() {
+            return new DoubleArrayIterator();
         }
 
-        public List<T> asList() {
-        	return Views.asList(this);
+        @Override
+        public double sum() {
+            return ArrayKernels.sum(arr, 0, arr.length);
         }
-        
-        public Set<T> asSet() {
-            return Views.asSet(this);
+
+        @Override
+        public double min() {
+            return ArrayKernels.min(arr, 0, arr.length);
         }
-        
-        @SuppressWarnings("unchecked")
-        public T[] asArray() {
-        	return Views.toArray((Class<T>) getGenericTypes().get(0), this);
+
+        @Override
+        public double max() {
+            return ArrayKernels.max(arr, 0, arr.length);
         }
-        
-        public <TDestKey, TDestVal> Map<TDestKey, TDestVal>
-        asMap(ToMapMapper<T, TDestKey, TDestVal> mapFunc) {
-            return Views.asMap(this, mapFunc);
+
+        /** number of elements in <tt>[lo, hi)</tt> */
+        public int countInRange(double lo, double hi) {
+            return ArrayKernels.countInRange(arr, 0, arr.length, lo, hi);
         }
 
-        public <TOrder extends Comparable<TOrder>> View<T> orderBy(Func1<T, TOrder> func) {
-        	return Views.orderBy(this, func);
+        /** indexes of the elements in <tt>[lo, hi)</tt>, ascending */
+        public int[] selectRange(double lo, double hi) {
+            int[] sel = new int[arr.length];
+            return Arrays.copyOf(sel, ArrayKernels.selectRange(arr, 0, arr.length, lo, hi, sel));
         }
 
-        public View<String> toStrings() {
-        	return Views.toStrings(this);
+        public double dot(DoubleArrayView other) {
+            if (other.arr.length != arr.length)
+                throw new IllegalArgumentException("length mismatch");
+            return ArrayKernels.dot(arr, other.arr, 0, arr.length);
         }
-        
-        public String toString(String start, String sep, String end) {
-        	return Views.toString(this, start, sep, end);
+
+        public class DoubleArrayIterator implements PrimitiveIterator.OfDouble {
+            private int idx = 0;
+
+            @Override public boolean hasNext() {
+                return idx < arr.length;
+            }
+
+            @Override
+            public double nextDouble() {
+                if (idx >= arr.length)
+                    throw new NoSuchElementException();
+                return arr[idx++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
         }
-        
+    }
+
+    /**
+     * View over a <tt>float[]</tt>.  There is no primitive float iterator,
+     * so iterating boxes, but the aggregate operations work on the array.
+     */
+    public static class FloatArrayView extends View<Float> {
+        protected final float[] arr;
+
+        public FloatArrayView(float[] arr) { this.arr = arr; }
+
         @Override
-        public String toString() {
-            return Views.toString(this);
+        protected int knownSize() {
+            return arr.length;
         }
-        
-        public String stringFormat(String fmt, String elemFmt) {
-            return Views.stringFormat(this, fmt, elemFmt);
+
+        public float sum() {
+            return ArrayKernels.sum(arr, 0, arr.length);
         }
-        
-        public String delimit(String delimiter) {
-        	return Views.delimit(this, delimiter);
+
+        /** @throws NoSuchElementException if the view is empty */
+        public float min() {
+            return ArrayKernels.min(arr, 0, arr.length);
         }
-    }
 
-    public static class ArrayView<T> extends View<T> {
-        protected final T[] arr;
+        /** @throws NoSuchElementException if the view is empty */
+        public float max() {
+            return ArrayKernels.max(arr, 0, arr.length);
+        }
 
-        public ArrayView(T[] arr) { this.arr = arr; }
+        public float dot(FloatArrayView other) {
+            if (other.arr.length != arr.length)
+                throw new IllegalArgumentException("length mismatch");
+            return ArrayKernels.dot(arr, other.arr, 0, arr.length);
+        }
 
-        @Override public Iterator<T> iterator() {
-            return new ArrayIterator();
+        @Override public Iterator<Float> iterator() {
+            return new FloatArrayIterator();
         }
 
-        public class ArrayIterator implements Iterator<T> {
+        public class FloatArrayIterator implements Iterator<Float> {
             private int idx = 0;
 
             @Override public boolean hasNext() {
@@ -591,7 +2168,9 @@ public class Views {
             }
 
             @Override
-            public T next() {
+            public Float next() {
+                if (idx >= arr.length)
+                    throw new NoSuchElementException();
                 return arr[idx++];
             }
 
@@ -602,28 +2181,63 @@ public class Views {
         }
     }
 
-    public static class OrderableView<T extends Comparable<T>> extends View<T> {
-        private final Iterable<T> source;
-        
-        public OrderableView(Iterable<T> source) {
+    public static class IntTransform<TSource> extends IntView {
+        protected final Iterable<TSource> source;
+        protected final ToIntFunc1<TSource> mapFunc;
+
+        public IntTransform(Iterable<TSource> source, ToIntFunc1<TSource> mapper) {
             this.source = source;
+            this.mapFunc = mapper;
         }
-        
+
         @Override
-        public Iterator<T> iterator() {
-            return source.iterator();
+        public PrimitiveIterator.OfInt iterator() {
+            final Iterator<TSource> sourceItr = source.iterator();
+            return new PrimitiveIterator.OfInt() {
+                @Override public boolean hasNext() { return sourceItr.hasNext(); }
+                @Override public int nextInt() { return mapFunc.call(sourceItr.next()); }
+                @Override public void remove() { throw new UnsupportedOperationException(); }
+            };
         }
+    }
 
-        public OrderableView<T> naturalOrder() {
-            return Views.naturalOrder(this);
+    public static class LongTransform<TSource> extends LongView {
+        protected final Iterable<TSource> source;
+        protected final ToLongFunc1<TSource> mapFunc;
+
+        public LongTransform(Iterable<TSource> source, ToLongFunc1<TSource> mapper) {
+            this.source = source;
+            this.mapFunc = mapper;
         }
-        
-        public T max() {
-            return Views.max(this);
+
+        @Override
+        public PrimitiveIterator.OfLong iterator() {
+            final Iterator<TSource> sourceItr = source.iterator();
+            return new PrimitiveIterator.OfLong() {
+                @Override public boolean hasNext() { return sourceItr.hasNext(); }
+                @Override public long nextLong() { return mapFunc.call(sourceItr.next()); }
+                @Override public void remove() { throw new UnsupportedOperationException(); }
+            };
         }
-        
-        public T min() {
-            return Views.min(this);
+    }
+
+    public static class DoubleTransform<TSource> extends DoubleView {
+        protected final Iterable<TSource> source;
+        protected final ToDoubleFunc1<TSource> mapFunc;
+
+        public DoubleTransform(Iterable<TSource> source, ToDoubleFunc1<TSource> mapper) {
+            this.source = source;
+            this.mapFunc = mapper;
+        }
+
+        @Override
+        public PrimitiveIterator.OfDouble iterator() {
+            final Iterator<TSource> sourceItr = source.iterator();
+            return new PrimitiveIterator.OfDouble() {
+                @Override public boolean hasNext() { return sourceItr.hasNext(); }
+                @Override public double nextDouble() { return mapFunc.call(sourceItr.next()); }
+                @Override public void remove() { throw new UnsupportedOperationException(); }
+            };
         }
     }
 	
@@ -635,6 +2249,11 @@ public class Views {
 		public Passthrough(Iterable<T> source) {
 			this.source = source;
 		}
+
+		@Override
+		protected int knownSize() {
+			return sizeIfKnown(source);
+		}
 		
 		@Override
 		public Iterator<T> iterator() {
@@ -649,12 +2268,17 @@ public class Views {
             this.source = source;
         }
 
+        @Override
+        protected int knownSize() {
+            return sizeIfKnown(source);
+        }
+
         @Override
         public Iterator<T> iterator() {
             return new ReadOnlyIterator(source.iterator());
         }
 
-        public class ReadOnlyIterator implements Iterator<T> {
+        public class ReadOnlyIterator implements CloseableIterator<T> {
             private final Iterator<T> sourceItr;
 
             private ReadOnlyIterator(Iterator<T> sourceItr) {
@@ -671,6 +2295,11 @@ public class Views {
                 return sourceItr.next();
             }
 
+            @Override
+            public void close() {
+                Views.close(sourceItr);
+            }
+
             @Override
             public void remove() {
                 throw new UnsupportedOperationException();
@@ -705,17 +2334,7 @@ public class Views {
         }
 
         public Set<T> set() {
-            return new AbstractSet<T>() {
-                @Override
-                public Iterator<T> iterator() {
-                    return source.iterator();
-                }
-
-                @Override
-                public int size() {
-                    return Views.length(source);
-                }
-            };
+            return new SourceSet<T>(source);
         }
 
         @Override
@@ -724,6 +2343,36 @@ public class Views {
         }
     }
 
+    /** the set view of <tt>asSet</tt>, which answers through the <tt>Views</tt> fast paths */
+    private static final class SourceSet<T> extends AbstractSet<T> {
+        final Iterable<T> source;
+
+        SourceSet(Iterable<T> source) {
+            this.source = source;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return source.iterator();
+        }
+
+        @Override
+        public int size() {
+            return Views.count(source);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return Views.isEmpty(source);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            return Views.contains(source, (T) o);
+        }
+    }
+
     public static class TailLimit<T> extends View<T> {
         protected final Iterable<T> source;
         protected final int limit;
@@ -736,12 +2385,18 @@ public class Views {
             this.limit = limit;
         }
 
+        @Override
+        protected int knownSize() {
+            int size = sizeIfKnown(source);
+            return size < 0 ? -1 : Math.max(0, size - limit);
+        }
+
         @Override
         public Iterator<T> iterator() {
             return this.new TailLimitIterator();
         }
 
-        public class TailLimitIterator implements Iterator<T> {
+        public class TailLimitIterator implements CloseableIterator<T> {
             private final Iterator<T> sourceItr = source.iterator();
             private TailLimitIterator() {
                 for (int i = 0; i < limit && sourceItr.hasNext(); i++) {
@@ -759,6 +2414,11 @@ public class Views {
                 return sourceItr.next();
             }
 
+            @Override
+            public void close() {
+                Views.close(sourceItr);
+            }
+
             @Override
             public void remove() {
                 throw new UnsupportedOperationException();
@@ -778,18 +2438,34 @@ public class Views {
             this.limit = limit;
         }
 
+        @Override
+        protected int knownSize() {
+            int size = sizeIfKnown(source);
+            return size < 0 ? -1 : Math.min(size, limit);
+        }
+
         @Override
         public Iterator<T> iterator() {
             return this.new LimitIterator();
         }
 
-        public class LimitIterator implements Iterator<T> {
+        public class LimitIterator implements CloseableIterator<T> {
             private final Iterator<T> sourceItr = source.iterator();
             private int pos = 0;
 
             @Override
             public boolean hasNext() {
-                return sourceItr.hasNext() && pos < limit;
+                //check the limit first so the source isn't asked for an element it won't give
+                if (pos >= limit) {
+                    close();
+                    return false;
+                }
+                return sourceItr.hasNext();
+            }
+
+            @Override
+            public void close() {
+                Views.close(sourceItr);
             }
 
             @Override
@@ -826,7 +2502,7 @@ public class Views {
             return this.new ExpandIterator();
         }
         
-        public class ExpandIterator implements Iterator<T> {
+        public class ExpandIterator implements CloseableIterator<T> {
             private final Iterator<T> sourceItr = source.iterator();
             private int pos = 0;
 
@@ -843,6 +2519,11 @@ public class Views {
                 return sub;
             }
 
+            @Override
+            public void close() {
+                Views.close(sourceItr);
+            }
+
             @Override
             public void remove() {
                 throw new UnsupportedOperationException();
@@ -850,11 +2531,112 @@ public class Views {
         }
     }
 	
+    /**
+     * <tt>source</tt> sorted (stably) by <tt>comparator</tt>, or only its
+     * first <tt>limit</tt> elements in that order, found with a bounded
+     * heap rather than a full sort.  Like the other views it is live: each
+     * iterator sorts <tt>source</tt> as it is then.
+     */
+    public static class SortedView<T> extends View<T> {
+        protected final Iterable<T> source;
+        protected final Comparator<? super T> comparator;
+        /** how many of the smallest elements to keep, or -1 for all */
+        protected final int limit;
+
+        public SortedView(Iterable<T> source, Comparator<? super T> comparator, int limit) {
+            this.source = source;
+            this.comparator = comparator;
+            this.limit = limit;
+        }
+
+        @Override
+        protected int knownSize() {
+            int size = sizeIfKnown(source);
+            return size < 0 || limit < 0 ? size : Math.min(size, limit);
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return sorted().iterator();
+        }
+
+        /** the elements sorted now, as a list no one else holds */
+        List<T> sorted() {
+            return Collections.unmodifiableList(limit < 0 ? sortAll() : smallest());
+        }
+
+        private List<T> sortAll() {
+            List<T> l = new ArrayList<T>();
+            Iterator<T> itr = source.iterator();
+            try {
+                while (itr.hasNext())
+                    l.add(itr.next());
+            } finally {
+                Views.close(itr);
+            }
+            Collections.sort(l, comparator);
+            return l;
+        }
+
+        /** the <tt>limit</tt> smallest, ties going to the earliest, as a full stable sort would have it */
+        private List<T> smallest() {
+            final class Ranked {
+                final T e;
+                final long seq;
+
+                Ranked(T e, long seq) {
+                    this.e = e;
+                    this.seq = seq;
+                }
+            }
+            final Comparator<Ranked> order = new Comparator<Ranked>() {
+                @Override
+                public int compare(Ranked a, Ranked b) {
+                    int c = comparator.compare(a.e, b.e);
+                    return c != 0 ? c : Long.compare(a.seq, b.seq);
+                }
+            };
+            List<T> out = new ArrayList<T>();
+            if (limit == 0)
+                return out;
+            //a max-heap of the smallest seen so far; its head is the one to displace
+            PriorityQueue<Ranked> heap = new PriorityQueue<Ranked>(Math.min(limit, 1024) + 1, Collections.reverseOrder(order));
+            long seq = 0;
+            Iterator<T> itr = source.iterator();
+            try {
+                while (itr.hasNext()) {
+                    T e = itr.next();
+                    if (heap.size() < limit)
+                        heap.add(new Ranked(e, seq));
+                    else if (comparator.compare(e, heap.peek().e) < 0) {
+                        heap.poll();
+                        heap.add(new Ranked(e, seq));
+                    }
+                    seq++;
+                }
+            } finally {
+                Views.close(itr);
+            }
+            List<Ranked> ranked = new ArrayList<Ranked>(heap);
+            Collections.sort(ranked, order);
+            for (Ranked r : ranked)
+                out.add(r.e);
+            return out;
+        }
+    }
+
 	public static class UniqueView<T> extends View<T> {
 	    protected final Iterable<T> source;
+	    /** stop after this many distinct elements, or -1 for all of them */
+	    protected final int limit;
 	    
 	    public UniqueView(Iterable<T> source) {
+	        this(source, -1);
+	    }
+
+	    public UniqueView(Iterable<T> source, int limit) {
 	        this.source = source;
+	        this.limit = limit;
 	    }
 	    
         @Override
@@ -862,26 +2644,48 @@ public class Views {
             return this.new UniqueIterator();
         }
 	    
-        public class UniqueIterator implements Iterator<T> {
+        /** streams each element the first time it turns up */
+        public class UniqueIterator implements CloseableIterator<T> {
             private final Iterator<T> itr;
-            private final Set<T> set = new LinkedHashSet<T>();
+            private final Set<T> seen = new HashSet<T>();
+            private T next;
+            private boolean ready = false;
 
             public UniqueIterator() {
-                if (source != null)
-                    for (T e : source)
-                        set.add(e);
-
-                itr = set.iterator();
+                itr = source != null ? source.iterator() : Collections.<T>emptyIterator();
             }
 
             @Override
             public boolean hasNext() {
-                return itr.hasNext();
+                if (ready)
+                    return true;
+                if (seen.size() != limit) {
+                    while (itr.hasNext()) {
+                        T e = itr.next();
+                        if (seen.add(e)) {
+                            next = e;
+                            ready = true;
+                            return true;
+                        }
+                    }
+                }
+                close();
+                return false;
             }
 
             @Override
             public T next() {
-                return itr.next();
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                T e = next;
+                next = null;
+                ready = false;
+                return e;
+            }
+
+            @Override
+            public void close() {
+                Views.close(itr);
             }
 
             @Override
@@ -893,21 +2697,41 @@ public class Views {
 
     public static class FilteredView<T> extends View<T> {
         protected final Iterable<T> source;
+        /** the filter as a {@link Predicate}, as subclasses have always seen it */
         protected final Predicate<T> predicate;
+        /** what the iterators test with, unboxed */
+        protected final BooleanPredicate<? super T> condition;
         protected final VFunc1<T> shunt;
 
         public FilteredView(Iterable<T> source, Predicate<T> predicate, VFunc1<T> shunt) {
+            this(source, (BooleanPredicate<? super T>) predicate, shunt);
+        }
+
+        public FilteredView(Iterable<T> source, BooleanPredicate<? super T> condition, VFunc1<T> shunt) {
             this.source = source;
-            this.predicate = predicate;
+            this.condition = condition;
+            this.predicate = asPredicate(condition);
             this.shunt = shunt;
         }
 
+        @SuppressWarnings("unchecked")
+        private static <T> Predicate<T> asPredicate(final BooleanPredicate<? super T> condition) {
+            if (condition instanceof Predicate)
+                return (Predicate<T>) condition;
+            return new Predicate<T>() {
+                @Override
+                public Boolean call(T arg) {
+                    return condition.test(arg);
+                }
+            };
+        }
+
         @Override
         public Iterator<T> iterator() {
             return this.new FilterIterator();
         }
 
-        public class FilterIterator implements Iterator<T> {
+        public class FilterIterator implements CloseableIterator<T> {
             Iterator<T> itr = source.iterator();
             T curr = null;
             boolean nextReady = false;
@@ -932,7 +2756,7 @@ public class Views {
                         break;
                     }
                     curr = itr.next();
-                    if (predicate.call(curr)) {
+                    if (condition.test(curr)) {
                         break;
                     } else if (shunt != null) {
                         shunt.call(curr);
@@ -948,6 +2772,11 @@ public class Views {
                 return curr;
             }
 
+            @Override
+            public void close() {
+                Views.close(itr);
+            }
+
             @Override
             public void remove() {
                 throw new UnsupportedOperationException();
@@ -964,12 +2793,17 @@ public class Views {
             this.mapFunc = mapper;
         }
 
+        @Override
+        protected int knownSize() {
+            return sizeIfKnown(source);
+        }
+
         @Override
         public Iterator<TDest> iterator() {
             return this.new TransformingIterator();
         }
 
-        public class TransformingIterator implements Iterator<TDest> {
+        public class TransformingIterator implements CloseableIterator<TDest> {
             private final Iterator<TSource> sourceItr;
 
             public TransformingIterator() {
@@ -986,6 +2820,11 @@ public class Views {
                 return mapFunc.call(sourceItr.next());
             }
 
+            @Override
+            public void close() {
+                Views.close(sourceItr);
+            }
+
             @Override
             public void remove() {
                 throw new UnsupportedOperationException();
@@ -1007,7 +2846,7 @@ public class Views {
             return this.new ConcatenationIterator();
         }
 
-        public class ConcatenationIterator implements Iterator<TElem> {
+        public class ConcatenationIterator implements CloseableIterator<TElem> {
             private Iterator<TElem> currItr;
             private boolean firstExhausted;
           
@@ -1018,6 +2857,7 @@ public class Views {
             @Override
             public boolean hasNext() {
                 if (!currItr.hasNext() && !firstExhausted) {
+                    Views.close(currItr);
                     currItr = next.iterator();
                     firstExhausted = true;
                 }
@@ -1029,6 +2869,11 @@ public class Views {
                 return currItr.next();
             }
 
+            @Override
+            public void close() {
+                Views.close(currItr);
+            }
+
             @Override
             public void remove() {
                 throw new UnsupportedOperationException();
@@ -1080,60 +2925,14 @@ public class Views {
         }
     }
 
-    /**
-     * string-related utilities *
-     */
-
-    private static final class StringMaker<TElem> implements Aggregate<String, TElem> {
-        private final StringBuilder sb = new StringBuilder();
-        private final String start, sep, end;
-        private boolean first = true;
-
-        protected StringMaker(String start, String sep, String end) {
-            this.start = start;
-            this.sep = sep;
-            this.end = end;
-
-            sb.append(this.start);
-        }
-
-        @Override
-        public void call(TElem next) {
-            if (!first) sb.append(sep);
-            else first = false;
-            sb.append(String.valueOf(next));
-        }
-
-        @Override
-        public String value() {
-            sb.append(end);
-            return sb.toString();
-        }
-    }
-    
-	private static final class FormattedStringMaker<TElem> implements Aggregate<String, TElem> {
-        private final StringBuilder sb = new StringBuilder();
-        private final String fmt, elemFmt;
-
-        protected FormattedStringMaker(String fmt, String elemFmt) {
-            this.fmt = fmt;
-            this.elemFmt = elemFmt;
-        }
-        
-        @Override
-        public void call(TElem next) {
-            sb.append(String.format(elemFmt, String.valueOf(next)));
-        }
-
+    static class NullFilter<T> implements Predicate<T> {
         @Override
-        public String value() {
-            return String.format(fmt, sb.toString());
+        public Boolean call(T elem) {
+            return elem != null;
         }
-    }
 
-    static class NullFilter<T> implements Predicate<T> {
         @Override
-        public Boolean call(T elem) {
+        public boolean test(T elem) {
             return elem != null;
         }
     }
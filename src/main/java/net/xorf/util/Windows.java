@@ -0,0 +1,548 @@
+package net.xorf.util;
+
+import net.xorf.util.Views.CloseableIterator;
+import net.xorf.util.Views.Func0;
+import net.xorf.util.Views.ToDoubleFunc1;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Sliding and tumbling windows over views, and aggregates maintained
+ * incrementally as elements enter and leave a window.
+ *
+ * A sliding window of <tt>size</tt> moves <tt>step</tt> elements at a time
+ * and is only produced when full; a tumbling window is a sliding window
+ * whose step is its size, and the last one may be partial.  Windows are
+ * held in a ring buffer, so moving one costs O(step) whatever its size.
+ * Each window is produced as an unmodifiable copy, costing O(size); the
+ * <tt>InPlace</tt> variants instead produce a view of the buffer itself,
+ * valid only until the iterator moves on, for consumers that are done
+ * with each window before asking for the next.
+ *
+ * Windowed aggregates are given each element as it enters the window
+ * (<tt>call</tt>) and again as it leaves (<tt>evict</tt>, always the oldest
+ * first), so a window's value costs amortized O(1) per step instead of
+ * O(size): sums and means add and subtract, minima and maxima keep a
+ * monotonic deque.  They are created per iterator from a {@link Func0};
+ * the built-in ones are the factories here.
+ *
+ * The views are built by <tt>Views.sliding</tt>/<tt>tumbling</tt> and, for
+ * numeric series, <tt>slidingDoubles</tt>/<tt>tumblingDoubles</tt>.
+ */
+public final class Windows {
+    private Windows() { }
+
+    /** an {@link Views.Aggregate} that can also forget its oldest element */
+    public interface WindowAggregate<TAgg, TElem> extends Views.Aggregate<TAgg, TElem> {
+        void evict(TElem oldest);
+    }
+
+    /** {@link WindowAggregate} for <tt>double</tt> series */
+    public interface DoubleWindowAggregate {
+        void add(double value);
+        void evict(double oldest);
+        double value();
+    }
+
+    private static void checkShape(int size, int step) {
+        if (size < 1)
+            throw new IllegalArgumentException("window size must be positive");
+        if (step < 1)
+            throw new IllegalArgumentException("window step must be positive");
+    }
+
+    /* built-in aggregates */
+
+    public static <T> Func0<WindowAggregate<Integer, T>> count() {
+        return new Func0<WindowAggregate<Integer, T>>() {
+            @Override
+            public WindowAggregate<Integer, T> call() {
+                return new WindowAggregate<Integer, T>() {
+                    private int n = 0;
+                    @Override public void call(T e) { n++; }
+                    @Override public void evict(T oldest) { n--; }
+                    @Override public Integer value() { return n; }
+                };
+            }
+        };
+    }
+
+    public static <T> Func0<WindowAggregate<Double, T>> sum(final ToDoubleFunc1<? super T> value) {
+        return new Func0<WindowAggregate<Double, T>>() {
+            @Override
+            public WindowAggregate<Double, T> call() {
+                return new WindowAggregate<Double, T>() {
+                    private final DoubleSum sum = new DoubleSum();
+                    @Override public void call(T e) { sum.add(value.call(e)); }
+                    @Override public void evict(T oldest) { sum.evict(value.call(oldest)); }
+                    @Override public Double value() { return sum.value(); }
+                };
+            }
+        };
+    }
+
+    /** NaN for an empty window */
+    public static <T> Func0<WindowAggregate<Double, T>> mean(final ToDoubleFunc1<? super T> value) {
+        return new Func0<WindowAggregate<Double, T>>() {
+            @Override
+            public WindowAggregate<Double, T> call() {
+                return new WindowAggregate<Double, T>() {
+                    private final DoubleMean mean = new DoubleMean();
+                    @Override public void call(T e) { mean.add(value.call(e)); }
+                    @Override public void evict(T oldest) { mean.evict(value.call(oldest)); }
+                    @Override public Double value() { return mean.value(); }
+                };
+            }
+        };
+    }
+
+    /** null for an empty window; of equal elements, the latest */
+    public static <T> Func0<WindowAggregate<T, T>> min(final Comparator<? super T> comparator) {
+        return new Func0<WindowAggregate<T, T>>() {
+            @Override
+            public WindowAggregate<T, T> call() {
+                return new MonotonicDeque<T>(comparator);
+            }
+        };
+    }
+
+    public static <T> Func0<WindowAggregate<T, T>> max(final Comparator<? super T> comparator) {
+        return min(Collections.reverseOrder(comparator));
+    }
+
+    public static Func0<DoubleWindowAggregate> doubleSum() {
+        return new Func0<DoubleWindowAggregate>() {
+            @Override public DoubleWindowAggregate call() { return new DoubleSum(); }
+        };
+    }
+
+    public static Func0<DoubleWindowAggregate> doubleMean() {
+        return new Func0<DoubleWindowAggregate>() {
+            @Override public DoubleWindowAggregate call() { return new DoubleMean(); }
+        };
+    }
+
+    public static Func0<DoubleWindowAggregate> doubleMin() {
+        return new Func0<DoubleWindowAggregate>() {
+            @Override public DoubleWindowAggregate call() { return new DoubleMonotonicDeque(false); }
+        };
+    }
+
+    public static Func0<DoubleWindowAggregate> doubleMax() {
+        return new Func0<DoubleWindowAggregate>() {
+            @Override public DoubleWindowAggregate call() { return new DoubleMonotonicDeque(true); }
+        };
+    }
+
+    /**
+     * A running sum with Neumaier compensation, so adding and subtracting
+     * over a long series doesn't accumulate rounding error.
+     */
+    static class DoubleSum implements DoubleWindowAggregate {
+        private double sum = 0, compensation = 0;
+
+        @Override
+        public void add(double v) {
+            double t = sum + v;
+            if (Math.abs(sum) >= Math.abs(v))
+                compensation += (sum - t) + v;
+            else
+                compensation += (v - t) + sum;
+            sum = t;
+        }
+
+        @Override
+        public void evict(double oldest) {
+            add(-oldest);
+        }
+
+        @Override
+        public double value() {
+            return sum + compensation;
+        }
+    }
+
+    static final class DoubleMean extends DoubleSum {
+        private long n = 0;
+
+        @Override
+        public void add(double v) {
+            super.add(v);
+            n++;
+        }
+
+        @Override
+        public void evict(double oldest) {
+            super.add(-oldest);
+            n--;
+        }
+
+        @Override
+        public double value() {
+            return n == 0 ? Double.NaN : super.value() / n;
+        }
+    }
+
+    /**
+     * Window minimum: a deque of elements in increasing order, each
+     * tagged with its arrival number.  An element arriving drops every
+     * larger one before it, since none of them can be the minimum again;
+     * an eviction drops the head if it is the element leaving.
+     */
+    static final class MonotonicDeque<T> implements WindowAggregate<T, T> {
+        private static final class Entry<T> {
+            final T e;
+            final long seq;
+
+            Entry(T e, long seq) {
+                this.e = e;
+                this.seq = seq;
+            }
+        }
+
+        private final Comparator<? super T> comparator;
+        private final ArrayDeque<Entry<T>> deque = new ArrayDeque<Entry<T>>();
+        private long added = 0, evicted = 0;
+
+        MonotonicDeque(Comparator<? super T> comparator) {
+            this.comparator = comparator;
+        }
+
+        @SuppressWarnings("unchecked")
+        private int compare(T a, T b) {
+            return comparator != null ? comparator.compare(a, b) : ((Comparable<? super T>) a).compareTo(b);
+        }
+
+        @Override
+        public void call(T e) {
+            while (!deque.isEmpty() && compare(deque.peekLast().e, e) >= 0)
+                deque.pollLast();
+            deque.addLast(new Entry<T>(e, added++));
+        }
+
+        @Override
+        public void evict(T oldest) {
+            if (!deque.isEmpty() && deque.peekFirst().seq == evicted)
+                deque.pollFirst();
+            evicted++;
+        }
+
+        @Override
+        public T value() {
+            return deque.isEmpty() ? null : deque.peekFirst().e;
+        }
+    }
+
+    /** {@link MonotonicDeque} over parallel primitive rings, growing as needed */
+    static final class DoubleMonotonicDeque implements DoubleWindowAggregate {
+        private final boolean max;
+        private double[] values = new double[16];
+        private long[] seqs = new long[16];
+        private int head = 0, count = 0;
+        private long added = 0, evicted = 0;
+
+        DoubleMonotonicDeque(boolean max) {
+            this.max = max;
+        }
+
+        private boolean dominated(double last, double v) {
+            return max ? last <= v : last >= v;
+        }
+
+        @Override
+        public void add(double v) {
+            int mask = values.length - 1;
+            while (count > 0 && dominated(values[(head + count - 1) & mask], v))
+                count--;
+            if (count == values.length)
+                grow();
+            mask = values.length - 1;
+            values[(head + count) & mask] = v;
+            seqs[(head + count) & mask] = added++;
+            count++;
+        }
+
+        private void grow() {
+            double[] nv = new double[values.length * 2];
+            long[] ns = new long[seqs.length * 2];
+            for (int i = 0; i < count; i++) {
+                nv[i] = values[(head + i) & (values.length - 1)];
+                ns[i] = seqs[(head + i) & (seqs.length - 1)];
+            }
+            values = nv;
+            seqs = ns;
+            head = 0;
+        }
+
+        @Override
+        public void evict(double oldest) {
+            if (count > 0 && seqs[head] == evicted) {
+                head = (head + 1) & (values.length - 1);
+                count--;
+            }
+            evicted++;
+        }
+
+        @Override
+        public double value() {
+            return count == 0 ? Double.NaN : values[head];
+        }
+    }
+
+    /**
+     * Windows of <tt>source</tt>, as copies or list views of the ring or -
+     * given an aggregate - the aggregate's value for each.
+     */
+    static final class WindowView<T, R> extends Views.View<R> {
+        private final Iterable<T> source;
+        private final int size, step;
+        private final boolean partialTail;
+        private final Func0<? extends WindowAggregate<R, ? super T>> aggregate;
+        private final boolean inPlace;
+
+        WindowView(Iterable<T> source, int size, int step, boolean partialTail,
+                   Func0<? extends WindowAggregate<R, ? super T>> aggregate, boolean inPlace) {
+            checkShape(size, step);
+            this.source = source;
+            this.size = size;
+            this.step = step;
+            this.partialTail = partialTail;
+            this.aggregate = aggregate;
+            this.inPlace = inPlace;
+        }
+
+        @Override
+        public Iterator<R> iterator() {
+            return this.new WindowIterator();
+        }
+
+        final class WindowIterator implements CloseableIterator<R> {
+            private final Iterator<T> src = source.iterator();
+            private final WindowAggregate<R, ? super T> agg = aggregate == null ? null : aggregate.call();
+            private final Object[] ring = new Object[size];
+            private int head = 0, count = 0;
+            private boolean first = true, ready = false, ended = false;
+
+            private final List<T> window = new AbstractList<T>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public T get(int i) {
+                    if (i < 0 || i >= count)
+                        throw new IndexOutOfBoundsException(String.valueOf(i));
+                    return (T) ring[(head + i) % size];
+                }
+
+                @Override
+                public int size() {
+                    return count;
+                }
+            };
+
+            private List<T> copy() {
+                Object[] a = new Object[count];
+                for (int i = 0; i < count; i++)
+                    a[i] = ring[(head + i) % size];
+                @SuppressWarnings("unchecked")
+                List<T> l = (List<T>) Arrays.asList(a);
+                return Collections.unmodifiableList(l);
+            }
+
+            @SuppressWarnings("unchecked")
+            private void push(T e) {
+                if (count < size) {
+                    ring[(head + count++) % size] = e;
+                } else {
+                    if (agg != null)
+                        agg.evict((T) ring[head]);
+                    ring[head] = e;
+                    head = (head + 1) % size;
+                }
+                if (agg != null)
+                    agg.call(e);
+            }
+
+            @SuppressWarnings("unchecked")
+            private void clear() {
+                for (; count > 0; count--) {
+                    if (agg != null)
+                        agg.evict((T) ring[head]);
+                    ring[head] = null;
+                    head = (head + 1) % size;
+                }
+                head = 0;
+            }
+
+            /** moves to the next window; false if there isn't one */
+            private boolean advance() {
+                int need = step;
+                if (first || step >= size) {
+                    //nothing of the last window survives
+                    if (!first) {
+                        clear();
+                        for (int skip = step - size; skip > 0 && src.hasNext(); skip--)
+                            src.next();
+                    }
+                    need = size;
+                    first = false;
+                }
+                int added = 0;
+                while (added < need && src.hasNext()) {
+                    push(src.next());
+                    added++;
+                }
+                return added == need || (partialTail && count > 0 && added > 0);
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (ready)
+                    return true;
+                if (ended)
+                    return false;
+                ready = advance();
+                if (!ready)
+                    close();
+                return ready;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public R next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                ready = false;
+                if (agg != null)
+                    return agg.value();
+                return (R) (inPlace ? window : copy());
+            }
+
+            @Override
+            public void close() {
+                if (ended)
+                    return;
+                ended = true;
+                Views.close(src);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+
+    /** a numeric series as doubles, unboxed for the primitive views */
+    static PrimitiveIterator.OfDouble doubles(Iterable<? extends Number> source) {
+        if (source instanceof Views.DoubleView)
+            return ((Views.DoubleView) source).iterator();
+        if (source instanceof Views.IntView) {
+            final PrimitiveIterator.OfInt i = ((Views.IntView) source).iterator();
+            return new PrimitiveIterator.OfDouble() {
+                @Override public boolean hasNext() { return i.hasNext(); }
+                @Override public double nextDouble() { return i.nextInt(); }
+            };
+        }
+        if (source instanceof Views.LongView) {
+            final PrimitiveIterator.OfLong i = ((Views.LongView) source).iterator();
+            return new PrimitiveIterator.OfDouble() {
+                @Override public boolean hasNext() { return i.hasNext(); }
+                @Override public double nextDouble() { return i.nextLong(); }
+            };
+        }
+        final Iterator<? extends Number> i = source.iterator();
+        return new PrimitiveIterator.OfDouble() {
+            @Override public boolean hasNext() { return i.hasNext(); }
+            @Override public double nextDouble() { return i.next().doubleValue(); }
+        };
+    }
+
+    /** {@link WindowView} for numeric series, over a ring of doubles */
+    static final class DoubleWindowView extends Views.DoubleView {
+        private final Iterable<? extends Number> source;
+        private final int size, step;
+        private final boolean partialTail;
+        private final Func0<? extends DoubleWindowAggregate> aggregate;
+
+        DoubleWindowView(Iterable<? extends Number> source, int size, int step, boolean partialTail,
+                         Func0<? extends DoubleWindowAggregate> aggregate) {
+            checkShape(size, step);
+            this.source = source;
+            this.size = size;
+            this.step = step;
+            this.partialTail = partialTail;
+            this.aggregate = aggregate;
+        }
+
+        @Override
+        public PrimitiveIterator.OfDouble iterator() {
+            final PrimitiveIterator.OfDouble src = doubles(source);
+            final DoubleWindowAggregate agg = aggregate.call();
+            final double[] ring = new double[size];
+            return new PrimitiveIterator.OfDouble() {
+                private int head = 0, count = 0;
+                private boolean first = true, ready = false, ended = false;
+
+                private void push(double v) {
+                    if (count < size) {
+                        ring[(head + count++) % size] = v;
+                    } else {
+                        agg.evict(ring[head]);
+                        ring[head] = v;
+                        head = (head + 1) % size;
+                    }
+                    agg.add(v);
+                }
+
+                private boolean advance() {
+                    int need = step;
+                    if (first || step >= size) {
+                        if (!first) {
+                            for (; count > 0; count--) {
+                                agg.evict(ring[head]);
+                                head = (head + 1) % size;
+                            }
+                            head = 0;
+                            for (int skip = step - size; skip > 0 && src.hasNext(); skip--)
+                                src.nextDouble();
+                        }
+                        need = size;
+                        first = false;
+                    }
+                    int added = 0;
+                    while (added < need && src.hasNext()) {
+                        push(src.nextDouble());
+                        added++;
+                    }
+                    return added == need || (partialTail && count > 0 && added > 0);
+                }
+
+                @Override
+                public boolean hasNext() {
+                    if (ready)
+                        return true;
+                    if (ended)
+                        return false;
+                    ready = advance();
+                    ended = !ready;
+                    return ready;
+                }
+
+                @Override
+                public double nextDouble() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    ready = false;
+                    return agg.value();
+                }
+            };
+        }
+    }
+}